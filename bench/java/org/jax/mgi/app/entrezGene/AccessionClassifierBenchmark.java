@@ -0,0 +1,77 @@
+package org.jax.mgi.app.entrezGene;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * is a JMH benchmark for the AccessionClassifier. Each invocation
+ * classifies a batch of accession ids from the AccessionMix so that the
+ * reported score is per accession id. Run with '-prof gc' to obtain the
+ * allocation rate per accession id
+ * @has an AccessionClassifier and a batch of accession ids
+ * @does measures the throughput of classifying accession ids
+ * @company The Jackson Laboratory
+ * @author M Walker
+ *
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessionClassifierBenchmark
+{
+    /**
+     * the number of accession ids classified per invocation
+     */
+    public static final int BATCH = 1024;
+
+    private AccessionClassifier classifier = null;
+    private String[] accids = null;
+
+    @Setup
+    public void setup()
+    {
+        this.classifier = new AccessionClassifier();
+        this.accids = new AccessionMix().createAccids(BATCH);
+    }
+
+    /**
+     * classify accession ids into their category names as is done by
+     * callers of classify()
+     * @param bh the Blackhole which consumes the results
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void classify(Blackhole bh)
+    {
+        for (int i = 0; i < accids.length; i++)
+            bh.consume(classifier.classify(accids[i]));
+    }
+
+    /**
+     * classify accession ids into their SequenceCategory
+     * @param bh the Blackhole which consumes the results
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void getCategory(Blackhole bh)
+    {
+        for (int i = 0; i < accids.length; i++)
+            bh.consume(classifier.getCategory(accids[i]));
+    }
+}
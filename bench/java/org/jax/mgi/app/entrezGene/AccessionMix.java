@@ -0,0 +1,118 @@
+package org.jax.mgi.app.entrezGene;
+
+import java.util.Random;
+
+/**
+ * is a generator of accession ids in roughly the proportions in which they
+ * are seen in the mouse Entrez Gene and MGI marker data. It is used to
+ * drive the benchmarks with realistic input rather than a single
+ * repeated accession id
+ * @has a seeded random number generator so that each benchmark run sees
+ * the same mix of accession ids
+ * @does creates arrays of accession ids
+ * @company The Jackson Laboratory
+ * @author M Walker
+ *
+ */
+
+public class AccessionMix
+{
+    /**
+     * the seed used for generating accession ids
+     */
+    public static final long SEED = 10090;
+
+    /**
+     * the GenBank two letter prefixes most frequently seen for mouse
+     */
+    private static final String[] genbankPrefixes =
+        {"AK", "BC", "AF", "AY", "AB", "BY", "CA", "CX", "DQ", "EU"};
+
+    /**
+     * the GenBank one letter prefixes
+     */
+    private static final String[] genbankLetters = {"U", "M", "X", "L"};
+
+    /**
+     * the RefSeq prefixes weighted by their frequency, transcripts and
+     * proteins far outnumber the genomic contigs
+     */
+    private static final String[] refseqPrefixes =
+        {"NM_", "NM_", "NM_", "XM_", "XM_", "XM_", "NP_", "NP_", "XP_",
+         "XP_", "NR_", "XR_", "XR_", "NG_", "NT_", "NW_"};
+
+    private Random random = new Random(SEED);
+
+    /**
+     * create the given number of accession ids. About half of them are
+     * GenBank ids, forty percent are RefSeq ids and the remainder are MGI
+     * ids.
+     * @param count the number of accession ids to create
+     * @return the accession ids
+     */
+    public String[] createAccids(int count)
+    {
+        String[] accids = new String[count];
+        for (int i = 0; i < count; i++)
+        {
+            int n = random.nextInt(10);
+            if (n < 5)
+                accids[i] = createGenBank();
+            else if (n < 9)
+                accids[i] = createRefSeq();
+            else
+                accids[i] = createMGIID();
+        }
+        return accids;
+    }
+
+    /**
+     * create a GenBank accession id in either the one letter/five digit or
+     * the two letter/six digit form
+     * @return the GenBank accession id
+     */
+    public String createGenBank()
+    {
+        if (random.nextInt(10) == 0)
+            return genbankLetters[random.nextInt(genbankLetters.length)] +
+                digits(5);
+        return genbankPrefixes[random.nextInt(genbankPrefixes.length)] +
+            digits(6);
+    }
+
+    /**
+     * create a RefSeq accession id. Curated RefSeq ids have six or nine
+     * digits and some ids carry a version suffix
+     * @return the RefSeq accession id
+     */
+    public String createRefSeq()
+    {
+        String prefix = refseqPrefixes[random.nextInt(refseqPrefixes.length)];
+        String accid = prefix + digits(random.nextBoolean() ? 6 : 9);
+        if (random.nextInt(4) == 0)
+            accid = accid + "." + (1 + random.nextInt(3));
+        return accid;
+    }
+
+    /**
+     * create an MGI accession id
+     * @return the MGI accession id
+     */
+    public String createMGIID()
+    {
+        return "MGI:" + (random.nextInt(6000000) + 87853);
+    }
+
+    /**
+     * create a string of random digits
+     * @param count the number of digits
+     * @return the string of digits
+     */
+    private String digits(int count)
+    {
+        StringBuffer buf = new StringBuffer(count);
+        for (int i = 0; i < count; i++)
+            buf.append((char)('0' + random.nextInt(10)));
+        return buf.toString();
+    }
+}
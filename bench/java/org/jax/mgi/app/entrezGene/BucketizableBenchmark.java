@@ -0,0 +1,113 @@
+package org.jax.mgi.app.entrezGene;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * is a JMH benchmark for populating EntrezGeneBucketizable objects the way
+ * the EntrezGeneQuery and MGIMarkerQuery interpreters do: each accession
+ * id of a row is classified and added to the set valued attribute for its
+ * category. The reported score is per row (one bucketizable object), the
+ * number of accession ids per row is a parameter
+ * @has batches of accession ids and their SequenceAccession objects
+ * @does measures the throughput and allocation of the per row path from
+ * accession id to populated bucketizable object
+ * @company The Jackson Laboratory
+ * @author M Walker
+ *
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BucketizableBenchmark
+{
+    /**
+     * the number of rows (bucketizable objects) created per invocation
+     */
+    public static final int ROWS = 256;
+
+    /**
+     * the number of accession ids per row
+     */
+    @Param({"4", "16"})
+    public int accidsPerRow;
+
+    private AccessionClassifier classifier = null;
+    private SequenceAccession[][] rows = null;
+
+    @Setup
+    public void setup()
+    {
+        this.classifier = new AccessionClassifier();
+        AccessionMix mix = new AccessionMix();
+        this.rows = new SequenceAccession[ROWS][];
+        for (int i = 0; i < ROWS; i++)
+        {
+            String[] accids = mix.createAccids(accidsPerRow);
+            rows[i] = new SequenceAccession[accidsPerRow];
+            for (int j = 0; j < accidsPerRow; j++)
+                rows[i][j] =
+                    new SequenceAccession(accids[j], SequenceAccession.RNA);
+        }
+    }
+
+    /**
+     * create and populate one bucketizable object per row
+     * @param bh the Blackhole which consumes the results
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void populate(Blackhole bh)
+    {
+        for (int i = 0; i < rows.length; i++)
+        {
+            EntrezGeneBucketizable b = new EntrezGeneBucketizable(
+                String.valueOf(i), Constants.PROVIDER_ENTREZGENE);
+            SequenceAccession[] row = rows[i];
+            for (int j = 0; j < row.length; j++)
+                add(b, row[j]);
+            bh.consume(b);
+        }
+    }
+
+    /**
+     * add the given sequence to the bucketizable object according to its
+     * category
+     * @param b the bucketizable object
+     * @param acc the sequence
+     */
+    private void add(EntrezGeneBucketizable b, SequenceAccession acc)
+    {
+        switch (classifier.getCategory(acc.getAccid()))
+        {
+            case GENBANK: b.addGenBankSequence(acc); break;
+            case XM: b.addXMSequence(acc); break;
+            case XR: b.addXRSequence(acc); break;
+            case XP: b.addXPSequence(acc); break;
+            case NM: b.addNMSequence(acc); break;
+            case NR: b.addNRSequence(acc); break;
+            case NP: b.addNPSequence(acc); break;
+            case NG: b.addNGSequence(acc); break;
+            case NT: b.addNTSequence(acc); break;
+            case NW: b.addNWSequence(acc); break;
+            case MGIID: b.addMGIID(acc); break;
+        }
+    }
+}
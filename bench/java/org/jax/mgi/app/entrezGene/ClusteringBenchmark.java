@@ -0,0 +1,277 @@
+package org.jax.mgi.app.entrezGene;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.jax.mgi.shr.bucketizer.AbstractBucketizer;
+import org.jax.mgi.shr.bucketizer.BucketItem;
+import org.jax.mgi.shr.bucketizer.Bucketizable;
+import org.jax.mgi.shr.bucketizer.BucketizableSource;
+import org.jax.mgi.shr.bucketizer.DisjointSetClusterer;
+import org.jax.mgi.shr.bucketizer.Partitioner;
+import org.jax.mgi.shr.dbutils.DataIterator;
+import org.jax.mgi.shr.exception.MGIException;
+
+/**
+ * is a JMH benchmark for finding the connected components of Entrez genes
+ * and MGI markers, comparing the SVAIndex of the AbstractBucketizer with
+ * the DisjointSetClusterer, whole, partitioned into chromosome sized
+ * blocks of consecutive ids and streamed in two passes. Each marker shares
+ * its accession ids with one Entrez gene and every tenth marker also shares
+ * one with the next Entrez gene, so most components are one to one with
+ * some one to many and many to one components. The reported score is per
+ * clustering of all members
+ * @has the Entrez gene and marker bucketizable objects
+ * @does measures the time to cluster the objects and process each
+ * component
+ * @company The Jackson Laboratory
+ * @author M Walker
+ *
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ClusteringBenchmark
+{
+    /**
+     * the number of accession ids of each Entrez gene
+     */
+    public static final int ACCIDS_PER_GENE = 4;
+
+    /**
+     * the number of partitions of the partitioned DisjointSetClusterer
+     */
+    public static final int PARTITIONS = 21;
+
+    /**
+     * the attribute names used for bucketizing
+     */
+    private static final String[] sequenceGroups =
+        {Constants.GENBANK, Constants.MGIID, Constants.XM, Constants.XR,
+         Constants.XP, Constants.NM, Constants.NR, Constants.NP,
+         Constants.NG, Constants.NT, Constants.NW};
+
+    /**
+     * the number of Entrez genes and of MGI markers
+     */
+    @Param({"10000", "100000"})
+    public int genes;
+
+    private EntrezGeneBucketizable[] entrezGenes = null;
+    private EntrezGeneBucketizable[] markers = null;
+
+    @Setup
+    public void setup()
+    {
+        AccessionClassifier classifier = new AccessionClassifier();
+        AccessionMix mix = new AccessionMix();
+        this.entrezGenes = new EntrezGeneBucketizable[genes];
+        this.markers = new EntrezGeneBucketizable[genes];
+        SequenceAccession[][] accs = new SequenceAccession[genes][];
+        for (int i = 0; i < genes; i++)
+        {
+            String[] accids = mix.createAccids(ACCIDS_PER_GENE);
+            accs[i] = new SequenceAccession[accids.length];
+            for (int j = 0; j < accids.length; j++)
+                accs[i][j] =
+                    new SequenceAccession(accids[j], SequenceAccession.RNA);
+            entrezGenes[i] = new EntrezGeneBucketizable(
+                String.valueOf(i), Constants.PROVIDER_ENTREZGENE);
+            markers[i] = new EntrezGeneBucketizable(
+                String.valueOf(i), Constants.PROVIDER_MGI);
+        }
+        for (int i = 0; i < genes; i++)
+        {
+            for (int j = 0; j < accs[i].length; j++)
+            {
+                SequenceCategory category =
+                    classifier.getCategory(accs[i][j].getAccid());
+                entrezGenes[i].addSequence(category, accs[i][j]);
+                markers[i].addSequence(category, accs[i][j]);
+            }
+            if (i % 10 == 0 && i + 1 < genes)
+            {
+                SequenceAccession acc = accs[i + 1][0];
+                markers[i].addSequence(
+                    classifier.getCategory(acc.getAccid()), acc);
+            }
+        }
+    }
+
+    /**
+     * cluster the objects through the SVAIndex of the AbstractBucketizer
+     * @return the number of components
+     * @throws MGIException thrown if the objects could not be clustered
+     */
+    @Benchmark
+    public int svaIndex() throws MGIException
+    {
+        CountingBucketizer bucketizer = new CountingBucketizer(
+            new ArrayIterator(entrezGenes), new ArrayIterator(markers));
+        bucketizer.run(Constants.PROVIDER_MGI, Constants.PROVIDER_ENTREZGENE);
+        return bucketizer.components;
+    }
+
+    /**
+     * cluster the objects with the DisjointSetClusterer
+     * @return the number of components
+     * @throws MGIException thrown if the objects could not be clustered
+     */
+    @Benchmark
+    public int disjointSet() throws MGIException
+    {
+        CountingBucketizer bucketizer = new CountingBucketizer(null, null);
+        new DisjointSetClusterer(sequenceGroups).run(
+            new ArrayIterator(entrezGenes), new ArrayIterator(markers),
+            Constants.PROVIDER_MGI, Constants.PROVIDER_ENTREZGENE,
+            bucketizer);
+        return bucketizer.components;
+    }
+
+    /**
+     * cluster the objects with the DisjointSetClusterer partitioned into
+     * blocks of consecutive ids on four threads
+     * @return the number of components
+     * @throws MGIException thrown if the objects could not be clustered
+     */
+    @Benchmark
+    public int partitionedDisjointSet() throws MGIException
+    {
+        CountingBucketizer bucketizer = new CountingBucketizer(null, null);
+        new DisjointSetClusterer(sequenceGroups,
+                                 new BlockPartitioner(genes), 4).run(
+            new ArrayIterator(entrezGenes), new ArrayIterator(markers),
+            Constants.PROVIDER_MGI, Constants.PROVIDER_ENTREZGENE,
+            bucketizer);
+        return bucketizer.components;
+    }
+
+    /**
+     * cluster the objects with the DisjointSetClusterer streaming them in
+     * two passes
+     * @return the number of components
+     * @throws MGIException thrown if the objects could not be clustered
+     */
+    @Benchmark
+    public int streamingDisjointSet() throws MGIException
+    {
+        CountingBucketizer bucketizer = new CountingBucketizer(null, null);
+        new DisjointSetClusterer(sequenceGroups).run(
+            new ArraySource(entrezGenes), new ArraySource(markers),
+            Constants.PROVIDER_MGI, Constants.PROVIDER_ENTREZGENE,
+            bucketizer);
+        return bucketizer.components;
+    }
+
+    /**
+     * is a Partitioner which splits the ids into PARTITIONS blocks of
+     * consecutive ids, so that the one to many components at the ends of
+     * the blocks span partitions
+     * @has the number of ids in a block
+     * @does names the block of the id of a Bucketizable
+     */
+    private static class BlockPartitioner implements Partitioner
+    {
+        private int blockSize = 0;
+
+        public BlockPartitioner(int genes)
+        {
+            this.blockSize = genes / PARTITIONS + 1;
+        }
+
+        public String getPartition(Bucketizable b)
+        {
+            return String.valueOf(
+                Integer.parseInt(b.getId()) / this.blockSize);
+        }
+    }
+
+    /**
+     * is a bucketizer which counts the components it is given
+     * @has the number of components
+     * @does counts components
+     */
+    private static class CountingBucketizer extends AbstractBucketizer
+    {
+        public int components = 0;
+
+        public CountingBucketizer(DataIterator it1, DataIterator it2)
+        throws MGIException
+        {
+            super(it1, it2, sequenceGroups);
+        }
+
+        public void process_One_To_One(BucketItem b) { components++; }
+        public void process_One_To_Many(BucketItem b) { components++; }
+        public void process_Many_To_One(BucketItem b) { components++; }
+        public void process_Many_To_Many(BucketItem b) { components++; }
+        public void process_One_To_Zero(BucketItem b) { components++; }
+        public void process_Zero_To_One(BucketItem b) { components++; }
+        public void postProcess() {}
+    }
+
+    /**
+     * is a BucketizableSource over an array
+     * @has the array
+     * @does opens ArrayIterators over the array
+     */
+    private static class ArraySource implements BucketizableSource
+    {
+        private Object[] elements = null;
+
+        public ArraySource(Object[] elements)
+        {
+            this.elements = elements;
+        }
+
+        public DataIterator open()
+        {
+            return new ArrayIterator(elements);
+        }
+    }
+
+    /**
+     * is a DataIterator over an array
+     * @has the array and the index of the next element
+     * @does iterates over the array
+     */
+    private static class ArrayIterator implements DataIterator
+    {
+        private Object[] elements = null;
+        private int next = 0;
+
+        public ArrayIterator(Object[] elements)
+        {
+            this.elements = elements;
+        }
+
+        public boolean hasNext()
+        {
+            return next < elements.length;
+        }
+
+        public Object next()
+        {
+            return elements[next++];
+        }
+
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,585 @@
+package org.jax.mgi.app.entrezGene;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.jax.mgi.shr.bucketizer.AbstractBucketizer;
+import org.jax.mgi.shr.bucketizer.BucketItem;
+import org.jax.mgi.shr.bucketizer.BucketItem.Association;
+import org.jax.mgi.shr.bucketizer.Bucketizable;
+import org.jax.mgi.shr.bucketizer.BucketizableSource;
+import org.jax.mgi.shr.bucketizer.DisjointSetClusterer;
+import org.jax.mgi.shr.bucketizer.Partitioner;
+import org.jax.mgi.shr.dbutils.DataIterator;
+import org.jax.mgi.shr.exception.MGIException;
+
+/**
+ * is a check that the DisjointSetClusterer finds the same connected
+ * components as the AbstractBucketizer. Randomized datasets of Entrez
+ * genes and MGI markers are clustered by the AbstractBucketizer and by the
+ * DisjointSetClusterer whole, partitioned by chromosome, streamed in two
+ * passes and both partitioned and streamed. For each engine the
+ * components are compared by cardinality class, members and association
+ * labels, and getMemberCount is compared with the SVAIndex of the
+ * AbstractBucketizer for every value held by a member.
+ * <p>
+ * Most values link a marker with the Entrez gene of the same id or the
+ * next one, and some are drawn from a small shared pool, so they are held
+ * by more than one member of the same provider and are excluded from
+ * bucketizing. Members are placed on one of a few chromosomes or on 'UN'
+ * and some genes are not on the chromosome of their marker, so values link
+ * members of different partitions and the 'UN' members join components
+ * across chromosomes.
+ * <p>
+ * Run with java org.jax.mgi.app.entrezGene.ClusteringEquivalence
+ * [datasets [genes]]. The exit status is 1 if any dataset differs.
+ * @has the number of datasets and the number of Entrez genes and of
+ * markers in each
+ * @does clusters each dataset with every engine and reports the datasets
+ * on which an engine differs from the AbstractBucketizer
+ * @company The Jackson Laboratory
+ * @author M Walker
+ *
+ */
+
+public class ClusteringEquivalence
+{
+    /**
+     * the default number of datasets checked
+     */
+    public static final int DATASETS = 30;
+
+    /**
+     * the default number of Entrez genes and of MGI markers in a dataset
+     */
+    public static final int GENES = 2000;
+
+    /**
+     * the largest number of accession ids of a member
+     */
+    public static final int MAX_ACCIDS = 4;
+
+    /**
+     * the number of threads the partitioned DisjointSetClusterer runs on
+     */
+    public static final int THREADS = 3;
+
+    /**
+     * the chromosomes members are placed on besides 'UN'
+     */
+    private static final String[] chromosomes = {"1", "2", "3", "X", "MT"};
+
+    /**
+     * the attribute names used for bucketizing
+     */
+    private static final String[] sequenceGroups =
+        {Constants.GENBANK, Constants.MGIID, Constants.XM, Constants.XR,
+         Constants.XP, Constants.NM, Constants.NR, Constants.NP,
+         Constants.NG, Constants.NT, Constants.NW};
+
+    private EntrezGeneBucketizable[] entrezGenes = null;
+    private EntrezGeneBucketizable[] markers = null;
+
+    // the chromosome of each member
+    private IdentityHashMap chromosomesByMember = new IdentityHashMap();
+
+    // the sequence groups of the values held by the members, by value
+    private HashMap valueGroups = new HashMap();
+
+    /**
+     * constructor which creates a dataset. Each marker holds a few accession
+     * ids of its own, most of which are also held by the Entrez gene of the
+     * same id, and every tenth marker also holds an accession id of the
+     * next Entrez gene. Now and then a member also holds an accession id of
+     * a small shared pool, which is then usually held by other members of
+     * the same provider too
+     * @param seed the seed of the dataset
+     * @param genes the number of Entrez genes and of MGI markers
+     */
+    public ClusteringEquivalence(long seed, int genes)
+    {
+        Random random = new Random(seed);
+        AccessionClassifier classifier = new AccessionClassifier();
+        AccessionMix mix = new AccessionMix();
+        SequenceAccession[] shared = createAccessions(mix, genes / 10 + 1);
+
+        this.entrezGenes = new EntrezGeneBucketizable[genes];
+        this.markers = new EntrezGeneBucketizable[genes];
+        SequenceAccession[][] own = new SequenceAccession[genes][];
+        String[] markerChromosomes = new String[genes];
+        for (int i = 0; i < genes; i++)
+        {
+            own[i] = createAccessions(mix, 1 + random.nextInt(MAX_ACCIDS));
+            markerChromosomes[i] = getChromosome(random);
+            this.markers[i] = createMember(String.valueOf(i),
+                Constants.PROVIDER_MGI, markerChromosomes[i]);
+            // most genes are on the chromosome of the marker of the same
+            // id, some are on another
+            String chromosome = markerChromosomes[i];
+            if (random.nextInt(20) == 0)
+                chromosome = getChromosome(random);
+            this.entrezGenes[i] = createMember(String.valueOf(i),
+                Constants.PROVIDER_ENTREZGENE, chromosome);
+        }
+        for (int i = 0; i < genes; i++)
+        {
+            for (int j = 0; j < own[i].length; j++)
+            {
+                addSequence(this.markers[i], own[i][j], classifier);
+                if (random.nextInt(5) != 0)
+                    addSequence(this.entrezGenes[i], own[i][j], classifier);
+            }
+            if (i % 10 == 0 && i + 1 < genes)
+                addSequence(this.markers[i], own[i + 1][0], classifier);
+            if (random.nextInt(8) == 0)
+                addSequence(this.markers[i],
+                    shared[random.nextInt(shared.length)], classifier);
+            if (random.nextInt(8) == 0)
+                addSequence(this.entrezGenes[i],
+                    shared[random.nextInt(shared.length)], classifier);
+        }
+    }
+
+    /**
+     * check the datasets and report the result
+     * @param args the number of datasets and the number of Entrez genes and
+     * of markers in each, both optional
+     * @throws MGIException thrown if a dataset could not be clustered
+     */
+    public static void main(String[] args) throws MGIException
+    {
+        int datasets = (args.length > 0 ? Integer.parseInt(args[0])
+                                        : DATASETS);
+        int genes = (args.length > 1 ? Integer.parseInt(args[1]) : GENES);
+        int failed = 0;
+        for (int seed = 0; seed < datasets; seed++)
+        {
+            ClusteringEquivalence dataset =
+                new ClusteringEquivalence(seed, genes);
+            String result = dataset.check();
+            System.out.println("dataset " + seed + ": " + result);
+            if (!result.startsWith("same"))
+                failed++;
+        }
+        if (failed > 0)
+        {
+            System.out.println(failed + " of " + datasets +
+                               " datasets differ");
+            System.exit(1);
+        }
+        System.out.println("all " + datasets + " datasets match");
+    }
+
+    /**
+     * cluster the dataset with every engine and compare each with the
+     * AbstractBucketizer
+     * @return a line starting with "same" and describing the dataset if
+     * all engines match, otherwise naming the engines which differ
+     * @throws MGIException thrown if the dataset could not be clustered
+     */
+    public String check() throws MGIException
+    {
+        RecordingBucketizer reference = new RecordingBucketizer(
+            new ArrayIterator(this.entrezGenes),
+            new ArrayIterator(this.markers));
+        reference.run(Constants.PROVIDER_MGI, Constants.PROVIDER_ENTREZGENE);
+        Collections.sort(reference.items);
+
+        StringBuffer differences = new StringBuffer();
+        String[] names = {"whole", "partitioned", "streamed",
+                          "partitioned and streamed"};
+        DisjointSetClusterer partitioned = null;
+        for (int e = 0; e < names.length; e++)
+        {
+            boolean partition = (e == 1 || e == 3);
+            boolean stream = (e == 2 || e == 3);
+            DisjointSetClusterer clusterer = null;
+            if (partition)
+                clusterer = new DisjointSetClusterer(sequenceGroups,
+                    new ChromosomePartitioner(), THREADS);
+            else
+                clusterer = new DisjointSetClusterer(sequenceGroups);
+            RecordingBucketizer bucketizer =
+                new RecordingBucketizer(null, null);
+            if (stream)
+                clusterer.run(new ArraySource(this.entrezGenes),
+                              new ArraySource(this.markers),
+                              Constants.PROVIDER_MGI,
+                              Constants.PROVIDER_ENTREZGENE, bucketizer);
+            else
+                clusterer.run(new ArrayIterator(this.entrezGenes),
+                              new ArrayIterator(this.markers),
+                              Constants.PROVIDER_MGI,
+                              Constants.PROVIDER_ENTREZGENE, bucketizer);
+            if (partition)
+                partitioned = clusterer;
+            Collections.sort(bucketizer.items);
+            if (!bucketizer.items.equals(reference.items))
+                differences.append(" " + names[e] + " components");
+            if (!isSameCounts(reference, clusterer))
+                differences.append(" " + names[e] + " counts");
+        }
+        if (differences.length() > 0)
+            return "differs:" + differences;
+        return "same " + reference.items.size() + " components, " +
+            getLinkedComponents(reference) + " linked, " +
+            getExcludedValues() + " excluded values, " +
+            getCrossPartitionValues() + " cross partition values, " +
+            partitioned.getPartitionCount() + " partitions";
+    }
+
+    /**
+     * determine whether the DisjointSetClusterer counts the same members
+     * holding each value as the SVAIndex of the AbstractBucketizer
+     * @param reference the AbstractBucketizer
+     * @param clusterer the DisjointSetClusterer
+     * @return true if all counts are the same
+     */
+    private boolean isSameCounts(RecordingBucketizer reference,
+                                 DisjointSetClusterer clusterer)
+    {
+        for (Iterator i = this.valueGroups.keySet().iterator(); i.hasNext();)
+        {
+            Object value = i.next();
+            String group = (String)this.valueGroups.get(value);
+            if (reference.getMemberCount(group, value) !=
+                clusterer.getMemberCount(group, value))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * get the number of components holding members of both providers
+     * @param reference the AbstractBucketizer
+     * @return the number of components
+     */
+    private int getLinkedComponents(RecordingBucketizer reference)
+    {
+        int linked = 0;
+        for (Iterator i = reference.items.iterator(); i.hasNext();)
+        {
+            String item = (String)i.next();
+            if (!item.startsWith("1:0") && !item.startsWith("0:1"))
+                linked++;
+        }
+        return linked;
+    }
+
+    /**
+     * get the number of values held by more than one member of the same
+     * provider, which are excluded from bucketizing
+     * @return the number of values
+     */
+    private int getExcludedValues()
+    {
+        return getSharedValues(this.entrezGenes) +
+            getSharedValues(this.markers);
+    }
+
+    /**
+     * get the number of values held by more than one of the given members
+     * @param members the members of one provider
+     * @return the number of values
+     */
+    private int getSharedValues(EntrezGeneBucketizable[] members)
+    {
+        HashSet held = new HashSet();
+        HashSet shared = new HashSet();
+        for (int m = 0; m < members.length; m++)
+        {
+            Set values = members[m].getAllSequences();
+            for (Iterator i = values.iterator(); i.hasNext();)
+            {
+                Object value = i.next();
+                if (!held.add(value))
+                    shared.add(value);
+            }
+        }
+        return shared.size();
+    }
+
+    /**
+     * get the number of values held by members on different chromosomes
+     * @return the number of values
+     */
+    private int getCrossPartitionValues()
+    {
+        HashMap valueChromosomes = new HashMap();
+        HashSet crossing = new HashSet();
+        addChromosomes(this.entrezGenes, valueChromosomes, crossing);
+        addChromosomes(this.markers, valueChromosomes, crossing);
+        return crossing.size();
+    }
+
+    /**
+     * record the chromosome of the first member holding each value and
+     * note the values also held by members on another chromosome
+     * @param members the members
+     * @param valueChromosomes the chromosome of each value
+     * @param crossing the values held on more than one chromosome
+     */
+    private void addChromosomes(EntrezGeneBucketizable[] members,
+                                HashMap valueChromosomes, HashSet crossing)
+    {
+        for (int m = 0; m < members.length; m++)
+        {
+            Object chromosome = this.chromosomesByMember.get(members[m]);
+            Set values = members[m].getAllSequences();
+            for (Iterator i = values.iterator(); i.hasNext();)
+            {
+                Object value = i.next();
+                Object first = valueChromosomes.get(value);
+                if (first == null)
+                    valueChromosomes.put(value, chromosome);
+                else if (!first.equals(chromosome))
+                    crossing.add(value);
+            }
+        }
+    }
+
+    /**
+     * create accessions
+     * @param mix the generator of the accession ids
+     * @param count the number of accessions
+     * @return the accessions
+     */
+    private static SequenceAccession[] createAccessions(AccessionMix mix,
+                                                        int count)
+    {
+        String[] accids = mix.createAccids(count);
+        SequenceAccession[] accs = new SequenceAccession[count];
+        for (int i = 0; i < count; i++)
+            accs[i] = new SequenceAccession(accids[i], SequenceAccession.RNA);
+        return accs;
+    }
+
+    /**
+     * create a member without accession ids
+     * @param id the id of the member
+     * @param provider the provider of the member
+     * @param chromosome the chromosome of the member
+     * @return the member
+     */
+    private EntrezGeneBucketizable createMember(String id, String provider,
+                                                String chromosome)
+    {
+        EntrezGeneBucketizable member =
+            new EntrezGeneBucketizable(id, provider);
+        this.chromosomesByMember.put(member, chromosome);
+        return member;
+    }
+
+    /**
+     * add an accession to a member in the category of its accession id
+     * @param member the member
+     * @param acc the accession
+     * @param classifier the classifier of the accession ids
+     */
+    private void addSequence(EntrezGeneBucketizable member,
+                             SequenceAccession acc,
+                             AccessionClassifier classifier)
+    {
+        SequenceCategory category = classifier.getCategory(acc.getAccid());
+        member.addSequence(category, acc);
+        this.valueGroups.put(acc, category.getName());
+    }
+
+    /**
+     * pick a chromosome, one in ten members being on 'UN'
+     * @param random the random number generator
+     * @return the chromosome
+     */
+    private static String getChromosome(Random random)
+    {
+        if (random.nextInt(10) == 0)
+            return "UN";
+        return chromosomes[random.nextInt(chromosomes.length)];
+    }
+
+    /**
+     * describe a BucketItem by its cardinality class, its members and its
+     * associations with their labels, each in sorted order
+     * @param bucket the cardinality class
+     * @param item the BucketItem
+     * @return the description
+     */
+    private static String describe(String bucket, BucketItem item)
+    {
+        TreeSet members = new TreeSet();
+        for (Iterator i = item.membersIterator(); i.hasNext();)
+        {
+            Bucketizable b = (Bucketizable)i.next();
+            members.add(b.getProvider() + ":" + b.getId());
+        }
+        TreeSet associations = new TreeSet();
+        for (Iterator i = item.associationsIterator(Constants.PROVIDER_MGI);
+             i.hasNext();)
+        {
+            Association assoc = (Association)i.next();
+            associations.add(
+                getId(assoc.getMember(Constants.PROVIDER_MGI)) + "-" +
+                getId(assoc.getMember(Constants.PROVIDER_ENTREZGENE)) + "=" +
+                getLabel(assoc.getLabel()));
+        }
+        return bucket + " " + members + " " + associations;
+    }
+
+    /**
+     * get the id of an associated member
+     * @param b the member or null
+     * @return the id or '-' if there is no member
+     */
+    private static String getId(Bucketizable b)
+    {
+        return (b == null ? "-" : b.getId());
+    }
+
+    /**
+     * get an association label as a string which does not depend on the
+     * iteration order of the label
+     * @param label the label
+     * @return the string
+     */
+    private static String getLabel(Object label)
+    {
+        if (label instanceof Collection)
+        {
+            TreeSet sorted = new TreeSet();
+            for (Iterator i = ((Collection)label).iterator(); i.hasNext();)
+                sorted.add(String.valueOf(i.next()));
+            return sorted.toString();
+        }
+        return String.valueOf(label);
+    }
+
+    /**
+     * is a Partitioner which names the partition of a member by its
+     * chromosome, as the EntrezGeneBucketizer does
+     * @has nothing
+     * @does looks up the chromosome of a member
+     */
+    private class ChromosomePartitioner implements Partitioner
+    {
+        public String getPartition(Bucketizable b)
+        {
+            return (String)chromosomesByMember.get(b);
+        }
+    }
+
+    /**
+     * is a bucketizer which records a description of each component it is
+     * given and, when it bucketized the members itself, answers the number
+     * of members holding a value from its SVAIndex
+     * @has the descriptions of the components
+     * @does records the components
+     */
+    private static class RecordingBucketizer extends AbstractBucketizer
+    {
+        public ArrayList items = new ArrayList();
+
+        public RecordingBucketizer(DataIterator it1, DataIterator it2)
+        throws MGIException
+        {
+            super(it1, it2, sequenceGroups);
+        }
+
+        public int getMemberCount(String group, Object value)
+        {
+            Set members = super.index.lookup(group, value);
+            return (members == null ? 0 : members.size());
+        }
+
+        public void process_One_To_One(BucketItem b)
+        {
+            items.add(describe("1:1", b));
+        }
+
+        public void process_One_To_Many(BucketItem b)
+        {
+            items.add(describe("1:N", b));
+        }
+
+        public void process_Many_To_One(BucketItem b)
+        {
+            items.add(describe("N:1", b));
+        }
+
+        public void process_Many_To_Many(BucketItem b)
+        {
+            items.add(describe("N:M", b));
+        }
+
+        public void process_One_To_Zero(BucketItem b)
+        {
+            items.add(describe("1:0", b));
+        }
+
+        public void process_Zero_To_One(BucketItem b)
+        {
+            items.add(describe("0:1", b));
+        }
+
+        public void postProcess()
+        {
+        }
+    }
+
+    /**
+     * is a BucketizableSource over an array
+     * @has the array
+     * @does opens ArrayIterators over the array
+     */
+    private static class ArraySource implements BucketizableSource
+    {
+        private Object[] elements = null;
+
+        public ArraySource(Object[] elements)
+        {
+            this.elements = elements;
+        }
+
+        public DataIterator open()
+        {
+            return new ArrayIterator(elements);
+        }
+    }
+
+    /**
+     * is a DataIterator over an array
+     * @has the array and the index of the next element
+     * @does iterates over the array
+     */
+    private static class ArrayIterator implements DataIterator
+    {
+        private Object[] elements = null;
+        private int next = 0;
+
+        public ArrayIterator(Object[] elements)
+        {
+            this.elements = elements;
+        }
+
+        public boolean hasNext()
+        {
+            return next < elements.length;
+        }
+
+        public Object next()
+        {
+            return elements[next++];
+        }
+
+        public void close()
+        {
+        }
+    }
+}
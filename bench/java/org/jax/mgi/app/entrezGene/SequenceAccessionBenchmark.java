@@ -0,0 +1,102 @@
+package org.jax.mgi.app.entrezGene;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * is a JMH benchmark for creating and hashing SequenceAccession objects
+ * the way the query interpreters and the bucketizer index do. The reported
+ * score is per accession id
+ * @has a batch of accession ids from the AccessionMix
+ * @does measures the throughput of SequenceAccession construction, hashing
+ * and equality checks
+ * @company The Jackson Laboratory
+ * @author M Walker
+ *
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SequenceAccessionBenchmark
+{
+    /**
+     * the number of accession ids processed per invocation
+     */
+    public static final int BATCH = 1024;
+
+    private String[] accids = null;
+    private SequenceAccession[] accessions = null;
+    private SequenceAccession[] copies = null;
+
+    @Setup
+    public void setup()
+    {
+        this.accids = new AccessionMix().createAccids(BATCH);
+        this.accessions = new SequenceAccession[BATCH];
+        this.copies = new SequenceAccession[BATCH];
+        for (int i = 0; i < BATCH; i++)
+        {
+            this.accessions[i] =
+                new SequenceAccession(accids[i], SequenceAccession.RNA);
+            // the MGI side materializes its own copy of the same id
+            this.copies[i] = new SequenceAccession(
+                new String(accids[i]), SequenceAccession.RNA);
+        }
+    }
+
+    /**
+     * create SequenceAccession objects from accession ids
+     * @param bh the Blackhole which consumes the results
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void construct(Blackhole bh)
+    {
+        for (int i = 0; i < accids.length; i++)
+            bh.consume(new SequenceAccession(accids[i],
+                SequenceAccession.RNA));
+    }
+
+    /**
+     * create SequenceAccession objects from freshly read strings and hash
+     * them as the bucketizer index does when they are added to it
+     * @param bh the Blackhole which consumes the results
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void constructAndHash(Blackhole bh)
+    {
+        for (int i = 0; i < accids.length; i++)
+            bh.consume(new SequenceAccession(new String(accids[i]),
+                SequenceAccession.RNA).hashCode());
+    }
+
+    /**
+     * compare SequenceAccession objects for equality with the copy of the
+     * same accession id made by the other provider
+     * @param bh the Blackhole which consumes the results
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void equalsOtherProvider(Blackhole bh)
+    {
+        for (int i = 0; i < accessions.length; i++)
+            bh.consume(accessions[i].equals(copies[i]));
+    }
+}
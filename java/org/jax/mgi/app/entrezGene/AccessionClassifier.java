@@ -1,14 +1,18 @@
 package org.jax.mgi.app.entrezGene;
 
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
-
 /**
  * is a class that can identify types of accession numbers by their
  * character patterns
  * @has nothing
- * @does identifies accession types (NM, NR, NP, NG, NT, NW, XM, XR, XP, GenBank, MGI)
- * by applying pattern matching on the accession characters
+ * @does identifies accession types (NM, NR, NP, NG, NT, NW, XM, XR, XP,
+ * GenBank, MGI) by scanning the accession characters. The scan is done in
+ * place on the given accession id so no regular expression objects or
+ * intermediate strings are created during classification. The results are
+ * the same as those of the previous regular expression classifier which
+ * matched (case insensitively) 'MGI:', 'XM_', 'XR_', 'XP_', 'NM_', 'NR_',
+ * 'NP_', 'NG_', 'NT_', 'NW_' anywhere in the accession id in that order of
+ * precedence followed by the GenBank pattern
+ * [A-Z]{1}[0-9]{5}|[A-Z]{2}[0-9]{6}
  * @company Jackson Laboratory
  * @author M Walker
  *
@@ -16,18 +20,22 @@ import java.util.regex.Matcher;
 
 public class AccessionClassifier {
 
-    protected Pattern nmPattern = Pattern.compile("NM_.*");
-    protected Pattern npPattern = Pattern.compile("NP_.*");
-    protected Pattern nrPattern = Pattern.compile("NR_.*");
-    protected Pattern ngPattern = Pattern.compile("NG_.*");
-    protected Pattern ntPattern = Pattern.compile("NT_.*");
-    protected Pattern nwPattern = Pattern.compile("NW_.*");
-    protected Pattern xmPattern = Pattern.compile("XM_.*");
-    protected Pattern xrPattern = Pattern.compile("XR_.*");
-    protected Pattern xpPattern = Pattern.compile("XP_.*");
-    protected Pattern mgiPattern = Pattern.compile("MGI:.*");
-    protected Pattern genbankPattern =
-        Pattern.compile("[A-Z]{1}[0-9]{5}|[A-Z]{2}[0-9]{6}");
+    /**
+     * the RefSeq categories in the order of precedence in which they are
+     * reported when more than one prefix occurs in an accession id
+     */
+    private static final SequenceCategory[] refSeqPrecedence =
+        {SequenceCategory.XM, SequenceCategory.XR, SequenceCategory.XP,
+         SequenceCategory.NM, SequenceCategory.NR, SequenceCategory.NP,
+         SequenceCategory.NG, SequenceCategory.NT, SequenceCategory.NW};
+
+    /**
+     * the number of digits following a letter which identifies a GenBank
+     * accession id. The two letter/six digit GenBank form always contains
+     * a single letter followed by five digits, so only this form needs to
+     * be looked for.
+     */
+    private static final int GENBANK_DIGITS = 5;
 
     /**
      * obtain a named type from org.jax.mgi.app.entrezGene.Constants based on
@@ -37,56 +45,153 @@ public class AccessionClassifier {
      */
     public String classify(String accid)
     {
-        Matcher mgiMatcher =
-            mgiPattern.matcher(accid.toUpperCase());
-        Matcher nmMatcher =
-            nmPattern.matcher(accid.toUpperCase());
-        Matcher nrMatcher =
-            nrPattern.matcher(accid.toUpperCase());
-        Matcher npMatcher =
-            npPattern.matcher(accid.toUpperCase());
-        Matcher ngMatcher =
-            ngPattern.matcher(accid.toUpperCase());
-        Matcher ntMatcher =
-            ntPattern.matcher(accid.toUpperCase());
-        Matcher nwMatcher =
-            nwPattern.matcher(accid.toUpperCase());
-        Matcher xmMatcher =
-            xmPattern.matcher(accid.toUpperCase());
-        Matcher xpMatcher =
-            xpPattern.matcher(accid.toUpperCase());
-        Matcher xrMatcher =
-            xrPattern.matcher(accid.toUpperCase());
+        return getCategory(accid).getName();
+    }
 
-        Matcher genbankMatcher =
-            genbankPattern.matcher(accid.toUpperCase());
+    /**
+     * obtain the SequenceCategory of the given accession id
+     * @assumes nothing
+     * @effects nothing
+     * @param accid the accession id to classify
+     * @return the category of the accession
+     */
+    public SequenceCategory getCategory(String accid)
+    {
+        SequenceCategory category = scan(accid, true);
+        if (category == null)
+            // the accession id contains characters outside of the ASCII
+            // range which can change the length of the id when upper
+            // cased, so let String do the upper casing in this rare case
+            category = scan(accid.toUpperCase(), false);
+        return category;
+    }
+
+    /**
+     * classify the given accession id in a single pass over its characters
+     * @param accid the accession id to classify
+     * @param asciiOnly true if the scan should be abandoned when a
+     * character outside of the ASCII range is found
+     * @return the category of the accession or null if asciiOnly is true
+     * and a non ASCII character was found
+     */
+    private static SequenceCategory scan(String accid, boolean asciiOnly)
+    {
+        int len = accid.length();
 
-        if (mgiMatcher.find())
-             return Constants.MGIID;
-        else if (xmMatcher.find())
-            return Constants.XM;
-        else if (xrMatcher.find())
-            return Constants.XR;
-        else if (xpMatcher.find())
-            return Constants.XP;
-        else if (nmMatcher.find())
-            return Constants.NM;
-        else if (nrMatcher.find())
-            return Constants.NR;
-        else if (npMatcher.find())
-            return Constants.NP;
-        else if (ngMatcher.find())
-            return Constants.NG;
-        else if (ntMatcher.find())
-            return Constants.NT;
-        else if (nwMatcher.find())
-            return Constants.NW;
-        else if (genbankMatcher.find())
-             return Constants.GENBANK;
+        // bit set of the RefSeq prefixes found, indexed by category ordinal
+        int found = 0;
+
+        for (int i = 0; i < len; i++)
+        {
+            char c = accid.charAt(i);
+            if (c > 0x7f && asciiOnly)
+                return null;
+            c = toUpper(c);
+            if (c == 'M' && i + 3 < len &&
+                toUpper(accid.charAt(i + 1)) == 'G' &&
+                toUpper(accid.charAt(i + 2)) == 'I' &&
+                accid.charAt(i + 3) == ':')
+                // MGI ids take precedence over everything else
+                return SequenceCategory.MGIID;
+            if (i + 2 < len && accid.charAt(i + 2) == '_')
+            {
+                SequenceCategory refseq =
+                    getRefSeqCategory(c, toUpper(accid.charAt(i + 1)));
+                if (refseq != null)
+                    found |= 1 << refseq.ordinal();
+            }
+        }
+
+        if (found != 0)
+        {
+            for (int i = 0; i < refSeqPrecedence.length; i++)
+            {
+                SequenceCategory category = refSeqPrecedence[i];
+                if ((found & (1 << category.ordinal())) != 0)
+                    return category;
+            }
+        }
+
+        if (isGenBank(accid))
+            return SequenceCategory.GENBANK;
         else
-            return Constants.UNKNOWN;
+            return SequenceCategory.UNKNOWN;
+    }
+
+    /**
+     * upper case an ASCII letter
+     * @param c the character
+     * @return the upper case letter if c is a lower case ASCII letter,
+     * otherwise c
+     */
+    private static char toUpper(char c)
+    {
+        if (c >= 'a' && c <= 'z')
+            return (char)(c - ('a' - 'A'));
+        return c;
+    }
 
+    /**
+     * get the RefSeq category for the two (upper case) characters which
+     * precede an underscore
+     * @param first the first character of the prefix
+     * @param second the second character of the prefix
+     * @return the RefSeq category or null if the characters do not
+     * form a RefSeq prefix
+     */
+    private static SequenceCategory getRefSeqCategory(char first, char second)
+    {
+        if (first == 'X')
+        {
+            switch (second)
+            {
+                case 'M': return SequenceCategory.XM;
+                case 'R': return SequenceCategory.XR;
+                case 'P': return SequenceCategory.XP;
+            }
+        }
+        else if (first == 'N')
+        {
+            switch (second)
+            {
+                case 'M': return SequenceCategory.NM;
+                case 'R': return SequenceCategory.NR;
+                case 'P': return SequenceCategory.NP;
+                case 'G': return SequenceCategory.NG;
+                case 'T': return SequenceCategory.NT;
+                case 'W': return SequenceCategory.NW;
+            }
+        }
+        return null;
     }
 
+    /**
+     * determine whether the given accession id contains a letter followed
+     * by five digits anywhere within it
+     * @param accid the accession id
+     * @return true if the accession id contains the GenBank pattern
+     */
+    private static boolean isGenBank(String accid)
+    {
+        int len = accid.length();
+        int digits = 0;
+        for (int i = len - 1; i >= 0; i--)
+        {
+            char c = accid.charAt(i);
+            if (c >= '0' && c <= '9')
+            {
+                digits++;
+                continue;
+            }
+            if (digits >= GENBANK_DIGITS)
+            {
+                char u = toUpper(c);
+                if (u >= 'A' && u <= 'Z')
+                    return true;
+            }
+            digits = 0;
+        }
+        return false;
+    }
 
 }
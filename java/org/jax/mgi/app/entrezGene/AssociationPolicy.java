@@ -0,0 +1,138 @@
+package org.jax.mgi.app.entrezGene;
+
+import org.jax.mgi.dbs.mgd.LogicalDBConstants;
+
+/**
+ * is an enumeration of the rules for associating the sequences of an
+ * EntrezGene with the marker it is matched to, one for each sequence
+ * category which is associated. Each rule names the logical database of
+ * the association, whether the sequence must be exclusive to the
+ * EntrezGene and the type of sequence associated. An exclusive sequence is
+ * associated only when the EntrezGene is the one Bucketizable holding it
+ * across the whole index, counting the Bucketizables of every bucket and
+ * those whose sequence was excluded from bucketizing for being held by
+ * more than one member of the same provider. The rules are declared in the
+ * order the associations are created
+ * @has the sequence category, logical database, exclusivity and sequence
+ * type of each rule
+ * @does decides which sequences of a category are associated
+ * @company Jackson Laboratory
+ * @author M Walker
+ *
+ */
+
+public enum AssociationPolicy
+{
+    GENBANK(SequenceCategory.GENBANK, LogicalDBConstants.SEQUENCE, true,
+            SequenceAccession.RNA),
+    XM(SequenceCategory.XM, LogicalDBConstants.REFSEQ, true),
+    XR(SequenceCategory.XR, LogicalDBConstants.REFSEQ, true),
+    XP(SequenceCategory.XP, LogicalDBConstants.REFSEQ, true),
+    NM(SequenceCategory.NM, LogicalDBConstants.REFSEQ, true),
+    NR(SequenceCategory.NR, LogicalDBConstants.REFSEQ, true),
+    NP(SequenceCategory.NP, LogicalDBConstants.REFSEQ, true),
+    NG(SequenceCategory.NG, LogicalDBConstants.REFSEQ, false),
+    // TR9773 - do not restrict NT and NW to associations with only one
+    // marker
+    NT(SequenceCategory.NT, LogicalDBConstants.NCBI_GENEMODEL_EVIDENCE,
+       false),
+    NW(SequenceCategory.NW, LogicalDBConstants.NCBI_GENEMODEL_EVIDENCE,
+       false);
+
+    /**
+     * the sequence type of a rule which associates sequences of any type
+     */
+    private static final int ANY_TYPE = -1;
+
+    /**
+     * the sequence category the rule applies to
+     */
+    private final SequenceCategory category;
+
+    /**
+     * the logical database of the associations
+     */
+    private final Integer logicalDBKey;
+
+    /**
+     * whether the sequence must be held by no other Bucketizable in the
+     * index
+     */
+    private final boolean exclusive;
+
+    /**
+     * the type of the sequences associated or ANY_TYPE
+     */
+    private final int type;
+
+    /**
+     * constructor for a rule which associates sequences of any type
+     * @param category the sequence category
+     * @param logicalDBKey the logical database of the associations
+     * @param exclusive whether the sequence must be held by no other
+     * Bucketizable in the index
+     */
+    private AssociationPolicy(SequenceCategory category, int logicalDBKey,
+                              boolean exclusive)
+    {
+        this(category, logicalDBKey, exclusive, ANY_TYPE);
+    }
+
+    /**
+     * constructor
+     * @param category the sequence category
+     * @param logicalDBKey the logical database of the associations
+     * @param exclusive whether the sequence must be held by no other
+     * Bucketizable in the index
+     * @param type the type of the sequences associated
+     */
+    private AssociationPolicy(SequenceCategory category, int logicalDBKey,
+                              boolean exclusive, int type)
+    {
+        this.category = category;
+        this.logicalDBKey = new Integer(logicalDBKey);
+        this.exclusive = exclusive;
+        this.type = type;
+    }
+
+    /**
+     * get the sequence category the rule applies to
+     * @return the sequence category
+     */
+    public SequenceCategory getCategory()
+    {
+        return this.category;
+    }
+
+    /**
+     * get the logical database of the associations
+     * @return the logical database key
+     */
+    public Integer getLogicalDBKey()
+    {
+        return this.logicalDBKey;
+    }
+
+    /**
+     * get whether a sequence is associated only when it is held by exactly
+     * one Bucketizable in the whole index, which requires the number of
+     * Bucketizables holding it to be looked up. The count covers every
+     * bucket and includes the Bucketizables holding a sequence which was
+     * excluded from bucketizing, so such a sequence is never associated
+     * @return true if the sequence must be held by no other Bucketizable
+     */
+    public boolean isExclusive()
+    {
+        return this.exclusive;
+    }
+
+    /**
+     * determine whether the type of a sequence is associated by the rule
+     * @param acc the sequence
+     * @return true if sequences of its type are associated
+     */
+    public boolean acceptsType(SequenceAccession acc)
+    {
+        return this.type == ANY_TYPE || acc.getType() == this.type;
+    }
+}
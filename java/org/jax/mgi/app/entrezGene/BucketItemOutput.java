@@ -0,0 +1,175 @@
+package org.jax.mgi.app.entrezGene;
+
+import java.util.ArrayList;
+import java.util.Set;
+
+import org.jax.mgi.dbs.mgd.AccessionLib;
+import org.jax.mgi.shr.dbutils.dao.SQLStream;
+import org.jax.mgi.shr.exception.MGIException;
+import org.jax.mgi.shr.ioutils.OutputManager;
+
+/**
+ * is the output of processing one BucketItem: the marker associations
+ * written to the load stream, the lines written to the bucket reports and
+ * the Entrez gene ids seen. When direct, the output is written as it is
+ * made. When buffered, the output is recorded so that a BucketItem can be
+ * processed on a worker thread and its output written later, on the thread
+ * which owns the load stream and the reports, in the order the BucketItems
+ * were given by the bucketizer.
+ * @has the load stream, the set of Entrez gene ids and the recorded output
+ * @does writes or records marker associations, report lines and Entrez gene
+ * ids and writes the recorded output
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class BucketItemOutput
+{
+    private SQLStream loadStream = null;
+    private Set egIdSet = null;
+
+    // the recorded output in the order it was made or null if direct
+    private ArrayList recorded = null;
+
+    /**
+     * constructor
+     * @param loadStream the SQLStream marker associations are written to
+     * @param egIdSet the set Entrez gene ids are added to
+     * @param buffered true to record the output until flush() is called,
+     * false to write it as it is made
+     */
+    public BucketItemOutput(SQLStream loadStream, Set egIdSet,
+                            boolean buffered)
+    {
+        this.loadStream = loadStream;
+        this.egIdSet = egIdSet;
+        if (buffered)
+            this.recorded = new ArrayList();
+    }
+
+    /**
+     * create an association between an accession id and a marker
+     * @param logicalDBKey the logical database of the accession id
+     * @param accid the accession id
+     * @param markerKey the marker key
+     * @throws MGIException thrown if the association could not be written
+     */
+    public void createMarkerAssociation(Integer logicalDBKey, String accid,
+                                        Integer markerKey)
+    throws MGIException
+    {
+        if (this.recorded == null)
+            writeMarkerAssociation(logicalDBKey, accid, markerKey);
+        else
+            this.recorded.add(
+                new MarkerAssociation(logicalDBKey, accid, markerKey));
+    }
+
+    /**
+     * write a line to a bucket report
+     * @param reportAlias the report alias
+     * @param line the line
+     * @throws MGIException thrown if the line could not be written
+     */
+    public void writeln(String reportAlias, String line) throws MGIException
+    {
+        if (this.recorded == null)
+            OutputManager.writeln(reportAlias, line);
+        else
+            this.recorded.add(new ReportLine(reportAlias, line));
+    }
+
+    /**
+     * add an Entrez gene id to the set of ids seen
+     * @param egId the Entrez gene id
+     */
+    public void addEntrezGeneId(String egId)
+    {
+        if (this.recorded == null)
+            this.egIdSet.add(egId);
+        else
+            this.recorded.add(egId);
+    }
+
+    /**
+     * write the recorded output in the order it was made
+     * @assumes this is called on the thread which owns the load stream
+     * @effects the recorded output will be written and cleared
+     * @throws MGIException thrown if the output could not be written
+     */
+    public void flush() throws MGIException
+    {
+        if (this.recorded == null)
+            return;
+        for (int i = 0; i < this.recorded.size(); i++)
+        {
+            Object o = this.recorded.get(i);
+            if (o instanceof MarkerAssociation)
+            {
+                MarkerAssociation a = (MarkerAssociation)o;
+                writeMarkerAssociation(a.logicalDBKey, a.accid, a.markerKey);
+            }
+            else if (o instanceof ReportLine)
+            {
+                ReportLine l = (ReportLine)o;
+                OutputManager.writeln(l.reportAlias, l.line);
+            }
+            else
+                this.egIdSet.add(o);
+        }
+        this.recorded.clear();
+    }
+
+    /**
+     * write an association between an accession id and a marker to the
+     * load stream
+     * @param logicalDBKey the logical database of the accession id
+     * @param accid the accession id
+     * @param markerKey the marker key
+     * @throws MGIException thrown if the association could not be written
+     */
+    private void writeMarkerAssociation(Integer logicalDBKey, String accid,
+                                        Integer markerKey)
+    throws MGIException
+    {
+        AccessionLib.createMarkerAssociation(logicalDBKey, accid, markerKey,
+            new Integer(Constants.EGLOAD_REFSKEY), this.loadStream);
+    }
+
+    /**
+     * is a recorded marker association
+     * @has the logical database, accession id and marker key
+     * @does nothing
+     */
+    private static class MarkerAssociation
+    {
+        public Integer logicalDBKey = null;
+        public String accid = null;
+        public Integer markerKey = null;
+
+        public MarkerAssociation(Integer logicalDBKey, String accid,
+                                 Integer markerKey)
+        {
+            this.logicalDBKey = logicalDBKey;
+            this.accid = accid;
+            this.markerKey = markerKey;
+        }
+    }
+
+    /**
+     * is a recorded report line
+     * @has the report alias and the line
+     * @does nothing
+     */
+    private static class ReportLine
+    {
+        public String reportAlias = null;
+        public String line = null;
+
+        public ReportLine(String reportAlias, String line)
+        {
+            this.reportAlias = reportAlias;
+            this.line = line;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.jax.mgi.app.entrezGene;
+
+import org.jax.mgi.shr.exception.ExceptionFactory;
+import org.jax.mgi.shr.exception.MGIException;
+
+/**
+ * An ExceptionFactory for errors raised while processing BucketItems on the
+ * worker threads of the EntrezGeneBucketizer.
+ * @has a hashmap of predefined MGIExceptions stored by a name key
+ * @does looks up MGIExceptions by name
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class BucketizerExceptionFactory extends ExceptionFactory {
+
+  /**
+   * the thread waiting for a BucketItem to be processed was interrupted
+   */
+  public static final String InterruptErr =
+      "org.jax.mgi.app.entrezGene.BucketizerInterruptErr";
+  static {
+    exceptionsMap.put(InterruptErr, new MGIException(
+        "Interrupted while waiting for the following bucket to be " +
+        "processed: ??", false));
+  }
+
+  /**
+   * a BucketItem failed with an unexpected error
+   */
+  public static final String UnexpectedErr =
+      "org.jax.mgi.app.entrezGene.BucketizerUnexpectedErr";
+  static {
+    exceptionsMap.put(UnexpectedErr, new MGIException(
+        "Unexpected error while processing the following bucket: ??",
+        false));
+  }
+
+
+}
@@ -1,5 +1,7 @@
 package org.jax.mgi.app.entrezGene;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
 
 import org.jax.mgi.shr.bucketizer.SimpleBucketizable;
@@ -12,7 +14,8 @@ import org.jax.mgi.shr.bucketizer.SimpleBucketizable;
  * the Bucketizable interface. Both EntrezGene and MgiMarker objects extend
  * this class so that they can be processed through the Bucketizer algorithm
  * @has a set of names identifying the set valued attributes that will be
- * used in the Bucketizer algorithm, an id and a provider id
+ * used in the Bucketizer algorithm, an id and a provider id and an array
+ * of the set valued attributes indexed by SequenceCategory
  * @does implements the Bucketizable interface for use in 'bucketizing' via
  * the AbstractBucketizer
  * @company Jackson Laboratory
@@ -31,6 +34,42 @@ public class EntrezGeneBucketizable extends SimpleBucketizable
 		Constants.XP, Constants.NM, Constants.NR, Constants.NP,
 		Constants.NG, Constants.NT, Constants.NW};
 
+    /**
+     * the sequence categories in ordinal order
+     */
+    private static final SequenceCategory[] categories =
+        SequenceCategory.values();
+
+    /**
+     * the slots of the RefSeq categories
+     */
+    private static final int[] refSeqSlots =
+        {SequenceCategory.NM.ordinal(), SequenceCategory.NR.ordinal(),
+         SequenceCategory.NP.ordinal(), SequenceCategory.NG.ordinal(),
+         SequenceCategory.NT.ordinal(), SequenceCategory.NW.ordinal(),
+         SequenceCategory.XM.ordinal(), SequenceCategory.XR.ordinal(),
+         SequenceCategory.XP.ordinal()};
+
+    /**
+     * the slots of the GenBank and RefSeq categories
+     */
+    private static final int[] allSequenceSlots =
+        {SequenceCategory.GENBANK.ordinal(), SequenceCategory.NM.ordinal(),
+         SequenceCategory.NR.ordinal(), SequenceCategory.NP.ordinal(),
+         SequenceCategory.NG.ordinal(), SequenceCategory.NT.ordinal(),
+         SequenceCategory.NW.ordinal(), SequenceCategory.XM.ordinal(),
+         SequenceCategory.XR.ordinal(), SequenceCategory.XP.ordinal()};
+
+    /**
+     * the set valued attributes indexed by SequenceCategory ordinal. These
+     * are the same sets held in the SVASet, which remains the view of the
+     * attributes used by the Bucketizer, so that the category accessors
+     * do not need to look the sets up by name. A slot is null until the
+     * SVASet holds a set for its category. The slot for UNKNOWN is always
+     * null
+     */
+    private Set[] slots = new Set[categories.length];
+
     /**
      * constructor
      * @param id the id of this instance
@@ -39,105 +78,158 @@ public class EntrezGeneBucketizable extends SimpleBucketizable
     public EntrezGeneBucketizable(String id, String provider)
     {
         super(id, provider, svaNames);
+        for (int i = 0; i < categories.length; i++)
+        {
+            SequenceCategory category = categories[i];
+            if (category != SequenceCategory.UNKNOWN)
+                slots[i] = super.svaSet.getSVA(category.getName());
+        }
+    }
+
+    /**
+     * get the sequences of the given category for this instance. The
+     * returned set is never null: a category without sequences (and the
+     * UNKNOWN category) returns the shared immutable empty set. The
+     * returned set must not be modified, use addSequence() instead
+     * @param category the sequence category
+     * @return the sequences
+     */
+    public Set getSequences(SequenceCategory category)
+    {
+        Set set = slots[category.ordinal()];
+        return (set == null ? Collections.EMPTY_SET : set);
+    }
+
+    /**
+     * add a sequence of the given category to this instance. Sequences of
+     * the UNKNOWN category are ignored
+     * @param category the sequence category
+     * @param accid the sequence to add
+     */
+    public void addSequence(SequenceCategory category, SequenceAccession accid)
+    {
+        if (category == SequenceCategory.UNKNOWN)
+            return;
+        int slot = category.ordinal();
+        Set set = slots[slot];
+        if (set != null)
+            set.add(accid);
+        else
+        {
+            // the SVASet has not created a set for this category yet
+            super.svaSet.addSVAMember(category.getName(), accid);
+            slots[slot] = super.svaSet.getSVA(category.getName());
+        }
     }
 
     /**
      * get the GenBank sequences for this instance
+     * (never null, see getSequences())
      * @return GenBank sequences
      */
     public Set getGenBankSequences()
     {
-        return super.svaSet.getSVA(Constants.GENBANK);
+        return getSequences(SequenceCategory.GENBANK);
     }
 
     /**
      * get the MGI ids for this instance
+     * (never null, see getSequences())
      * @return MG ids
      */
     public Set getMGIIDs()
     {
-        return super.svaSet.getSVA(Constants.MGIID);
+        return getSequences(SequenceCategory.MGIID);
     }
 
     /**
      * get the XM sequences from this instance
+     * (never null, see getSequences())
      * @return XM sequences
      */
     public Set getXMSequences()
     {
-        return super.svaSet.getSVA(Constants.XM);
+        return getSequences(SequenceCategory.XM);
     }
 
     /**
      * get the XR sequences from this instance
+     * (never null, see getSequences())
      * @return XR sequences
      */
     public Set getXRSequences()
     {
-        return super.svaSet.getSVA(Constants.XR);
+        return getSequences(SequenceCategory.XR);
     }
 
     /**
      * get the XP sequences from this instance
+     * (never null, see getSequences())
      * @return XP sequences
      */
     public Set getXPSequences()
     {
-        return super.svaSet.getSVA(Constants.XP);
+        return getSequences(SequenceCategory.XP);
     }
 
     /**
      * get the NM sequences from this instance
+     * (never null, see getSequences())
      * @return NM sequences
      */
     public Set getNMSequences()
     {
-        return super.svaSet.getSVA(Constants.NM);
+        return getSequences(SequenceCategory.NM);
     }
 
     /**
      * get the NR sequences from this instance
+     * (never null, see getSequences())
      * @return NR sequences
      */
     public Set getNRSequences()
     {
-        return super.svaSet.getSVA(Constants.NR);
+        return getSequences(SequenceCategory.NR);
     }
 
     /**
      * get the NP sequences from this instance
+     * (never null, see getSequences())
      * @return NP sequences
      */
     public Set getNPSequences()
     {
-        return super.svaSet.getSVA(Constants.NP);
+        return getSequences(SequenceCategory.NP);
     }
 
     /**
      * get the NG sequences from this instance
+     * (never null, see getSequences())
      * @return NG sequences
      */
     public Set getNGSequences()
     {
-        return super.svaSet.getSVA(Constants.NG);
+        return getSequences(SequenceCategory.NG);
     }
 
     /**
      * get the NT sequences from this instance
+     * (never null, see getSequences())
      * @return NT sequences
      */
     public Set getNTSequences()
     {
-        return super.svaSet.getSVA(Constants.NT);
+        return getSequences(SequenceCategory.NT);
     }
 
     /**
      * get the NW sequences from this instance
+     * (never null, see getSequences())
      * @return NW sequences
      */
     public Set getNWSequences()
     {
-        return super.svaSet.getSVA(Constants.NW);
+        return getSequences(SequenceCategory.NW);
     }
 
     /**
@@ -146,7 +238,7 @@ public class EntrezGeneBucketizable extends SimpleBucketizable
      */
     public void addGenBankSequence(SequenceAccession accid)
     {
-        super.svaSet.addSVAMember(Constants.GENBANK, accid);
+        addSequence(SequenceCategory.GENBANK, accid);
     }
 
     /**
@@ -155,7 +247,7 @@ public class EntrezGeneBucketizable extends SimpleBucketizable
      */
     public void addMGIID(SequenceAccession mgiID)
     {
-        super.svaSet.addSVAMember(Constants.MGIID, mgiID);
+        addSequence(SequenceCategory.MGIID, mgiID);
     }
 
     /**
@@ -164,7 +256,7 @@ public class EntrezGeneBucketizable extends SimpleBucketizable
      */
     public void addXMSequence(SequenceAccession accid)
     {
-        super.svaSet.addSVAMember(Constants.XM, accid);
+        addSequence(SequenceCategory.XM, accid);
     }
 
     /**
@@ -173,7 +265,7 @@ public class EntrezGeneBucketizable extends SimpleBucketizable
      */
     public void addXRSequence(SequenceAccession accid)
     {
-        super.svaSet.addSVAMember(Constants.XR, accid);
+        addSequence(SequenceCategory.XR, accid);
     }
 
     /**
@@ -182,7 +274,7 @@ public class EntrezGeneBucketizable extends SimpleBucketizable
      */
     public void addXPSequence(SequenceAccession accid)
     {
-        super.svaSet.addSVAMember(Constants.XP, accid);
+        addSequence(SequenceCategory.XP, accid);
     }
 
     /**
@@ -191,7 +283,7 @@ public class EntrezGeneBucketizable extends SimpleBucketizable
      */
     public void addNMSequence(SequenceAccession accid)
     {
-        super.svaSet.addSVAMember(Constants.NM, accid);
+        addSequence(SequenceCategory.NM, accid);
     }
 
     /**
@@ -200,7 +292,7 @@ public class EntrezGeneBucketizable extends SimpleBucketizable
      */
     public void addNRSequence(SequenceAccession accid)
     {
-        super.svaSet.addSVAMember(Constants.NR, accid);
+        addSequence(SequenceCategory.NR, accid);
     }
 
     /**
@@ -209,7 +301,7 @@ public class EntrezGeneBucketizable extends SimpleBucketizable
      */
     public void addNPSequence(SequenceAccession accid)
     {
-        super.svaSet.addSVAMember(Constants.NP, accid);
+        addSequence(SequenceCategory.NP, accid);
     }
 
     /**
@@ -218,7 +310,7 @@ public class EntrezGeneBucketizable extends SimpleBucketizable
      */
     public void addNGSequence(SequenceAccession accid)
     {
-        super.svaSet.addSVAMember(Constants.NG, accid);
+        addSequence(SequenceCategory.NG, accid);
     }
     /**
      * add an NT sequence to this instance
@@ -226,7 +318,7 @@ public class EntrezGeneBucketizable extends SimpleBucketizable
      */
     public void addNTSequence(SequenceAccession accid)
     {
-        super.svaSet.addSVAMember(Constants.NT, accid);
+        addSequence(SequenceCategory.NT, accid);
     }
     /**
      * add an NW sequence to this instance
@@ -234,8 +326,48 @@ public class EntrezGeneBucketizable extends SimpleBucketizable
      */
     public void addNWSequence(SequenceAccession accid)
     {
-        super.svaSet.addSVAMember(Constants.NW, accid);
+        addSequence(SequenceCategory.NW, accid);
+    }
+    /**
+     * get a read only view of all the RefSeq sequences (NM, NR, NP, NG, NT,
+     * NW, XM, XR, XP) of this instance. The sequences are not copied, use
+     * copyAllRefSeqSequences() to obtain a modifiable copy
+     * @return the RefSeq sequences
+     */
+    public Set getAllRefSeqSequences()
+    {
+        return new SequenceSetUnion(slots, refSeqSlots);
     }
+
+    /**
+     * get a read only view of all the GenBank and RefSeq sequences of this
+     * instance. The sequences are not copied, use copyAllSequences() to
+     * obtain a modifiable copy
+     * @return the GenBank and RefSeq sequences
+     */
+    public Set getAllSequences()
+    {
+        return new SequenceSetUnion(slots, allSequenceSlots);
+    }
+
+    /**
+     * get a copy of all the RefSeq sequences of this instance
+     * @return a new set of the RefSeq sequences
+     */
+    public HashSet copyAllRefSeqSequences()
+    {
+        return new HashSet(getAllRefSeqSequences());
+    }
+
+    /**
+     * get a copy of all the GenBank and RefSeq sequences of this instance
+     * @return a new set of the GenBank and RefSeq sequences
+     */
+    public HashSet copyAllSequences()
+    {
+        return new HashSet(getAllSequences());
+    }
+
     /**
      * get the String representation of this instance
      * @return String representation
@@ -2,11 +2,15 @@ package org.jax.mgi.app.entrezGene;
 
 import java.util.*;
 import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.jax.mgi.dbs.mgd.lookup.ProblemClonesLookup;
+import org.jax.mgi.shr.cache.LoadableCache;
 import org.jax.mgi.dbs.mgd.lookup.EntrezGeneHistory;
-import org.jax.mgi.dbs.mgd.lookup.GUIdsByMarkerKeyLookup;
-import org.jax.mgi.dbs.mgd.lookup.MarkersByGUIdLookup;
+import org.jax.mgi.dbs.mgd.lookup.GUAssociationIndex;
 import org.jax.mgi.dbs.rdr.query.EntrezGeneQuery.EntrezGene;
 import org.jax.mgi.dbs.mgd.query.MGIMarkerQuery.MGIMarker;
 import org.jax.mgi.dbs.mgd.query.NCBIGMQuery;
@@ -15,6 +19,9 @@ import org.jax.mgi.shr.bucketizer.AbstractBucketizer;
 import org.jax.mgi.shr.bucketizer.BucketItem;
 import org.jax.mgi.shr.bucketizer.BucketItem.Association;
 import org.jax.mgi.shr.bucketizer.Bucketizable;
+import org.jax.mgi.shr.bucketizer.BucketizableSource;
+import org.jax.mgi.shr.bucketizer.DisjointSetClusterer;
+import org.jax.mgi.shr.bucketizer.Partitioner;
 import org.jax.mgi.shr.exception.MGIException;
 import org.jax.mgi.shr.ioutils.OutputManager;
 import org.jax.mgi.shr.dbutils.DataIterator;
@@ -23,7 +30,6 @@ import org.jax.mgi.shr.dbutils.dao.SQLStream;
 import org.jax.mgi.shr.stringutil.Sprintf;
 import org.jax.mgi.shr.cache.CacheException;
 import org.jax.mgi.shr.stringutil.StringLib;
-import org.jax.mgi.dbs.mgd.AccessionLib;
 import org.jax.mgi.dbs.mgd.LogicalDBConstants;
 import org.jax.mgi.shr.config.EntrezGeneCfg;
 
@@ -44,6 +50,8 @@ import org.jax.mgi.shr.config.EntrezGeneCfg;
  *      2) whether a Marker has MGI GU association(s)
  *      3) whether a sequence is associated with a problem clone
  *      4) whether there is an EntrezGene association to a Homologene Group ID
+ * <LI>An optional pool of worker threads for processing the BucketItems
+ * whose output is written in the order the BucketItems were bucketized</LI>
  * </UL>
  * @does processes the association clusters by creating report entries and
  * creating accession associations in the MGI database
@@ -73,11 +81,9 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
     // A FullcachedLookup for obtaining problem clones
     private ProblemClonesLookup problemClones = null;
 
-    // A FullCachedLookup for obtaining the set of markers for a GU id
-    private MarkersByGUIdLookup markersByGUIdLookup = null;
-
-    // A FullCachedLookup for obtaining the set of GU ids for a marker
-    private GUIdsByMarkerKeyLookup guIdsByMarkerKeyLookup = null;
+    // A two way index for obtaining the markers of a GU id and the
+    // GU ids of a marker
+    private GUAssociationIndex guIndex = null;
 
     // An FullCachedLookup for obtaining previous associations
     // between EntrezGenes and MGIMarkers
@@ -86,9 +92,50 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
     // The full set of egIds from EntrezGene
     HashSet egIdSet = null;
 
+    // the incoming data and the attribute names used for bucketizing, kept
+    // for clustering with the DisjointSetClusterer
+    private DataIterator it1 = null;
+    private DataIterator it2 = null;
+    private String[] sequenceGroups = null;
+
+    // the sources the DisjointSetClusterer streams the data from twice or
+    // null to cluster the data read from the DataIterators
+    private BucketizableSource source1 = null;
+    private BucketizableSource source2 = null;
+
+    // the engine which found the connected components or null if they were
+    // found by the AbstractBucketizer
+    private DisjointSetClusterer clusterer = null;
+
     // A Runtime instance for obtaining runtime memory usage
     private Runtime rtime = Runtime.getRuntime();
 
+    // the number of BucketItems waiting to be written per worker thread
+    // before the bucketizer waits for the oldest one
+    private static final int PENDING_PER_THREAD = 64;
+
+    // the rules for associating the sequences of an EntrezGene with its
+    // marker in the order the associations are created
+    private static final AssociationPolicy[] ASSOCIATION_POLICIES =
+        AssociationPolicy.values();
+
+    // whether the bucket reports include previous associations, read once
+    // so the configuration is not accessed from the worker threads
+    private boolean performHistory = false;
+
+    // the number of threads BucketItems are processed on, 1 processes them
+    // on the thread running the bucketizer
+    private int bucketThreads = 1;
+
+    // the output of BucketItems processed on the thread running the
+    // bucketizer which is written as it is made
+    private BucketItemOutput directOutput = null;
+
+    // the pool of worker threads and the BucketItems submitted to it whose
+    // output has not yet been written, in the order they were submitted
+    private ExecutorService pool = null;
+    private LinkedList pending = new LinkedList();
+
     /**
      * constructor
      * @param it1 A DataIterator for incoming data to be bucketized. Could be
@@ -105,28 +152,371 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
                                 String[] sequenceGroups,
                                 SQLStream loadStream,
                                 EntrezGeneHistory history) throws MGIException {
+        // create all lookups and init caches upfront
+        this(it1, it2, sequenceGroups, loadStream, history,
+             (ProblemClonesLookup)init(new ProblemClonesLookup()),
+             (GUAssociationIndex)init(new GUAssociationIndex()));
+    }
+
+    /**
+     * constructor for lookups which have already been initialized, for
+     * instance concurrently by a LookupInitializer
+     * @param it1 A DataIterator for incoming data to be bucketized. Could be
+     * EntrezGenes or MGIMarkers... it doesnt matter which one.
+     * @param it2 A DataIterator for incoming data to be bucketized. Could be
+     * EntrezGenes or MGIMarkers... it doesnt matter which one.
+     * @param sequenceGroups a list of attribute names used for bucketizing
+     * @param loadStream A SQLStream for loading data in MGD
+     * @param history An instance of EntrezGeneHistory for reporting on
+     * previous associations between EntrezGene and MGIMarkers
+     * @param problemClones the initialized ProblemClonesLookup
+     * @param guIndex the loaded GUAssociationIndex
+     * @throws MGIException thrown to represent any error
+     */
+    public EntrezGeneBucketizer(DataIterator it1, DataIterator it2,
+                                String[] sequenceGroups,
+                                SQLStream loadStream,
+                                EntrezGeneHistory history,
+                                ProblemClonesLookup problemClones,
+                                GUAssociationIndex guIndex)
+    throws MGIException {
         super(it1, it2, sequenceGroups);
+        this.it1 = it1;
+        this.it2 = it2;
+        this.sequenceGroups = sequenceGroups;
         this.history = history;
         this.loadStream = loadStream;
         this.egCfg = new EntrezGeneCfg();
-        this.egCfg = new EntrezGeneCfg();
+        this.problemClones = problemClones;
+        this.guIndex = guIndex;
+        this.egIdSet = new HashSet();
+        this.performHistory = egCfg.getOkToPerformHistory().booleanValue();
+        this.bucketThreads = Math.max(1, egCfg.getBucketThreads().intValue());
+        this.directOutput =
+            new BucketItemOutput(loadStream, this.egIdSet, false);
+    }
 
-	// create all lookups and init caches upfront
-        this.problemClones = new ProblemClonesLookup();
-        this.problemClones.initCache();
-        this.markersByGUIdLookup = new MarkersByGUIdLookup();
-        this.markersByGUIdLookup.initCache();
-	this.guIdsByMarkerKeyLookup = new GUIdsByMarkerKeyLookup();
-	this.guIdsByMarkerKeyLookup.initCache();
-	this.egIdSet = new HashSet();
+    /**
+     * initialize the cache of a lookup
+     * @param lookup the lookup
+     * @return the lookup
+     * @throws MGIException thrown if the cache could not be initialized
+     */
+    private static LoadableCache init(LoadableCache lookup)
+    throws MGIException {
+        lookup.initCache();
+        return lookup;
+    }
+
+    /**
+     * find the connected components of the incoming data and process them.
+     * When so configured the components are found by a
+     * DisjointSetClusterer over int arrays rather than by the
+     * AbstractBucketizer through an SVAIndex of objects. The
+     * DisjointSetClusterer can also partition the data by chromosome and
+     * cluster the partitions in parallel before reconciling the components
+     * which span chromosomes, such as those holding 'UN' markers. When
+     * sources have been set the DisjointSetClusterer streams the data,
+     * processing each component as soon as its last member is read again
+     * @assumes nothing
+     * @effects the process methods will be called for each component
+     * @param provider1 the first provider
+     * @param provider2 the second provider
+     * @throws MGIException thrown to represent any error
+     */
+    public void run(String provider1, String provider2) throws MGIException {
+        try {
+            if (!this.egCfg.getOkToUnionFindBucketize().booleanValue()) {
+                super.run(provider1, provider2);
+                return;
+            }
+            if (this.egCfg.getOkToPartitionByChromosome().booleanValue())
+                this.clusterer = new DisjointSetClusterer(
+                    this.sequenceGroups, new ChromosomePartitioner(),
+                    this.bucketThreads);
+            else
+                this.clusterer =
+                    new DisjointSetClusterer(this.sequenceGroups);
+            if (this.source1 != null)
+                this.clusterer.run(this.source1, this.source2, provider1,
+                                   provider2, this);
+            else
+                this.clusterer.run(this.it1, this.it2, provider1,
+                                   provider2, this);
+            postProcess();
+        }
+        finally {
+            // postProcess() has already stopped the worker threads unless
+            // the bucketizer failed
+            stopProcessing();
+        }
+    }
+
+    /**
+     * set the sources of the incoming data for streaming it through the
+     * DisjointSetClusterer. Each source is read twice, so only the members
+     * of the components still open need be held instead of all of the data.
+     * The first DataIterator of each source may be the one given to the
+     * constructor. This has no effect unless the DisjointSetClusterer is
+     * configured
+     * @assumes each source returns the same data in the same order each
+     * time it is opened
+     * @effects run() will stream the data from the sources
+     * @param source1 the source of the data of the first DataIterator
+     * @param source2 the source of the data of the second DataIterator
+     */
+    public void setSources(BucketizableSource source1,
+                           BucketizableSource source2) {
+        this.source1 = source1;
+        this.source2 = source2;
+    }
+
+    /**
+     * get the number of Bucketizables holding a sequence in a sequence group
+     * from the engine which found the connected components
+     * @param group the name of the sequence group
+     * @param acc the sequence
+     * @return the number of Bucketizables
+     */
+    private int getAssociationCount(String group, SequenceAccession acc) {
+        if (this.clusterer != null)
+            return this.clusterer.getMemberCount(group, acc);
+        return ((Set)super.index.lookup(group, acc)).size();
+    }
+
+    /**
+     * get the number of Bucketizables holding each sequence of the
+     * EntrezGenes of a BucketItem which belongs to an exclusive association
+     * rule. The counts are resolved on the thread running the bucketizer as
+     * the BucketItem is given, so a BucketItem processed on a worker thread
+     * sees the counts it would have seen when processed on that thread and
+     * the worker threads never read the index of the AbstractBucketizer
+     * @param bucketItem the BucketItem
+     * @return the counts
+     */
+    private AssociationCounts getAssociationCounts(BucketItem bucketItem) {
+        AssociationCounts counts = new AssociationCounts();
+        for (Iterator i = bucketItem.membersIterator(); i.hasNext();) {
+            Bucketizable b = (Bucketizable)i.next();
+            if (!b.getProvider().equals(Constants.PROVIDER_ENTREZGENE))
+                continue;
+            EntrezGene entrezGene = (EntrezGene)b;
+            for (int p = 0; p < ASSOCIATION_POLICIES.length; p++) {
+                AssociationPolicy policy = ASSOCIATION_POLICIES[p];
+                if (!policy.isExclusive())
+                    continue;
+                SequenceCategory category = policy.getCategory();
+                for (Iterator j =
+                     entrezGene.getSequences(category).iterator();
+                     j.hasNext();) {
+                    SequenceAccession acc = (SequenceAccession)j.next();
+                    if (policy.acceptsType(acc))
+                        counts.put(category, acc,
+                            getAssociationCount(category.getName(), acc));
+                }
+            }
+        }
+        return counts;
     }
 
     /**
      * @assumes the bucketizer algorithm has been run
-     * @effects nothing
+     * @effects the output of all BucketItems will have been written
      * @throws MGIException thrown to represent any error
      */
     public void postProcess() throws MGIException {
+        finishProcessing();
+    }
+
+    /**
+     * processes the one (MGIMarker) to many (EG) associations
+     * discovered by the Bucketizer
+     * @param bucketItem the BucketItem
+     * @throws MGIException thrown to represent any error
+     */
+    public void process_One_To_Many(BucketItem bucketItem)
+        throws MGIException {
+        dispatch(BUCKET_ONE_TO_MANY, bucketItem);
+    }
+
+    /**
+     * processes the zero (MGIMarker) to one (EG) associations
+     * discovered by the Bucketizer
+     * @param bucketItem the BucketItem
+     * @throws MGIException thrown to represent any error
+     */
+    public void process_Zero_To_One(BucketItem bucketItem)
+        throws MGIException {
+        dispatch(BUCKET_ZERO_TO_ONE, bucketItem);
+    }
+
+    /**
+     * processes the one (MGIMarker) to zero (EG) associations
+     * discovered by the Bucketizer
+     * @param bucketItem the BucketItem
+     * @throws MGIException thrown to represent any error
+     */
+    public void process_One_To_Zero(BucketItem bucketItem)
+        throws MGIException {
+        dispatch(BUCKET_ONE_TO_ZERO, bucketItem);
+    }
+
+    /**
+     * processes the many (MGIMarker) to one (EG) associations
+     * discovered by the Bucketizer
+     * @param bucketItem the BucketItem
+     * @throws MGIException thrown to represent any error
+     */
+    public void process_Many_To_One(BucketItem bucketItem)
+        throws MGIException {
+        dispatch(BUCKET_MANY_TO_ONE, bucketItem);
+    }
+
+    /**
+     * processes the many (MGIMarker) to many (EG) associations
+     * discovered by the Bucketizer
+     * @param bucketItem the BucketItem
+     * @throws MGIException thrown to represent any error
+     */
+    public void process_Many_To_Many(BucketItem bucketItem)
+        throws MGIException {
+        dispatch(BUCKET_MANY_TO_MANY, bucketItem);
+    }
+
+    /**
+     * processes the one to one associations discovered by the Bucketizer
+     * @param bucketItem the BucketItem
+     * @throws MGIException thrown to represent any error
+     */
+    public void process_One_To_One(BucketItem bucketItem)
+        throws MGIException {
+        dispatch(BUCKET_ONE_TO_ONE, bucketItem);
+    }
+
+    /**
+     * process a BucketItem on the calling thread or, when there are worker
+     * threads, submit it to the pool and write the output of the BucketItems
+     * at the head of the queue which have been processed. The output of the
+     * BucketItems is written in the order they are given by the bucketizer
+     * so the load stream and reports are the same as when run on one thread.
+     * The association counts of the BucketItem are resolved here, before it
+     * is submitted
+     * @assumes the lookups have been initialized and are only read from here
+     * on
+     * @effects the output of the BucketItem will be written now or later
+     * @param bucket the bucket of the BucketItem
+     * @param bucketItem the BucketItem
+     * @throws MGIException thrown to represent any error
+     */
+    private void dispatch(String bucket, BucketItem bucketItem)
+        throws MGIException {
+        AssociationCounts counts = getAssociationCounts(bucketItem);
+        if (this.bucketThreads == 1) {
+            process(bucket, bucketItem, counts, this.directOutput);
+            return;
+        }
+        if (this.pool == null)
+            this.pool = Executors.newFixedThreadPool(this.bucketThreads);
+        Task task = new Task(bucket, bucketItem, counts);
+        task.future = this.pool.submit(task);
+        this.pending.addLast(task);
+        int maxPending = this.bucketThreads * PENDING_PER_THREAD;
+        while (!this.pending.isEmpty() &&
+               (this.pending.size() > maxPending ||
+                ((Task)this.pending.getFirst()).future.isDone()))
+            writeOldest();
+    }
+
+    /**
+     * process a BucketItem with the handler of its bucket
+     * @param bucket the bucket of the BucketItem
+     * @param bucketItem the BucketItem
+     * @param counts the association counts of the BucketItem
+     * @param out the output of the BucketItem
+     * @throws MGIException thrown to represent any error
+     */
+    private void process(String bucket, BucketItem bucketItem,
+                         AssociationCounts counts, BucketItemOutput out)
+        throws MGIException {
+        if (bucket.equals(BUCKET_ONE_TO_ONE))
+            process_One_To_One(bucketItem, counts, out);
+        else if (bucket.equals(BUCKET_ONE_TO_MANY))
+            process_One_To_Many(bucketItem, counts, out);
+        else if (bucket.equals(BUCKET_MANY_TO_ONE))
+            process_Many_To_One(bucketItem, counts, out);
+        else if (bucket.equals(BUCKET_MANY_TO_MANY))
+            process_Many_To_Many(bucketItem, counts, out);
+        else if (bucket.equals(BUCKET_ONE_TO_ZERO))
+            process_One_To_Zero(bucketItem, out);
+        else
+            process_Zero_To_One(bucketItem, counts, out);
+    }
+
+    /**
+     * wait for the oldest BucketItem submitted to the pool to be processed
+     * and write its output. On an error no more output is written and the
+     * pool is stopped
+     * @throws MGIException thrown if the BucketItem could not be processed
+     */
+    private void writeOldest() throws MGIException {
+        Task task = (Task)this.pending.removeFirst();
+        Throwable error = null;
+        try {
+            task.future.get();
+        }
+        catch (ExecutionException e) {
+            error = e.getCause();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = e;
+        }
+        if (error == null) {
+            task.output.flush();
+            return;
+        }
+        stopProcessing();
+        if (error instanceof MGIException)
+            throw (MGIException)error;
+        if (error instanceof Error)
+            throw (Error)error;
+        BucketizerExceptionFactory eFactory = new BucketizerExceptionFactory();
+        MGIException e2 = eFactory.getException(
+            error instanceof InterruptedException ?
+            BucketizerExceptionFactory.InterruptErr :
+            BucketizerExceptionFactory.UnexpectedErr, (Exception)error);
+        e2.bind(task.bucket);
+        throw e2;
+    }
+
+    /**
+     * write the output of all BucketItems submitted to the pool and stop
+     * the pool
+     * @assumes nothing
+     * @effects the output of all BucketItems will have been written
+     * @throws MGIException thrown if a BucketItem could not be processed
+     */
+    private void finishProcessing() throws MGIException {
+        while (!this.pending.isEmpty())
+            writeOldest();
+        if (this.pool != null) {
+            this.pool.shutdown();
+            this.pool = null;
+        }
+    }
+
+    /**
+     * discard the BucketItems submitted to the pool whose output has not
+     * been written and stop the pool without waiting for them
+     * @assumes nothing
+     * @effects the worker threads will be interrupted and stopped
+     */
+    private void stopProcessing() {
+        this.pending.clear();
+        if (this.pool != null) {
+            this.pool.shutdownNow();
+            this.pool = null;
+        }
     }
 
     /**
@@ -137,13 +527,17 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
      *  may create sequence and Homologene Group Id associations to GU markers
      * @param bucketItem A BucketItem which stores the association data in 
      *  this case one MGIMarker object associated with many EntrezGene objects
+     * @param counts the association counts of 'bucketItem'
+     * @param out the output of 'bucketItem'
      * @throws MGIException thrown to represent any error
      */
-    public void process_One_To_Many(BucketItem bucketItem)
+    private void process_One_To_Many(BucketItem bucketItem,
+                                     AssociationCounts counts,
+                                     BucketItemOutput out)
         throws MGIException {
 	
-	processNonOne_To_OneBucketItem(bucketItem);
-        this.reportConnectedComponents(bucketItem, BUCKET_ONE_TO_MANY);
+	processNonOne_To_OneBucketItem(bucketItem, counts, out);
+        this.reportConnectedComponents(bucketItem, BUCKET_ONE_TO_MANY, out);
     }
 
     /**
@@ -153,13 +547,17 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
      * @effects new report entries created
      * may create sequence and Homologene Group Id associations to GU markers
      * @param bucketItem A BucketItem which stores the association data
+     * @param counts the association counts of 'bucketItem'
+     * @param out the output of 'bucketItem'
      * @throws MGIException thrown to represent any error
      */
-    public void process_Zero_To_One(BucketItem bucketItem)
+    private void process_Zero_To_One(BucketItem bucketItem,
+                                     AssociationCounts counts,
+                                     BucketItemOutput out)
         throws MGIException {	
 	
-	processNonOne_To_OneBucketItem(bucketItem);
-	this.reportUnConnectedComponents(bucketItem, BUCKET_ZERO_TO_ONE);
+	processNonOne_To_OneBucketItem(bucketItem, counts, out);
+	this.reportUnConnectedComponents(bucketItem, BUCKET_ZERO_TO_ONE, out);
     }
     
     /**
@@ -171,11 +569,13 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
      * @assumes nothing
      * @effects new report entries created
      * @param bucketItem A BucketItem which stores the association data
+     * @param out the output of 'bucketItem'
      * @throws MGIException thrown to represent any error
      */
-    public void process_One_To_Zero(BucketItem bucketItem)
+    private void process_One_To_Zero(BucketItem bucketItem,
+                                     BucketItemOutput out)
         throws MGIException {
-        this.reportUnConnectedComponents(bucketItem, BUCKET_ONE_TO_ZERO);
+        this.reportUnConnectedComponents(bucketItem, BUCKET_ONE_TO_ZERO, out);
     }
 
     /**
@@ -185,12 +585,16 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
      * @effects new report entries created     
      * may create sequence and Homologene Group Id associations to GU markers
      * @param bucketItem A BucketItem which stores the association data
+     * @param counts the association counts of 'bucketItem'
+     * @param out the output of 'bucketItem'
      * @throws MGIException thrown to represent any error
      */
-    public void process_Many_To_One(BucketItem bucketItem)
+    private void process_Many_To_One(BucketItem bucketItem,
+                                     AssociationCounts counts,
+                                     BucketItemOutput out)
         throws MGIException {
-	processNonOne_To_OneBucketItem(bucketItem);
-        this.reportConnectedComponents(bucketItem, BUCKET_MANY_TO_ONE);
+	processNonOne_To_OneBucketItem(bucketItem, counts, out);
+        this.reportConnectedComponents(bucketItem, BUCKET_MANY_TO_ONE, out);
     }
 
     /**
@@ -200,12 +604,16 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
      * @effects new report entries created
      * may create sequence and Homologene Group Id associations to GU markers
      * @param bucketItem A BucketItem which stores the association data
+     * @param counts the association counts of 'bucketItem'
+     * @param out the output of 'bucketItem'
      * @throws MGIException thrown to represent any error
      */
-    public void process_Many_To_Many(BucketItem bucketItem)
+    private void process_Many_To_Many(BucketItem bucketItem,
+                                      AssociationCounts counts,
+                                      BucketItemOutput out)
         throws MGIException{
-	processNonOne_To_OneBucketItem(bucketItem);
-        this.reportConnectedComponents(bucketItem, BUCKET_MANY_TO_MANY);
+	processNonOne_To_OneBucketItem(bucketItem, counts, out);
+        this.reportConnectedComponents(bucketItem, BUCKET_MANY_TO_MANY, out);
     }
 
     /**
@@ -220,9 +628,13 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
      * post check is made to assure that the chromosomes match
      * @param bucketItem A BucketItem which stores the association data which
      * contains one MGI marker and one Entrez gene
+     * @param counts the association counts of 'bucketItem'
+     * @param out the output of 'bucketItem'
      * @throws MGIException thrown to represent any error
      */
-    public void process_One_To_One(BucketItem bucketItem)
+    private void process_One_To_One(BucketItem bucketItem,
+                                    AssociationCounts counts,
+                                    BucketItemOutput out)
         throws MGIException{
         Iterator it = bucketItem.associationsIterator(Constants.PROVIDER_MGI);
 
@@ -235,8 +647,8 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
             (MGIMarker) assoc.getMember(Constants.PROVIDER_MGI);
 	Integer egMarkerKey = mgiMarker.key;
 
-	// get the set of GU Ids with which this marker is associated
-	HashSet guIdsAssocWithEGMarker = guIdsByMarkerKeyLookup.lookup(egMarkerKey);
+	// get the number of GU Ids with which this marker is associated
+	int guIdsAssocWithEGMarker = guIndex.getGUIdCount(egMarkerKey.intValue());
 
 	// get the entrezGene object and the entrezgene Id
         EntrezGene entrezGene =
@@ -244,19 +656,19 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
 	String egId = entrezGene.getId();
 	
 	// add to the set of egIds (for later processing
-	egIdSet.add(egId);
+	out.addEntrezGeneId(egId);
 	    
 	// get the set of GU Markers with which this egId is associated
-	HashSet guMarkersAssocWithEgId = this.markersByGUIdLookup.lookup(egId);
+	int[] guMarkersAssocWithEgId = this.guIndex.getMarkerKeys(egId);
 
 	// if there are gu associations for 'egId' process accordingly
 	// and we are done
 	if(guMarkersAssocWithEgId != null) {
 	    // add this item to the one-to-one bucket report regardless
 	    // that there is a gu association
-	    this.reportConnectedComponents(bucketItem, BUCKET_ONE_TO_ONE);
+	    this.reportConnectedComponents(bucketItem, BUCKET_ONE_TO_ONE, out);
 	    //System.out.println("In process_One_To_One getting ready to call process_GU");
-	    process_GU(entrezGene, guMarkersAssocWithEgId);
+	    process_GU(entrezGene, guMarkersAssocWithEgId, counts, out);
 	    return;
 	}	
 
@@ -271,17 +683,18 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
         if (!mgiMarker.chromosome.equals(entrezGene.getChromosome()) &&
             !mgiMarker.chromosome.equals("UN") &&
             !entrezGene.getChromosome().equals("UN")) {
-            this.reportConnectedComponents(bucketItem, CHROMOSOME_MISMATCH);
+            this.reportConnectedComponents(bucketItem, CHROMOSOME_MISMATCH,
+                                           out);
             // mismatch found...exit so as not to create entrezgene associations
             return;
         }
 
 	// if marker has GU association(s) we don't want to make any EntrezGene
 	// sequence associations to that marker - should we report this?
-	else if (guIdsAssocWithEGMarker != null) {
+	else if (guIdsAssocWithEGMarker > 0) {
 	    // add this item to the one-to-one bucket report regardless
 	    // that there is a gu association to the marker
-	    this.reportConnectedComponents(bucketItem, BUCKET_ONE_TO_ONE);
+	    this.reportConnectedComponents(bucketItem, BUCKET_ONE_TO_ONE, out);
 	    return;
 	}
 
@@ -294,20 +707,21 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
 	 */
 	
 	    // add this item to the one-to-one bucket report
-	    this.reportConnectedComponents(bucketItem, BUCKET_ONE_TO_ONE);
+	    this.reportConnectedComponents(bucketItem, BUCKET_ONE_TO_ONE, out);
  
 	    // create a new EntrezGene association to the MGIMarker in DB
-	    AccessionLib.createMarkerAssociation(
+	    out.createMarkerAssociation(
 		new Integer(LogicalDBConstants.ENTREZ_GENE),
-		entrezGene.getId(), egMarkerKey,
-		new Integer(Constants.EGLOAD_REFSKEY), this.loadStream);
-	    createAssociations(entrezGene, egMarkerKey);
+		entrezGene.getId(), egMarkerKey);
+	    createAssociations(entrezGene, egMarkerKey, counts, out);
     }
     /**
      * Report all NCBI Gene Models in MGI that are not in EntrezGene 
      * regardless of whether they have marker association).
      */
      public void getInvalidGMIds() throws MGIException {
+	// all Entrez gene ids must have been seen
+	finishProcessing();
 	NCBIGMQuery query = new NCBIGMQuery();
 	DataIterator it = query.execute();
 	//String header = "NCBI GM ID\tComma delimited list of Marker MGI IDs\n";
@@ -347,9 +761,13 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
     * if 'bucketItem' zero-to-one cardinality, it will have no MGIMarker object
     * if 'bucketItem' one-to-zero cardinality, it will have no EntrezGene object
     * EntrezGene objects may have GU associations 
+    * @param counts the association counts of 'bucketItem'
+    * @param out the output of 'bucketItem'
     * @throws nothing
     */
-    private void processNonOne_To_OneBucketItem(BucketItem bucketItem) 
+    private void processNonOne_To_OneBucketItem(BucketItem bucketItem,
+                                                AssociationCounts counts,
+                                                BucketItemOutput out)
         throws MGIException {
 	
 	// Iterate over individual members looking for EntrezGene members
@@ -362,27 +780,31 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
 		String egId = entrezGene.getId();
 		
 		// add to the set of egIds (for later processing
-		egIdSet.add(egId);
+		out.addEntrezGeneId(egId);
 	    
 		// get the set of GU Markers with which this egId is associated
-		HashSet guMarkersAssocWithEgId = this.markersByGUIdLookup.lookup(egId);
+		int[] guMarkersAssocWithEgId = this.guIndex.getMarkerKeys(egId);
 		// if there are gu associations for 'egId' process accordingly
 		if(guMarkersAssocWithEgId != null) {
-		    process_GU(entrezGene, guMarkersAssocWithEgId);
+		    process_GU(entrezGene, guMarkersAssocWithEgId, counts, out);
 		}
 	    }
 	}
     }
     
     /**
-     * associate EntrezGene sequences and Homologene group ids to a marker
-     * For each GenBank and RefSeq sequence in 'entrezGene'
-     * associate it with 'markerKey' if:
-     * 1) GenBank, only RNAs
-     * 2) Sequence not already associated with another Marker in MGI
-     *     We determine this by getting the index entry for each seqId.
-     *     a) if there is only one Bucketizable object associated with seqId
-     *        in the index, it is an EntrezGene object (i.e. not marker assoc)
+     * associate EntrezGene sequences to a marker in one pass over the
+     * sequence categories of the AssociationPolicy table. For each GenBank
+     * and RefSeq sequence in 'entrezGene' the rule of its category decides
+     * whether to associate it with 'markerKey':
+     * 1) the sequence type must be one the rule associates (GenBank, only
+     *    RNAs)
+     * 2) for an exclusive rule, the sequence must not already be associated
+     *    with another Marker in MGI
+     *     We determine this by the number of Bucketizables holding the
+     *     seqId, which was resolved in 'counts' for exclusive rules.
+     *     a) if there is only one Bucketizable object holding the seqId
+     *        it is an EntrezGene object (i.e. not marker assoc)
      *        so associate the seqId with 'markerKey'
      *     b) There can be at most two Bucketizable objects associated with
      *        the seqId because the bucketizer has excluded all  ids associated 
@@ -391,166 +813,54 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
      *        then there is one EntrezGene and one MGIMarker object indicating
      *        this sequence is associated with a marker, so we don't want
      *        to associate it with 'markerKey'
+     * 3) NG, NT and NW rules are not exclusive (TR9773)
      * @assumes nothing
      * @effects Sequences associations to 'markerKey' may be created.
      * @param entrezGene EntrezGene object whose sequences we may want to 
-     *        associated with 'markerKey' and whose Homologene group Id 
-     *        (if present) we will associate with 'markerKey'
-     * @param markerKey the marker to which we may associate sequences and
-     *        to which we will associate Homologene group id (if present)
+     *        associated with 'markerKey'
+     * @param markerKey the marker to which we may associate sequences
+     * @param counts the association counts of the BucketItem being
+     * processed
+     * @param out the output of the BucketItem being processed
      * @throws nothing
      */
     private void createAssociations(EntrezGene entrezGene, 
-		Integer markerKey) throws MGIException {
-	for (Iterator i = entrezGene.getGenBankSeqs().iterator();
-	     i.hasNext();) {
-	    SequenceAccession acc = (SequenceAccession)i.next();
-	    String accid = acc.getAccid();
-	    if (acc.getType() == SequenceAccession.RNA) {
-		// get set of Bucketizables associated with this seqId
-		Set seqAssociations =
-                        (Set)super.index.lookup(Constants.GENBANK, acc);
-		/**
-		 * if only one member, it is an EntrezGene object with no 
-		 * corresponding MGIMarker object. This sequence is not associated with
-		 * any so we want to associate
-		 * the sequence with the marker
-		 */
-		if (seqAssociations.size() == 1) {
-		    makeSeqAssociationToMarker (new Integer(
-		    LogicalDBConstants.SEQUENCE),
-                        accid, markerKey);
-		}
+		Integer markerKey, AssociationCounts counts,
+		BucketItemOutput out) throws MGIException {
+	for (int p = 0; p < ASSOCIATION_POLICIES.length; p++) {
+	    AssociationPolicy policy = ASSOCIATION_POLICIES[p];
+	    SequenceCategory category = policy.getCategory();
+	    for (Iterator i = entrezGene.getSequences(category).iterator();
+		 i.hasNext();) {
+		SequenceAccession acc = (SequenceAccession)i.next();
+		if (!policy.acceptsType(acc))
+		    continue;
+		if (policy.isExclusive() && counts.get(category, acc) != 1)
+		    continue;
+		makeSeqAssociationToMarker(policy.getLogicalDBKey(),
+					   acc.getAccid(), markerKey, out);
 	    }
 	}
-	/**
-	 * associate EntrezGene refseq sequences to the marker,
-	 * XMs, XRs, XPs, NMs, NRs, NPs, NGs, NTs, NWs
-	 */
-
-	for (Iterator i = entrezGene.getXMs().iterator(); i.hasNext();) {
-	    SequenceAccession acc = (SequenceAccession)i.next();
-	    String accid = acc.getAccid();
-	    Set seqAssociations =
-		(Set)super.index.lookup(Constants.XM, acc);
-	    if (seqAssociations.size() == 1) {
-		makeSeqAssociationToMarker (new Integer(
-		LogicalDBConstants.REFSEQ),
-                        accid, markerKey);
-	    }
-	}
-
-	for (Iterator i = entrezGene.getXRs().iterator(); i.hasNext();) {
-	    SequenceAccession acc = (SequenceAccession)i.next();
-	    String accid = acc.getAccid();
-	    Set seqAssociations =
-		(Set)super.index.lookup(Constants.XR, acc);
-	    if (seqAssociations.size() == 1) {
-		makeSeqAssociationToMarker (new Integer(
-		LogicalDBConstants.REFSEQ),
-                        accid, markerKey);
-            }
-	}
-
-	for (Iterator i = entrezGene.getXPs().iterator(); i.hasNext();) {
-	    SequenceAccession acc = (SequenceAccession)i.next();
-	    String accid = acc.getAccid();
-	     Set seqAssociations =
-                (Set)super.index.lookup(Constants.XP, acc);
-	    if (seqAssociations.size() == 1) {
-		 makeSeqAssociationToMarker (new Integer(
-		LogicalDBConstants.REFSEQ),
-                        accid, markerKey);
-            } 
-	}
-
-	for (Iterator i = entrezGene.getNMs().iterator(); i.hasNext();) {
-	    SequenceAccession acc = (SequenceAccession)i.next();
-	    String accid = acc.getAccid();
-	    Set seqAssociations =
-                (Set)super.index.lookup(Constants.NM, acc);
-	    if (seqAssociations.size() == 1) {
-		makeSeqAssociationToMarker (new Integer(
-		LogicalDBConstants.REFSEQ),
-                        accid, markerKey);
-            }
-	}
-
-	for (Iterator i = entrezGene.getNRs().iterator(); i.hasNext();) {
-	    SequenceAccession acc = (SequenceAccession)i.next();
-	    String accid = acc.getAccid();
-	    Set seqAssociations =
-                (Set)super.index.lookup(Constants.NR, acc);
-	    if (seqAssociations.size() == 1) {
-		makeSeqAssociationToMarker (new Integer(
-		LogicalDBConstants.REFSEQ),
-                        accid, markerKey);
-            }
-	}
-
-	for (Iterator i = entrezGene.getNPs().iterator(); i.hasNext();) {
-	    SequenceAccession acc = (SequenceAccession)i.next();
-	    String accid = acc.getAccid();
-	    Set seqAssociations =
-                (Set)super.index.lookup(Constants.NP, acc);
-	    if (seqAssociations.size() == 1) {
-		makeSeqAssociationToMarker (new Integer(
-		LogicalDBConstants.REFSEQ),
-                        accid, markerKey);
-            }
-	}
-
-	for (Iterator i = entrezGene.getNGs().iterator(); i.hasNext();) {
-	    SequenceAccession acc = (SequenceAccession)i.next();
-	    String accid = acc.getAccid();
-	    Set seqAssociations =
-                (Set)super.index.lookup(Constants.NG, acc);
-	    makeSeqAssociationToMarker (new Integer(
-	    LogicalDBConstants.REFSEQ),
-		    accid, markerKey);
-	}
-        for (Iterator i = entrezGene.getNTs().iterator(); i.hasNext();) {
-            SequenceAccession acc = (SequenceAccession)i.next();
-            String accid = acc.getAccid();
-	    //System.out.println("EntrezGeneBucketizer egID: " + entrezGene.getId() + " Contig: " + accid);
-            Set seqAssociations =
-                (Set)super.index.lookup(Constants.NT, acc);
-	    //System.out.println("seqAssociations.size()= " + seqAssociations.size());
-            //System.out.println("Associating " + accid);
-	    // TR9773 - do not restrict NT to associations with only one marker
-	    makeSeqAssociationToMarker (new Integer(
-		LogicalDBConstants.NCBI_GENEMODEL_EVIDENCE), accid, markerKey);
-        }
-        for (Iterator i = entrezGene.getNWs().iterator(); i.hasNext();) {
-            SequenceAccession acc = (SequenceAccession)i.next();
-            String accid = acc.getAccid();
-            Set seqAssociations =
-                (Set)super.index.lookup(Constants.NW, acc);
-	    // TR9773 - do not restrict NW to associations with only one marker
-	    makeSeqAssociationToMarker (new Integer(
-		LogicalDBConstants.NCBI_GENEMODEL_EVIDENCE), accid, markerKey);
-        }
     }
 
      /**
      * associate a sequence ID with a marker if the sequence is not associated
-     * with a problem clone. Problem Clone lookup only applies to therefore
-     * only contains genbank sequences, for simplicity we apply all seqids
-     * to this lookup. RefSeqs will not be found.
+     * with a problem clone. Problem clones are only genbank sequences, so
+     * the lookup rejects the ids of other logical databases such as RefSeq
+     * without searching the problem clones.
      * @assumes nothing
      * @effects 'seqID' may be associated with 'markerKey' in the database
      * @param logicalDBKey - ldb with which to make the sequence to marker
      *  association
      * @param seqID - id to associate with 'markerKey'
      * @param markerKey the marker to which we may associate 'seqID'
+     * @param out the output of the BucketItem being processed
      * @throws nothing
      */
     private void makeSeqAssociationToMarker(Integer logicalDBKey, String seqID, 
-	    Integer markerKey) throws MGIException {
-	if ( ! this.problemClones.lookup(seqID)) {
-	    AccessionLib.createMarkerAssociation(
-                        logicalDBKey, seqID, markerKey,
-                        new Integer(Constants.EGLOAD_REFSKEY), this.loadStream);
+	    Integer markerKey, BucketItemOutput out) throws MGIException {
+	if ( ! this.problemClones.lookup(logicalDBKey.intValue(), seqID)) {
+	    out.createMarkerAssociation(logicalDBKey, seqID, markerKey);
 	}
     }
 				    
@@ -559,9 +869,15 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
      * @assumes 'guMarkers' contains at least one member
      * @effects new report entries created and new ACC_Accession and
      * ACC_AccessionReference records created in a database.
+     * @param entrezGene the EntrezGene with GU associations
+     * @param guMarkers the keys of the GU markers of 'entrezGene'
+     * @param counts the association counts of the BucketItem being
+     * processed
+     * @param out the output of the BucketItem being processed
      * @throws MGIException thrown to represent any error
      */
-    private void process_GU(EntrezGene entrezGene, HashSet guMarkers)
+    private void process_GU(EntrezGene entrezGene, int[] guMarkers,
+                            AssociationCounts counts, BucketItemOutput out)
         throws MGIException {
 	//System.out.println("In process_GU");
 	// there will be at least one marker in 'markers'
@@ -569,24 +885,21 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
 	
 	// Create EntrezGene association (ldbKey 55) for GU association
 	// This is needed by the WI
-	for (Iterator i = guMarkers.iterator(); i.hasNext();) {
-	    guMarkerKey = (Integer)i.next();
+	for (int i = 0; i < guMarkers.length; i++) {
+	    guMarkerKey = new Integer(guMarkers[i]);
 	    
-	    AccessionLib.createMarkerAssociation(new Integer(
+	    out.createMarkerAssociation(new Integer(
 		LogicalDBConstants.ENTREZ_GENE), 
-		entrezGene.getId(), guMarkerKey,
-		new Integer(Constants.EGLOAD_REFSKEY), this.loadStream);
+		entrezGene.getId(), guMarkerKey);
 	}
 	
 	// For GU 1:1s only associate 'entrezGene' GenBank, RefSeq sequences
 	// and Homologene group id with 'guMarkerKey'
-	if (guMarkers.size() == 1) {
+	if (guMarkers.length == 1) {
 	    //System.out.println("Associating GenBank, RefSeq, and Homologene because GU one-to-one has been determined");
-	    // get the set of GU Ids with which this marker is associated
-	    HashSet guIdsAssocWithMarker = guIdsByMarkerKeyLookup.lookup(guMarkerKey);
-	    // create sequence associations if GU 1:1
-	    if (guIdsAssocWithMarker.size() == 1) {
-		 createAssociations(entrezGene, guMarkerKey);
+	    // create sequence associations if the marker has no other GU Ids
+	    if (guIndex.getGUIdCount(guMarkerKey.intValue()) == 1) {
+		 createAssociations(entrezGene, guMarkerKey, counts, out);
 	    }
 	}	    
     }
@@ -599,10 +912,12 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
      * @effects a new rport entry will be made to the given report
      * @param item the BucketItem representing the association
      * @param reportAlias the report alias to write to
+     * @param out the output of the BucketItem
      * @throws MGIException thrown to represent any error
      */
     private void reportConnectedComponents(BucketItem item,
-                                           String reportAlias)
+                                           String reportAlias,
+                                           BucketItemOutput out)
     throws MGIException {
         for (Iterator i =
              item.associationsIterator(Constants.PROVIDER_MGI); i.hasNext();)
@@ -627,7 +942,7 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
 
             String output = null;
 
-            if (egCfg.getOkToPerformHistory().booleanValue())
+            if (this.performHistory)
             {
                 String oldEgId =
                     this.history.lookupEGeneID(marker.mgiID);
@@ -642,7 +957,7 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
             else
                 output = Sprintf.sprintf(
                     "%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s", fields);
-            OutputManager.writeln(reportAlias, output);
+            out.writeln(reportAlias, output);
         }
     }
 
@@ -653,10 +968,12 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
      * @effects a new rport entry will be made to the given report
      * @param item the BucketItem representing the association
      * @param reportAlias the report alias to write to
+     * @param out the output of the BucketItem
      * @throws MGIException thrown to represent any error
      */
     private void reportUnConnectedComponents(BucketItem item,
-                                             String reportAlias)
+                                             String reportAlias,
+                                             BucketItemOutput out)
     throws MGIException {
         Vector fields = new Vector();
         for (Iterator i = item.membersIterator(); i.hasNext();)
@@ -672,7 +989,7 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
                            marker.chromosome);
                 fields.add(marker.svaString());
                 fields.add(marker.type);
-                if (this.egCfg.getOkToPerformHistory().booleanValue())
+                if (this.performHistory)
                 {
                     String oldEgId =
                         this.history.lookupEGeneID(marker.mgiID);
@@ -692,7 +1009,7 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
                 fields.add(egene.getChromosome() == null ? "" :
                            egene.getChromosome());
                 fields.add(egene.svaString());
-                if (this.egCfg.getOkToPerformHistory().booleanValue())
+                if (this.performHistory)
                 {
                     String oldMgiId =
                         this.history.lookupEGeneID(egene.getId());
@@ -703,7 +1020,85 @@ public class EntrezGeneBucketizer extends AbstractBucketizer
                     output = Sprintf.sprintf("%s\t%s\t%s\t%s", fields);
             }
 
-            OutputManager.writeln(reportAlias, output);
+            out.writeln(reportAlias, output);
+        }
+    }
+
+    /**
+     * is a Partitioner which partitions the EntrezGenes and MGIMarkers by
+     * chromosome
+     * @has nothing
+     * @does names the chromosome of an EntrezGene or MGIMarker, 'UN' when
+     * it is not known
+     */
+    private static class ChromosomePartitioner implements Partitioner
+    {
+        public String getPartition(Bucketizable b) {
+            String chromosome = null;
+            if (b instanceof MGIMarker)
+                chromosome = ((MGIMarker)b).chromosome;
+            else if (b instanceof EntrezGene)
+                chromosome = ((EntrezGene)b).getChromosome();
+            return chromosome == null ? "UN" : chromosome;
+        }
+    }
+
+    /**
+     * is the processing of one BucketItem on a worker thread
+     * @has the BucketItem, its bucket and its buffered output
+     * @does processes the BucketItem, recording its output
+     */
+    private class Task implements java.util.concurrent.Callable
+    {
+        private String bucket = null;
+        private BucketItem bucketItem = null;
+        private AssociationCounts counts = null;
+        private BucketItemOutput output = null;
+        private Future future = null;
+
+        public Task(String bucket, BucketItem bucketItem,
+                    AssociationCounts counts)
+        {
+            this.bucket = bucket;
+            this.bucketItem = bucketItem;
+            this.counts = counts;
+            this.output = new BucketItemOutput(loadStream, egIdSet, true);
+        }
+
+        public Object call() throws MGIException
+        {
+            process(this.bucket, this.bucketItem, this.counts, this.output);
+            return null;
+        }
+    }
+
+    /**
+     * is the number of Bucketizables holding each sequence of a BucketItem
+     * which belongs to an exclusive association rule, resolved before the
+     * BucketItem is processed
+     * @has a map from sequence to count for each sequence category
+     * @does records and returns the counts
+     */
+    private static class AssociationCounts
+    {
+        private HashMap[] counts =
+            new HashMap[SequenceCategory.values().length];
+
+        public void put(SequenceCategory category, SequenceAccession acc,
+                        int count)
+        {
+            HashMap map = this.counts[category.ordinal()];
+            if (map == null) {
+                map = new HashMap();
+                this.counts[category.ordinal()] = map;
+            }
+            map.put(acc, new Integer(count));
+        }
+
+        public int get(SequenceCategory category, SequenceAccession acc)
+        {
+            HashMap map = this.counts[category.ordinal()];
+            return ((Integer)map.get(acc)).intValue();
         }
     }
 }
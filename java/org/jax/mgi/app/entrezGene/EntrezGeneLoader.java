@@ -3,15 +3,29 @@ package org.jax.mgi.app.entrezGene;
 import java.util.Iterator;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.Vector;
+import java.io.File;
 
 import org.jax.mgi.shr.dla.loader.DLALoader;
 import org.jax.mgi.shr.dbutils.DataIterator;
+import org.jax.mgi.shr.dbutils.DBException;
 import org.jax.mgi.shr.dbutils.BatchProcessor;
+import org.jax.mgi.shr.dbutils.SQLDataManager;
+import org.jax.mgi.shr.dbutils.SQLDataManagerFactory;
 import org.jax.mgi.shr.exception.MGIException;
+import org.jax.mgi.shr.bucketizer.BucketizableSource;
 import org.jax.mgi.shr.timing.Stopwatch;
 import org.jax.mgi.dbs.mgd.query.MGIMarkerQuery;
 import org.jax.mgi.dbs.rdr.query.EntrezGeneQuery;
 import org.jax.mgi.dbs.mgd.lookup.EntrezGeneHistory;
+import org.jax.mgi.dbs.mgd.lookup.AssocAccidLookup;
+import org.jax.mgi.dbs.mgd.lookup.ProblemClonesLookup;
+import org.jax.mgi.dbs.mgd.lookup.GUAssociationIndex;
+import org.jax.mgi.dbs.SchemaConstants;
+import org.jax.mgi.shr.cache.LookupInitializer;
+import org.jax.mgi.shr.cache.LookupMetricsRegistry;
+import org.jax.mgi.shr.config.ConfigException;
+import org.jax.mgi.shr.config.DatabaseCfg;
 import org.jax.mgi.shr.config.EntrezGeneCfg;
 import org.jax.mgi.shr.ioutils.OutputManager;
 
@@ -113,8 +127,61 @@ public class EntrezGeneLoader
 
         printStats("database prepared");
 
-        markerQuery = new MGIMarkerQuery();
+        // load the caches of the lookups, concurrently if so configured
+        int lookupThreads = this.egCfg.getLookupThreads().intValue();
+        LookupInitializer lookups = new LookupInitializer(lookupThreads);
+        String lookupSnapshotDir = this.egCfg.getLookupSnapshotDirectory();
+        File lookupSnapshots = null;
+        if (!lookupSnapshotDir.equals(""))
+            lookupSnapshots = new File(lookupSnapshotDir);
+        SQLDataManager lookupMgr = null;
+        AssocAccidLookup assocLookup = null;
+        if (!this.egCfg.getOkToMergeJoinMarkers().booleanValue())
+        {
+            lookupMgr = getLookupDBMgr(lookupThreads);
+            assocLookup = new AssocAccidLookup(lookupMgr);
+            assocLookup.setSnapshotDirectory(lookupSnapshots);
+            lookups.add("AssocAccidLookup", assocLookup,
+                        getClosableDBMgr(lookupMgr, lookupThreads));
+        }
+        lookupMgr = getLookupDBMgr(lookupThreads);
+        ProblemClonesLookup problemClones = new ProblemClonesLookup(lookupMgr);
+        problemClones.setSnapshotDirectory(lookupSnapshots);
+        lookups.add("ProblemClonesLookup", problemClones,
+                    getClosableDBMgr(lookupMgr, lookupThreads));
+        lookupMgr = getLookupDBMgr(lookupThreads);
+        GUAssociationIndex guIndex = new GUAssociationIndex(lookupMgr);
+        guIndex.setSnapshotDirectory(lookupSnapshots);
+        lookups.add("GUAssociationIndex", guIndex,
+                    getClosableDBMgr(lookupMgr, lookupThreads));
+        lookups.initAll(super.logger);
+        printStats("lookups initialized");
+
+        if (assocLookup == null)
+            markerQuery = new MGIMarkerQuery(true);
+        else
+            markerQuery = new MGIMarkerQuery(assocLookup);
+        markerQuery.setFetchSize(this.egCfg.getFetchSize().intValue());
         entrezGeneQuery = new EntrezGeneQuery();
+        entrezGeneQuery.setFetchSize(this.egCfg.getFetchSize().intValue());
+        entrezGeneQuery.setNormalizedFetch(
+            this.egCfg.getOkToNormalizeFetch().booleanValue());
+        entrezGeneQuery.setPartitions(this.egCfg.getPartitions().intValue());
+        String snapshotDir = this.egCfg.getSnapshotDirectory();
+        if (!snapshotDir.equals(""))
+            entrezGeneQuery.setSnapshotDirectory(new File(snapshotDir));
+        // the second pass of the streaming bucketizer reads the Entrez
+        // gene data from its snapshot rather than querying it again
+        boolean streaming =
+            this.egCfg.getOkToUnionFindBucketize().booleanValue() &&
+            this.egCfg.getOkToStreamBucketize().booleanValue();
+        if (streaming && snapshotDir.equals(""))
+        {
+            LoaderConfigExceptionFactory eFactory =
+                new LoaderConfigExceptionFactory();
+            throw (ConfigException)eFactory.getException(
+                LoaderConfigExceptionFactory.StreamingErr);
+        }
         DataIterator entrezGeneData = entrezGeneQuery.execute();
         DataIterator markerData = markerQuery.execute();
 
@@ -122,10 +189,45 @@ public class EntrezGeneLoader
                                               markerData,
                                               sequenceGroups,
                                               super.loadStream,
-                                              this.entrezGeneHistory);
+                                              this.entrezGeneHistory,
+                                              problemClones,
+                                              guIndex);
+        if (streaming)
+            bucketizer.setSources(
+                new SnapshotSource(entrezGeneData, entrezGeneQuery),
+                new RetainingSource(markerData));
         printStats("bucketizer initialized");
     }
 
+    /**
+     * get the SQLDataManager a lookup loads its cache through. When lookups
+     * are loaded concurrently each one needs its own connection to MGD
+     * @param lookupThreads the number of lookups loaded at the same time
+     * @return a new SQLDataManager for MGD if lookups are loaded
+     * concurrently, otherwise the shared SQLDataManager for MGD
+     * @throws MGIException thrown if the SQLDataManager could not be created
+     */
+    private SQLDataManager getLookupDBMgr(int lookupThreads)
+        throws MGIException
+    {
+        if (lookupThreads > 1)
+            return new SQLDataManager(new DatabaseCfg(SchemaConstants.MGD));
+        return SQLDataManagerFactory.getShared(SchemaConstants.MGD);
+    }
+
+    /**
+     * get the SQLDataManager to be closed once a lookup has been loaded
+     * @param sqlMgr the SQLDataManager of the lookup
+     * @param lookupThreads the number of lookups loaded at the same time
+     * @return the SQLDataManager if it was created for the lookup, otherwise
+     * null since the shared SQLDataManager remains open
+     */
+    private SQLDataManager getClosableDBMgr(SQLDataManager sqlMgr,
+                                            int lookupThreads)
+    {
+        return (lookupThreads > 1 ? sqlMgr : null);
+    }
+
     /**
      * preprocess method required by the DLALoader but in this case does
      * nothing
@@ -146,6 +248,11 @@ public class EntrezGeneLoader
     {
         bucketizer.run(Constants.PROVIDER_MGI, Constants.PROVIDER_ENTREZGENE);
         printStats("run complete");
+        // all accessions have been bucketized so the pool no longer needs
+        // to hold on to them
+        super.logger.logInfo("shared accession ids: " +
+            SequenceAccessionPool.getShared().size());
+        SequenceAccessionPool.getShared().clear();
 	bucketizer.getInvalidGMIds();
 	printStats("reporting invalid NCBI GM Ids complete");
     }
@@ -160,6 +267,7 @@ public class EntrezGeneLoader
         throws MGIException
     {
         super.loadStream.close();
+        LookupMetricsRegistry.getShared().dump(super.logger);
         printStats("post process complete");
     }
 
@@ -179,4 +287,127 @@ public class EntrezGeneLoader
         super.logger.logInfo(text);
         loadStopWatch.start();
     }
+
+    /**
+     * is a BucketizableSource over the Entrez gene data which returns the
+     * DataIterator the query was first executed for and then reads the
+     * snapshot that DataIterator was read from or wrote each time it is
+     * opened again
+     * @has the first DataIterator and the query
+     * @does opens DataIterators over the Entrez gene data
+     */
+    private static class SnapshotSource implements BucketizableSource
+    {
+        private DataIterator first = null;
+        private EntrezGeneQuery query = null;
+
+        public SnapshotSource(DataIterator first, EntrezGeneQuery query)
+        {
+            this.first = first;
+            this.query = query;
+        }
+
+        public DataIterator open() throws MGIException
+        {
+            DataIterator it = this.first;
+            this.first = null;
+            if (it == null)
+                it = this.query.readSnapshot();
+            return it;
+        }
+    }
+
+    /**
+     * is a BucketizableSource which returns a DataIterator the first time
+     * it is opened, keeping the objects as they are read, and returns the
+     * kept objects each time it is opened again
+     * @has the first DataIterator and the objects read from it
+     * @does opens DataIterators over the objects
+     */
+    private static class RetainingSource implements BucketizableSource
+    {
+        private DataIterator first = null;
+        private Vector objects = new Vector();
+
+        public RetainingSource(DataIterator first)
+        {
+            this.first = first;
+        }
+
+        public DataIterator open()
+        {
+            DataIterator it = this.first;
+            this.first = null;
+            if (it == null)
+                return new VectorIterator(this.objects);
+            return new RetainingIterator(it, this.objects);
+        }
+    }
+
+    /**
+     * is a DataIterator which adds each object it returns to a Vector
+     * @has the DataIterator and the Vector
+     * @does passes the objects through, keeping them
+     */
+    private static class RetainingIterator implements DataIterator
+    {
+        private DataIterator it = null;
+        private Vector objects = null;
+
+        public RetainingIterator(DataIterator it, Vector objects)
+        {
+            this.it = it;
+            this.objects = objects;
+        }
+
+        public boolean hasNext() throws DBException
+        {
+            return this.it.hasNext();
+        }
+
+        public Object next() throws DBException
+        {
+            Object o = this.it.next();
+            this.objects.add(o);
+            return o;
+        }
+
+        public void close() throws DBException
+        {
+            this.it.close();
+        }
+    }
+
+    /**
+     * is a DataIterator over the objects of a Vector
+     * @has the Vector
+     * @does returns the objects in order
+     */
+    private static class VectorIterator implements DataIterator
+    {
+        private Vector objects = null;
+        private int index = 0;
+
+        public VectorIterator(Vector objects)
+        {
+            this.objects = objects;
+        }
+
+        public boolean hasNext()
+        {
+            return this.index < this.objects.size();
+        }
+
+        public Object next()
+        {
+            if (!hasNext())
+                return null;
+            return this.objects.get(this.index++);
+        }
+
+        public void close()
+        {
+            this.index = this.objects.size();
+        }
+    }
 }
@@ -0,0 +1,30 @@
+package org.jax.mgi.app.entrezGene;
+
+import org.jax.mgi.shr.config.ConfigException;
+import org.jax.mgi.shr.exception.ExceptionFactory;
+
+/**
+ * An ExceptionFactory for combinations of EntrezGeneCfg settings the
+ * EntrezGeneLoader cannot run with.
+ * @has a hashmap of predefined ConfigExceptions stored by a name key
+ * @does looks up ConfigExceptions by name
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class LoaderConfigExceptionFactory extends ExceptionFactory {
+
+  /**
+   * the streaming bucketizer is configured without a snapshot directory
+   * to read the Entrez Gene data from on its second pass
+   */
+  public static final String StreamingErr =
+      "org.jax.mgi.app.entrezGene.LoaderStreamingErr";
+  static {
+    exceptionsMap.put(StreamingErr, new ConfigException(
+        "EGLOAD_STREAMING_BUCKETIZER requires EGLOAD_SNAPSHOT_DIR to be " +
+        "set so the Entrez Gene data is not queried twice", false));
+  }
+
+
+}
@@ -0,0 +1,187 @@
+package org.jax.mgi.app.entrezGene;
+
+/**
+ * is a class for encoding accession ids of the form prefix plus digits with
+ * an optional version (e.g. NM_008084, XM_006512345.2, AK012345, U12345,
+ * MGI:95661) into a single primitive long. The encoding is lossless, so two
+ * accession ids which can both be packed are equal if and only if their
+ * packed values are equal. Accession ids which do not fit the form are not
+ * packed and must be handled by comparing the accession id strings.
+ * <p>
+ * The layout of the packed value from the most significant bit is:
+ * <UL>
+ * <LI>15 bits: up to three upper case prefix letters, 5 bits each, with
+ * 0 for an absent letter</LI>
+ * <LI>2 bits: the separator following the prefix, none, '_' or ':'</LI>
+ * <LI>4 bits: the number of digits (1 to 11) so leading zeros are kept</LI>
+ * <LI>5 bits: the version plus one or 0 if there is no version</LI>
+ * <LI>38 bits: the numeric part</LI>
+ * </UL>
+ * Since the number of digits is never 0, a packed value is never 0 and
+ * NOT_PACKED (0) is used to indicate an accession id which could not be
+ * packed.
+ * @has nothing
+ * @does packs and unpacks accession ids
+ * @company The Jackson Laboratory
+ * @author M Walker
+ *
+ */
+
+public class PackedAccession
+{
+    /**
+     * the value returned for accession ids which can not be packed
+     */
+    public static final long NOT_PACKED = 0;
+
+    private static final int MAX_LETTERS = 3;
+    private static final int MAX_DIGITS = 11;
+    private static final int MAX_VERSION = 30;
+
+    private static final int NUMBER_BITS = 38;
+    private static final int VERSION_SHIFT = NUMBER_BITS;
+    private static final int DIGITS_SHIFT = VERSION_SHIFT + 5;
+    private static final int SEPARATOR_SHIFT = DIGITS_SHIFT + 4;
+    private static final int LETTERS_SHIFT = SEPARATOR_SHIFT + 2;
+
+    private static final long NUMBER_MASK = (1L << NUMBER_BITS) - 1;
+
+    private static final int SEPARATOR_NONE = 0;
+    private static final int SEPARATOR_UNDERSCORE = 1;
+    private static final int SEPARATOR_COLON = 2;
+
+    /**
+     * pack the given accession id into a long
+     * @assumes nothing
+     * @effects nothing
+     * @param accid the accession id
+     * @return the packed value or NOT_PACKED if the accession id does not
+     * fit the form
+     */
+    public static long pack(String accid)
+    {
+        int len = accid.length();
+        int i = 0;
+
+        long letters = 0;
+        while (i < len && i < MAX_LETTERS)
+        {
+            char c = accid.charAt(i);
+            if (c < 'A' || c > 'Z')
+                break;
+            letters = (letters << 5) | (c - 'A' + 1);
+            i++;
+        }
+        if (i == 0)
+            return NOT_PACKED;
+        // left align the letters
+        letters <<= 5 * (MAX_LETTERS - i);
+
+        int separator = SEPARATOR_NONE;
+        if (i < len && accid.charAt(i) == '_')
+        {
+            separator = SEPARATOR_UNDERSCORE;
+            i++;
+        }
+        else if (i < len && accid.charAt(i) == ':')
+        {
+            separator = SEPARATOR_COLON;
+            i++;
+        }
+
+        int digitsStart = i;
+        long number = 0;
+        while (i < len)
+        {
+            char c = accid.charAt(i);
+            if (c < '0' || c > '9')
+                break;
+            number = number * 10 + (c - '0');
+            i++;
+            if (i - digitsStart > MAX_DIGITS)
+                return NOT_PACKED;
+        }
+        int digits = i - digitsStart;
+        if (digits == 0)
+            return NOT_PACKED;
+
+        int version = 0;
+        if (i < len)
+        {
+            if (accid.charAt(i) != '.' || i + 1 == len)
+                return NOT_PACKED;
+            i++;
+            // a version with a leading zero would not unpack to the same id
+            if (accid.charAt(i) == '0' && i + 1 < len)
+                return NOT_PACKED;
+            int value = 0;
+            while (i < len)
+            {
+                char c = accid.charAt(i);
+                if (c < '0' || c > '9')
+                    return NOT_PACKED;
+                value = value * 10 + (c - '0');
+                if (value > MAX_VERSION)
+                    return NOT_PACKED;
+                i++;
+            }
+            version = value + 1;
+        }
+
+        return (letters << LETTERS_SHIFT) |
+            ((long)separator << SEPARATOR_SHIFT) |
+            ((long)digits << DIGITS_SHIFT) |
+            ((long)version << VERSION_SHIFT) |
+            number;
+    }
+
+    /**
+     * recreate the accession id from a packed value
+     * @assumes the value was obtained from pack() and is not NOT_PACKED
+     * @effects nothing
+     * @param packed the packed value
+     * @return the accession id
+     */
+    public static String unpack(long packed)
+    {
+        StringBuffer buf = new StringBuffer(20);
+
+        int letters = (int)(packed >>> LETTERS_SHIFT);
+        for (int shift = 5 * (MAX_LETTERS - 1); shift >= 0; shift -= 5)
+        {
+            int letter = (letters >>> shift) & 0x1f;
+            if (letter != 0)
+                buf.append((char)('A' + letter - 1));
+        }
+
+        int separator = (int)(packed >>> SEPARATOR_SHIFT) & 0x3;
+        if (separator == SEPARATOR_UNDERSCORE)
+            buf.append('_');
+        else if (separator == SEPARATOR_COLON)
+            buf.append(':');
+
+        int digits = (int)(packed >>> DIGITS_SHIFT) & 0xf;
+        String number = Long.toString(packed & NUMBER_MASK);
+        for (int i = number.length(); i < digits; i++)
+            buf.append('0');
+        buf.append(number);
+
+        int version = (int)(packed >>> VERSION_SHIFT) & 0x1f;
+        if (version != 0)
+            buf.append('.').append(version - 1);
+
+        return buf.toString();
+    }
+
+    /**
+     * calculate a hash code for a packed value
+     * @param packed the packed value
+     * @return the hash code
+     */
+    public static int hash(long packed)
+    {
+        // spread the numeric part, which varies the most, over all bits
+        long h = packed * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+}
@@ -26,6 +26,11 @@ public class SequenceAccession
      * type of sequence
      */
     private int type = 0;
+    /**
+     * the accession id packed into a long or PackedAccession.NOT_PACKED if
+     * the accession id does not fit the packed form
+     */
+    private long packed = PackedAccession.NOT_PACKED;
 
     /**
      * constructor
@@ -35,6 +40,8 @@ public class SequenceAccession
     public SequenceAccession(String accid, int type)
     {
         this.accid = accid;
+        if (accid != null)
+            this.packed = PackedAccession.pack(accid);
         if (type <= 4 && type > 0)
             this.type = type;
     }
@@ -48,6 +55,16 @@ public class SequenceAccession
         return this.accid;
     }
 
+    /**
+     * get the accession id packed into a long
+     * @return the packed accession id or PackedAccession.NOT_PACKED if the
+     * accession id does not fit the packed form
+     */
+    public long getPackedKey()
+    {
+        return this.packed;
+    }
+
     /**
      * get the sequence type
      * @return the sequence type
@@ -79,22 +96,35 @@ public class SequenceAccession
 
     }
     /**
-     * override base class method for calculating hash codes
+     * override base class method for calculating hash codes. The hash is
+     * calculated from the packed accession id when there is one
      * @return hash for this instance
      */
     public int hashCode()
     {
+        if (this.packed != PackedAccession.NOT_PACKED)
+            return PackedAccession.hash(this.packed);
         return this.accid.hashCode();
     }
 
     /**
-     * override base class method for equals
+     * override base class method for equals. Instances obtained from the
+     * SequenceAccessionPool are usually the same object so identity is
+     * checked first, then packed accession ids are compared
      * @param obj the comparison object
      * @return true if equal, false otherwise
      */
     public boolean equals(Object obj)
     {
+        if (this == obj)
+            return true;
         SequenceAccession accid = (SequenceAccession)obj;
+        // packing is lossless so ids which both pack are compared by their
+        // packed values, and an id which packs never equals one which does
+        // not
+        if (this.packed != PackedAccession.NOT_PACKED ||
+            accid.packed != PackedAccession.NOT_PACKED)
+            return this.packed == accid.packed;
         return this.accid.equals(accid.getAccid());
     }
 
@@ -0,0 +1,125 @@
+package org.jax.mgi.app.entrezGene;
+
+import java.util.HashMap;
+
+/**
+ * is a canonicalizing pool of SequenceAccession objects. The Entrez Gene
+ * data and the MGI marker data both refer to the same accession ids, so
+ * obtaining SequenceAccession objects from a shared pool means that each
+ * accession id is held in memory once rather than once per provider, and
+ * that the SequenceAccession objects hashed into the bucketizer index by
+ * both providers are mostly the same objects.
+ * A pooled instance is shared only between requests for the same accession
+ * id and the same sequence type since the type is used when creating
+ * associations (only GenBank RNAs are associated). Instances of the same
+ * accession id with different types still share the accession id string.
+ * @has a map of accession ids to the pooled SequenceAccession objects
+ * @does creates or reuses SequenceAccession objects
+ * @company The Jackson Laboratory
+ * @author M Walker
+ *
+ */
+
+public class SequenceAccessionPool
+{
+    /**
+     * the pool shared by the Entrez Gene and MGI marker queries
+     */
+    private static SequenceAccessionPool shared = new SequenceAccessionPool();
+
+    /**
+     * the pooled objects by accession id. The value is a single
+     * SequenceAccession in the usual case where an accession id is only
+     * seen with one sequence type, otherwise it is an array of
+     * SequenceAccession objects indexed by sequence type
+     */
+    private HashMap pool = new HashMap();
+
+    /**
+     * get the pool shared by the Entrez Gene and MGI marker queries
+     * @return the shared pool
+     */
+    public static SequenceAccessionPool getShared()
+    {
+        return shared;
+    }
+
+    /**
+     * get the pooled SequenceAccession for the given accession id and
+     * type, creating it if it does not yet exist
+     * @assumes nothing
+     * @effects a new SequenceAccession may be added to the pool
+     * @param accid the accession id
+     * @param type the sequence type as defined in SequenceAccession
+     * @return the pooled SequenceAccession
+     */
+    public synchronized SequenceAccession get(String accid, int type)
+    {
+        Object o = this.pool.get(accid);
+        if (o == null)
+        {
+            SequenceAccession acc = new SequenceAccession(accid, type);
+            this.pool.put(accid, acc);
+            return acc;
+        }
+
+        SequenceAccession[] byType = null;
+        if (o instanceof SequenceAccession)
+        {
+            SequenceAccession acc = (SequenceAccession)o;
+            // the constructor maps out of range types to UNDEFINED
+            if (acc.getType() == normalize(type))
+                return acc;
+            byType = new SequenceAccession[SequenceAccession.MGI + 1];
+            byType[acc.getType()] = acc;
+            this.pool.put(acc.getAccid(), byType);
+        }
+        else
+            byType = (SequenceAccession[])o;
+
+        int slot = normalize(type);
+        if (byType[slot] == null)
+        {
+            // share the accession id string already held by the pool
+            String pooledAccid = null;
+            for (int i = 0; i < byType.length && pooledAccid == null; i++)
+                if (byType[i] != null)
+                    pooledAccid = byType[i].getAccid();
+            byType[slot] = new SequenceAccession(pooledAccid, type);
+        }
+        return byType[slot];
+    }
+
+    /**
+     * get the number of distinct accession ids in the pool
+     * @return the number of distinct accession ids
+     */
+    public synchronized int size()
+    {
+        return this.pool.size();
+    }
+
+    /**
+     * remove all objects from the pool. Objects obtained from the pool
+     * remain valid but will no longer be shared with objects obtained
+     * after this call
+     * @assumes nothing
+     * @effects the pool will be empty
+     */
+    public synchronized void clear()
+    {
+        this.pool = new HashMap();
+    }
+
+    /**
+     * map a sequence type to the value SequenceAccession stores for it
+     * @param type the sequence type
+     * @return the type or SequenceAccession.UNDEFINED if out of range
+     */
+    private static int normalize(int type)
+    {
+        if (type <= SequenceAccession.MGI && type > 0)
+            return type;
+        return SequenceAccession.UNDEFINED;
+    }
+}
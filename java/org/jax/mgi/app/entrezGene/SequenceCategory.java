@@ -0,0 +1,52 @@
+package org.jax.mgi.app.entrezGene;
+
+/**
+ * is an enumeration of the sequence categories recognized by the
+ * AccessionClassifier. Each category carries the name used for it in
+ * org.jax.mgi.app.entrezGene.Constants so that the category can be used
+ * anywhere those names were used before
+ * @has a name for each category
+ * @does nothing
+ * @company Jackson Laboratory
+ * @author M Walker
+ *
+ */
+
+public enum SequenceCategory
+{
+    GENBANK(Constants.GENBANK),
+    MGIID(Constants.MGIID),
+    XM(Constants.XM),
+    XR(Constants.XR),
+    XP(Constants.XP),
+    NM(Constants.NM),
+    NR(Constants.NR),
+    NP(Constants.NP),
+    NG(Constants.NG),
+    NT(Constants.NT),
+    NW(Constants.NW),
+    UNKNOWN(Constants.UNKNOWN);
+
+    /**
+     * the name of this category as defined in Constants
+     */
+    private final String name;
+
+    /**
+     * constructor
+     * @param name the name of this category as defined in Constants
+     */
+    private SequenceCategory(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * get the name of this category as defined in Constants
+     * @return the category name
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+}
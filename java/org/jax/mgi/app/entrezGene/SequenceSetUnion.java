@@ -0,0 +1,124 @@
+package org.jax.mgi.app.entrezGene;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * is a read only view of the union of several sets of sequences. The
+ * sequences of an EntrezGeneBucketizable are partitioned by category, so
+ * the sets of a view never share members and the size and iteration of
+ * the union can be obtained from the underlying sets without copying them.
+ * Changes to the underlying sets are visible through the view
+ * @has an array of sets and the indexes of the underlying sets within it
+ * @does provides iteration, size and membership over the underlying sets
+ * @company The Jackson Laboratory
+ * @author M Walker
+ *
+ */
+
+public class SequenceSetUnion extends AbstractSet
+{
+    /**
+     * an array of sets, any of which may be null
+     */
+    private Set[] sets = null;
+
+    /**
+     * the indexes of the underlying sets within the array of sets
+     */
+    private int[] members = null;
+
+    /**
+     * constructor. The arrays are not copied so that a view can be created
+     * without allocating anything beyond the view itself
+     * @assumes no two of the underlying sets share a member
+     * @effects nothing
+     * @param sets an array of sets, any of which may be null
+     * @param members the indexes of the underlying sets within the array
+     */
+    public SequenceSetUnion(Set[] sets, int[] members)
+    {
+        this.sets = sets;
+        this.members = members;
+    }
+
+    /**
+     * get the number of sequences in the union
+     * @return the sum of the sizes of the underlying sets
+     */
+    public int size()
+    {
+        int size = 0;
+        for (int i = 0; i < members.length; i++)
+        {
+            Set set = sets[members[i]];
+            if (set != null)
+                size += set.size();
+        }
+        return size;
+    }
+
+    /**
+     * determine whether the union contains the given object
+     * @param o the object
+     * @return true if any of the underlying sets contains the object
+     */
+    public boolean contains(Object o)
+    {
+        for (int i = 0; i < members.length; i++)
+        {
+            Set set = sets[members[i]];
+            if (set != null && set.contains(o))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * get an iterator over the underlying sets in turn. The iterator does
+     * not support removal
+     * @return the iterator
+     */
+    public Iterator iterator()
+    {
+        return new UnionIterator();
+    }
+
+    /**
+     * is an iterator which visits each of the underlying sets in turn
+     * @has the index of the current set and its iterator
+     * @does iterates over the union
+     */
+    private class UnionIterator implements Iterator
+    {
+        private int next = 0;
+        private Iterator current = null;
+
+        public boolean hasNext()
+        {
+            while (current == null || !current.hasNext())
+            {
+                if (next == members.length)
+                    return false;
+                Set set = sets[members[next++]];
+                current = (set == null ? null : set.iterator());
+            }
+            return true;
+        }
+
+        public Object next()
+        {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return current.next();
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException(
+                "SequenceSetUnion is read only");
+        }
+    }
+}
@@ -1,21 +1,24 @@
 package org.jax.mgi.dbs.mgd.lookup;
 
-import java.util.Vector;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 
-import org.jax.mgi.shr.cache.FullCachedLookup;
-import org.jax.mgi.shr.cache.KeyValue;
+import org.jax.mgi.shr.cache.FullCachedIntLookup;
+import org.jax.mgi.shr.cache.LookupSnapshot;
+import org.jax.mgi.shr.cache.SnapshotValues;
 import org.jax.mgi.shr.dbutils.DBException;
+import org.jax.mgi.shr.dbutils.SQLDataManager;
 import org.jax.mgi.shr.dbutils.SQLDataManagerFactory;
-import org.jax.mgi.shr.dbutils.MultiRowInterpreter;
-import org.jax.mgi.shr.dbutils.RowDataInterpreter;
 import org.jax.mgi.shr.dbutils.RowReference;
 import org.jax.mgi.shr.config.ConfigException;
 import org.jax.mgi.shr.cache.CacheException;
 import org.jax.mgi.dbs.SchemaConstants;
 import org.jax.mgi.app.entrezGene.SequenceAccession;
+import org.jax.mgi.app.entrezGene.SequenceAccessionPool;
 
 /**
- * is a FullCachedLookup for finding sequences associated to MGI markers
+ * is a FullCachedIntLookup for finding sequences associated to MGI markers
  * @has nothing
  * @does queries the database and stores data into memory
  * @company Jackson Laboratory
@@ -23,7 +26,8 @@ import org.jax.mgi.app.entrezGene.SequenceAccession;
  *
  */
 
-public class AssocAccidLookup extends FullCachedLookup
+public class AssocAccidLookup extends FullCachedIntLookup
+    implements SnapshotValues
 {
 
     /**
@@ -39,7 +43,25 @@ public class AssocAccidLookup extends FullCachedLookup
         ConfigException,
         CacheException
     {
-        super(SQLDataManagerFactory.getShared(SchemaConstants.MGD));
+        this(SQLDataManagerFactory.getShared(SchemaConstants.MGD));
+    }
+
+    /**
+     * Constructor which queries the database through the given
+     * SQLDataManager so that the cache may be loaded on its own connection
+     * @param sqlMgr the SQLDataManager for the MGD database
+     * @throws DBException thrown if there is an error accessing the database
+     * @throws CacheException thrown if there is an error accessing the cache
+     * @throws ConfigException thrown of there is an error accessing the
+     * configuration
+     */
+
+    public AssocAccidLookup(SQLDataManager sqlMgr)
+        throws DBException,
+        ConfigException,
+        CacheException
+    {
+        super(sqlMgr);
     }
 
     /**
@@ -48,15 +70,16 @@ public class AssocAccidLookup extends FullCachedLookup
      * @effects if the cache has not been initialized then the query will be
      * executed and the cache will be loaded
      * @param markerKey the database key for a marker
-     * @return a vector of SequenceAccession objects
+     * @return the associated SequenceAccession objects or null if there are
+     * none
      * @throws CacheException thrown if there is an error accessing the
      * caches
      * @throws DBException thrown if there is an error accessing the database
      */
-    public Vector lookup(Integer markerKey)
+    public SequenceAccession[] lookup(int markerKey)
     throws CacheException, DBException
     {
-        return (Vector)super.lookupNullsOk(markerKey);
+        return (SequenceAccession[])super.lookupValues(markerKey);
     }
 
     /**
@@ -65,72 +88,158 @@ public class AssocAccidLookup extends FullCachedLookup
      */
     public String getFullInitQuery()
     {
+        return getAssociationQuery();
+    }
 
-	// select sequence ids, sequence types for GenBank and RefSeq associated with mouse Markers
-	// and secondary MGI ids for Markers
+    /**
+     * get the query for the sequences and secondary MGI ids of all markers
+     * ordered by marker key. The query is also read without the cache by
+     * the merge join of the MGIMarkerQuery
+     * @return the query
+     */
+    public static String getAssociationQuery()
+    {
+
+	// select sequence ids, sequence types for GenBank and RefSeq
+	// associated with mouse Markers and secondary MGI ids for Markers
 
         String sql =
             "select c._Marker_key, a.accID, t.abbreviation  " +
-            "from SEQ_Marker_Cache c, ACC_Accession a, VOC_Term t, MRK_Marker m " +
+            getSequenceFromClause() +
+            "union " +
+            "select a._Object_key, a.accID, 'M' " +
+            getMGIIDFromClause() +
+            "order by _Marker_key, accid";
+
+        return sql;
+    }
+
+    /**
+     * get the probe query identifying the current associations for
+     * snapshots
+     * @return the row counts and latest modification dates of the sequence
+     * associations and of the secondary MGI ids
+     */
+    public String getSnapshotProbeQuery()
+    {
+        return
+            "select count(*), max(c.modification_date) " +
+            getSequenceFromClause() +
+            "union all " +
+            "select count(*), max(a.modification_date) " +
+            getMGIIDFromClause();
+    }
+
+    /**
+     * get the from and where clauses selecting the sequences of markers
+     * @return the from and where clauses
+     */
+    private static String getSequenceFromClause()
+    {
+        return
+            "from SEQ_Marker_Cache c, ACC_Accession a, VOC_Term t, " +
+            "MRK_Marker m " +
             "where c._Organism_key = 1 " +
             "and c._LogicalDB_key in (9, 27)  " +
             "and c._SequenceType_key = t._Term_key  " +
             "and c._Sequence_key = a._Object_key " +
             "and a._MGIType_key = 19 " +
-	    "and c._Marker_key = m._Marker_key " +
-            "union " +
-            "select a._Object_key, a.accID, 'M' " +
+	    "and c._Marker_key = m._Marker_key ";
+    }
+
+    /**
+     * get the from and where clauses selecting the secondary MGI ids of
+     * markers
+     * @return the from and where clauses
+     */
+    private static String getMGIIDFromClause()
+    {
+        return
             "from ACC_Accession a, MRK_Marker m " +
             "where a._MGIType_key = 2 " +
             "and  a._LogicalDB_key = 1 " +
             "and a.prefixPart = 'MGI:' " +
             "and a.preferred != 1 " +
-	    "and a._Object_key = m._Marker_key " +
-            "order by _Marker_key, accid";
+	    "and a._Object_key = m._Marker_key ";
+    }
 
-        return sql;
+    /**
+     * write a SequenceAccession to a snapshot
+     * @param out the output
+     * @param value the SequenceAccession
+     * @throws IOException thrown if the value could not be written
+     */
+    public void writeValue(DataOutputStream out, Object value)
+    throws IOException
+    {
+        SequenceAccession acc = (SequenceAccession)value;
+        LookupSnapshot.putString(out, acc.getAccid());
+        out.writeByte(acc.getType());
+    }
+
+    /**
+     * read a pooled SequenceAccession written by writeValue()
+     * @param in the input
+     * @return the SequenceAccession
+     */
+    public Object readValue(ByteBuffer in)
+    {
+        String accid = LookupSnapshot.getString(in);
+        return SequenceAccessionPool.getShared().get(accid, in.get());
+    }
+
+    /**
+     * get the marker key of a row of the association query
+     * @param ref the row
+     * @return the marker key
+     * @throws DBException thrown if there is an error reading the row
+     */
+    protected int interpretKey(RowReference ref) throws DBException
+    {
+        return ref.getInt(1).intValue();
+    }
+
+    /**
+     * get the SequenceAccession of a row of the association query
+     * @param ref the row
+     * @return the SequenceAccession
+     * @throws DBException thrown if there is an error reading the row
+     */
+    protected Object interpretValue(RowReference ref) throws DBException
+    {
+        return interpretAccession(ref);
+    }
+
+    /**
+     * create the array for the SequenceAccessions of a marker
+     * @param length the number of SequenceAccessions
+     * @return the array
+     */
+    protected Object[] createValues(int length)
+    {
+        return new SequenceAccession[length];
     }
 
     /**
-     * return the RowDataInterpreter for creating Vectors of
-     * SequenceAccession objects from the query results
-     * @return the RowDataInterpreter for this query
+     * get the pooled SequenceAccession of a row of the association query
+     * @param ref the row
+     * @return the SequenceAccession
+     * @throws DBException thrown if there is an error reading the row
      */
-    public RowDataInterpreter getRowDataInterpreter()
+    public static SequenceAccession interpretAccession(RowReference ref)
+    throws DBException
     {
-        class Interpreter implements MultiRowInterpreter
-        {
-            private Integer markerKey = null;
-
-            public Object interpret(RowReference ref)
-            throws DBException
-            {
-                this.markerKey = ref.getInt(1);
-                String type = ref.getString(3);
-                int typeConstant = 0;
-                if (type.equals("M"))
-                    typeConstant = SequenceAccession.MGI;
-                else if (type.equals("D"))
-                    typeConstant = SequenceAccession.DNA;
-                else if (type.equals("R"))
-                    typeConstant = SequenceAccession.RNA;
-                else if (type.equals("P"))
-                    typeConstant = SequenceAccession.PROTEIN;
-                SequenceAccession accid =
-                    new SequenceAccession(ref.getString(2), typeConstant);
-                return accid;
-            }
-
-            public Object interpretKey(RowReference ref) throws DBException
-            {
-                return ref.getInt(1);
-            }
-
-            public Object interpretRows(Vector v)
-            {
-                return new KeyValue(this.markerKey, v);
-            }
-        }
-        return new Interpreter();
+        String type = ref.getString(3);
+        int typeConstant = 0;
+        if (type.equals("M"))
+            typeConstant = SequenceAccession.MGI;
+        else if (type.equals("D"))
+            typeConstant = SequenceAccession.DNA;
+        else if (type.equals("R"))
+            typeConstant = SequenceAccession.RNA;
+        else if (type.equals("P"))
+            typeConstant = SequenceAccession.PROTEIN;
+        return SequenceAccessionPool.getShared().get(ref.getString(2),
+                                                     typeConstant);
     }
 }
@@ -8,12 +8,15 @@ import org.jax.mgi.shr.sva.SVASet;
 import org.jax.mgi.shr.cache.SVAIndexCache;
 import org.jax.mgi.shr.cache.CacheException;
 import org.jax.mgi.shr.cache.KeyValue;
+import org.jax.mgi.shr.cache.LookupMetrics;
+import org.jax.mgi.shr.cache.LookupMetricsRegistry;
 import org.jax.mgi.shr.dbutils.DBException;
 import org.jax.mgi.shr.dbutils.SQLDataManagerFactory;
 import org.jax.mgi.shr.dbutils.RowDataInterpreter;
 import org.jax.mgi.shr.dbutils.RowReference;
 import org.jax.mgi.shr.config.ConfigException;
 import org.jax.mgi.shr.stringutil.StringLib;
+import org.jax.mgi.shr.timing.Stopwatch;
 import org.jax.mgi.dbs.SchemaConstants;
 import org.jax.mgi.dbs.mgd.LogicalDBConstants;
 
@@ -34,6 +37,10 @@ import org.jax.mgi.dbs.mgd.LogicalDBConstants;
 public class EntrezGeneHistory
     extends SVAIndexCache
 {
+    // the load statistics and lookup counters of the history
+    private LookupMetrics metrics =
+        LookupMetricsRegistry.getShared().getMetrics("EntrezGeneHistory");
+
     /**
      * constructor
      * @throws ConfigException thrown if there is an error accesing the
@@ -56,6 +63,7 @@ public class EntrezGeneHistory
     public String lookupEGeneID(String mgiID)
     {
         Set s = super.lookupIndex("mgi", mgiID);
+        this.metrics.recordLookup(s != null);
         if (s == null)
             return null;
         Set ids = new HashSet();
@@ -71,11 +79,46 @@ public class EntrezGeneHistory
     {
         Association assoc =
             (Association)super.lookupNullsOk(entrezGeneID);
+        this.metrics.recordLookup(assoc != null);
         if (assoc == null)
             return null;
         return assoc.mgiID;
     }
 
+    /**
+     * load the cache and the index of MGI ids and record the time taken
+     * and the estimated memory retained
+     * @throws DBException thrown if there is an error accessing the database
+     * @throws CacheException thrown if there is an error accessing the cache
+     */
+    public void initCache()
+    throws DBException, CacheException
+    {
+        Stopwatch stopwatch = new Stopwatch();
+        stopwatch.start();
+        super.initCache();
+        stopwatch.stop();
+        // each association is held by the cache and by the SVA index
+        long bytes = LookupMetrics.sizeOfMap(super.cache.size()) * 2;
+        for (Iterator i = super.cache.values().iterator(); i.hasNext();)
+        {
+            Association assoc = (Association)i.next();
+            bytes += 24 + LookupMetrics.sizeOf(assoc.entrezGeneID) +
+                LookupMetrics.sizeOf(assoc.mgiID);
+        }
+        this.metrics.recordLoad(stopwatch.time(), super.cache.size(), bytes,
+                                false);
+    }
+
+    /**
+     * get the load statistics and lookup counters of the history
+     * @return the LookupMetrics
+     */
+    public LookupMetrics getMetrics()
+    {
+        return this.metrics;
+    }
+
     public SVASetConverter getSVASetConverter()
     {
         class Converter
@@ -0,0 +1,496 @@
+package org.jax.mgi.dbs.mgd.lookup;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.jax.mgi.shr.cache.LoadableCache;
+import org.jax.mgi.shr.cache.LookupMetrics;
+import org.jax.mgi.shr.cache.LookupMetricsRegistry;
+import org.jax.mgi.shr.cache.LookupSnapshot;
+import org.jax.mgi.shr.dbutils.DBException;
+import org.jax.mgi.shr.dbutils.ResultsNavigator;
+import org.jax.mgi.shr.dbutils.RowReference;
+import org.jax.mgi.shr.dbutils.SQLDataManager;
+import org.jax.mgi.shr.dbutils.SQLDataManagerFactory;
+import org.jax.mgi.shr.config.ConfigException;
+import org.jax.mgi.shr.timing.Stopwatch;
+import org.jax.mgi.dbs.SchemaConstants;
+import org.jax.mgi.dbs.mgd.LogicalDBConstants;
+import org.jax.mgi.app.entrezGene.Constants;
+
+/**
+ * @is a two way index of the Gene Unification (GU) associations between
+ *   GU ids and MGI markers, loaded by a single query.
+ *   A GU Id is an NCBI Gene Model ID determined to be associated with an
+ *   MGI Gene by the MGI Gene Unification (GU) process
+ * @has a dictionary of GU ids and two compressed adjacency lists of
+ *   primitive int arrays, one ordered by GU id and one ordered by marker key
+ * @does
+ *   <UL>
+ *   <LI> Provides a method to lookup marker keys for a given GU id
+ *   <LI> Provides a method to lookup GU ids for a given marker key
+ *   </UL>
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class GUAssociationIndex implements LoadableCache
+{
+    // the MGD database manager
+    private SQLDataManager sqlMgr = null;
+
+    // the GU id to dictionary index (Integer) map
+    private HashMap dictionary = new HashMap();
+
+    // the GU ids by dictionary index
+    private String[] guIds = new String[0];
+
+    // the marker keys of the GU id with dictionary index i are
+    // guMarkers[guOffsets[i]] up to guMarkers[guOffsets[i + 1]]
+    private int[] guOffsets = new int[1];
+    private int[] guMarkers = new int[0];
+
+    // the distinct marker keys in ascending order. The dictionary indexes of
+    // the GU ids of markerKeys[i] are markerGUIds[markerOffsets[i]] up to
+    // markerGUIds[markerOffsets[i + 1]]
+    private int[] markerKeys = new int[0];
+    private int[] markerOffsets = new int[1];
+    private int[] markerGUIds = new int[0];
+
+    // the directory holding snapshots of the index or null if snapshots are
+    // not used
+    private File snapshotDirectory = null;
+
+    // the load statistics and lookup counters of the index
+    private LookupMetrics metrics =
+        LookupMetricsRegistry.getShared().getMetrics("GUAssociationIndex");
+
+    /**
+     * Constructor
+     * @throws DBException thrown if there is an error accessing the database
+     * @throws ConfigException thrown of there is an error accessing the
+     * configuration
+     */
+    public GUAssociationIndex()
+        throws DBException,
+        ConfigException
+    {
+        this(SQLDataManagerFactory.getShared(SchemaConstants.MGD));
+    }
+
+    /**
+     * Constructor which queries the database through the given
+     * SQLDataManager so that the index may be loaded on its own connection
+     * @param sqlMgr the SQLDataManager for the MGD database
+     */
+    public GUAssociationIndex(SQLDataManager sqlMgr)
+    {
+        this.sqlMgr = sqlMgr;
+    }
+
+    /**
+     * set the directory holding snapshots of the index. When set, the index
+     * is read from the snapshot of the current GU associations if there is
+     * one, otherwise it is queried and a snapshot written
+     * @param snapshotDirectory the directory or null to not use snapshots
+     */
+    public void setSnapshotDirectory(File snapshotDirectory)
+    {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    /**
+     * lookup the marker keys associated with a given GU id
+     * @assumes the index has been loaded
+     * @effects nothing
+     * @param guID an NCBI Gene Model Id
+     * @return the marker keys in ascending order or null if the GU id has
+     * no associations
+     */
+    public int[] getMarkerKeys(String guID)
+    {
+        Integer index = (Integer)this.dictionary.get(guID);
+        this.metrics.recordLookup(index != null);
+        if (index == null)
+            return null;
+        int i = index.intValue();
+        int start = this.guOffsets[i];
+        int end = this.guOffsets[i + 1];
+        int[] keys = new int[end - start];
+        System.arraycopy(this.guMarkers, start, keys, 0, keys.length);
+        return keys;
+    }
+
+    /**
+     * lookup the GU ids associated with a given marker
+     * @assumes the index has been loaded
+     * @effects nothing
+     * @param markerKey the mgi database key of a marker
+     * @return the GU ids or null if the marker has no associations
+     */
+    public String[] getGUIds(int markerKey)
+    {
+        int i = Arrays.binarySearch(this.markerKeys, markerKey);
+        this.metrics.recordLookup(i >= 0);
+        if (i < 0)
+            return null;
+        int start = this.markerOffsets[i];
+        int end = this.markerOffsets[i + 1];
+        String[] ids = new String[end - start];
+        for (int j = start; j < end; j++)
+            ids[j - start] = this.guIds[this.markerGUIds[j]];
+        return ids;
+    }
+
+    /**
+     * get the number of GU ids associated with a given marker
+     * @assumes the index has been loaded
+     * @effects nothing
+     * @param markerKey the mgi database key of a marker
+     * @return the number of GU ids, 0 if there are none
+     */
+    public int getGUIdCount(int markerKey)
+    {
+        int i = Arrays.binarySearch(this.markerKeys, markerKey);
+        this.metrics.recordLookup(i >= 0);
+        if (i < 0)
+            return 0;
+        return this.markerOffsets[i + 1] - this.markerOffsets[i];
+    }
+
+    /**
+     * get the number of GU associations in the index
+     * @return the number of associations
+     */
+    public int getCacheSize()
+    {
+        return this.guMarkers.length;
+    }
+
+    /**
+     * get the load statistics and lookup counters of the index
+     * @return the LookupMetrics
+     */
+    public LookupMetrics getMetrics()
+    {
+        return this.metrics;
+    }
+
+    /**
+     * load the index from the snapshot of the current GU associations if
+     * snapshots are used and there is one, otherwise run the GU association
+     * query and build the index in both directions
+     * @assumes nothing
+     * @effects the query will be executed and the index replaced
+     * @throws DBException thrown if there is an error accessing the database
+     */
+    public void initCache() throws DBException
+    {
+        Stopwatch stopwatch = new Stopwatch();
+        stopwatch.start();
+        LookupSnapshot snapshot = null;
+        boolean fromSnapshot = false;
+        if (this.snapshotDirectory != null)
+        {
+            snapshot = new LookupSnapshot(this.snapshotDirectory,
+                this.metrics, this.sqlMgr, getSnapshotProbeQuery());
+            fromSnapshot = snapshot.read(new Content());
+        }
+        if (!fromSnapshot)
+        {
+            loadQuery();
+            if (snapshot != null)
+                snapshot.write(new Content());
+        }
+        stopwatch.stop();
+        this.metrics.recordLoad(stopwatch.time(), getCacheSize(),
+                                getRetainedBytes(), fromSnapshot);
+    }
+
+    /**
+     * estimate the memory retained by the dictionary and the int arrays
+     * @return the estimated bytes
+     */
+    private long getRetainedBytes()
+    {
+        // each dictionary entry holds a GU id and an Integer index
+        long bytes = LookupMetrics.sizeOfMap(this.guIds.length) +
+            LookupMetrics.sizeOfArray(this.guIds.length, 8) +
+            (long)this.guIds.length * 16;
+        for (int i = 0; i < this.guIds.length; i++)
+            bytes += LookupMetrics.sizeOf(this.guIds[i]);
+        bytes += LookupMetrics.sizeOfArray(this.guOffsets.length, 4) +
+            LookupMetrics.sizeOfArray(this.guMarkers.length, 4) +
+            LookupMetrics.sizeOfArray(this.markerKeys.length, 4) +
+            LookupMetrics.sizeOfArray(this.markerOffsets.length, 4) +
+            LookupMetrics.sizeOfArray(this.markerGUIds.length, 4);
+        return bytes;
+    }
+
+    /**
+     * run the GU association query and build the index in both directions
+     * @throws DBException thrown if there is an error accessing the database
+     */
+    private void loadQuery() throws DBException
+    {
+        HashMap dictionary = new HashMap();
+        String[] ids = new String[1024];
+        long[] byGU = new long[1024];
+        int rows = 0;
+
+        ResultsNavigator nav = this.sqlMgr.executeQuery(getQuery());
+        try
+        {
+            while (nav.next())
+            {
+                RowReference row = nav.getRowReference();
+                String guID = row.getString(1);
+                int markerKey = row.getInt(2).intValue();
+                Integer index = (Integer)dictionary.get(guID);
+                if (index == null)
+                {
+                    index = new Integer(dictionary.size());
+                    dictionary.put(guID, index);
+                    if (index.intValue() == ids.length)
+                        ids = grow(ids);
+                    ids[index.intValue()] = guID;
+                }
+                if (rows == byGU.length)
+                    byGU = grow(byGU);
+                byGU[rows++] = pair(index.intValue(), markerKey);
+            }
+        }
+        finally
+        {
+            nav.close();
+        }
+
+        // the associations are ordered once by GU id and once by marker key
+        // as pairs packed into longs, dropping duplicate associations
+        Arrays.sort(byGU, 0, rows);
+        rows = unique(byGU, rows);
+        long[] byMarker = new long[rows];
+        for (int i = 0; i < rows; i++)
+            byMarker[i] = pair(second(byGU[i]), first(byGU[i]));
+        Arrays.sort(byMarker);
+
+        int guCount = dictionary.size();
+        int[] guOffsets = new int[guCount + 1];
+        int[] guMarkers = new int[rows];
+        for (int i = 0; i < rows; i++)
+        {
+            guOffsets[first(byGU[i]) + 1]++;
+            guMarkers[i] = second(byGU[i]);
+        }
+        for (int i = 0; i < guCount; i++)
+            guOffsets[i + 1] += guOffsets[i];
+
+        int markerCount = 0;
+        for (int i = 0; i < rows; i++)
+        {
+            if (i == 0 || first(byMarker[i]) != first(byMarker[i - 1]))
+                markerCount++;
+        }
+        int[] markerKeys = new int[markerCount];
+        int[] markerOffsets = new int[markerCount + 1];
+        int[] markerGUIds = new int[rows];
+        int m = -1;
+        for (int i = 0; i < rows; i++)
+        {
+            if (i == 0 || first(byMarker[i]) != first(byMarker[i - 1]))
+            {
+                markerKeys[++m] = first(byMarker[i]);
+                markerOffsets[m] = i;
+            }
+            markerGUIds[i] = second(byMarker[i]);
+        }
+        markerOffsets[markerCount] = rows;
+
+        String[] guIds = new String[guCount];
+        System.arraycopy(ids, 0, guIds, 0, guCount);
+
+        this.dictionary = dictionary;
+        this.guIds = guIds;
+        this.guOffsets = guOffsets;
+        this.guMarkers = guMarkers;
+        this.markerKeys = markerKeys;
+        this.markerOffsets = markerOffsets;
+        this.markerGUIds = markerGUIds;
+    }
+
+    /**
+     * Get the query for all GU associations.
+     * @return The query for all GU associations.
+     */
+    public String getQuery()
+    {
+        // select guIds and the marker keys of their associated markers
+        return "select a.accid as guId , a._object_key as _Marker_key  " +
+            getFromClause();
+    }
+
+    /**
+     * Get the probe query identifying the current GU associations for
+     * snapshots.
+     * @return the row count and latest modification date of the GU
+     * associations
+     */
+    public String getSnapshotProbeQuery()
+    {
+        return "select count(*), max(a.modification_date) " +
+            getFromClause();
+    }
+
+    /**
+     * Get the from and where clauses selecting the GU associations.
+     * @return the from and where clauses
+     */
+    private String getFromClause()
+    {
+        return
+             "from ACC_Accession a, MRK_Marker m, ACC_AccessionReference r " +
+             "where a._MGIType_key = 2 " +
+             "and a._LogicalDB_key = " + LogicalDBConstants.NCBI_GENE + " " +
+             "and a._Object_key = m._Marker_key " +
+             "and m._Organism_key = 1 " +
+             "and a._Accession_key = r._Accession_key " +
+             "and r._Refs_key = " + Constants.EGLOAD_GU_REFSKEY;
+    }
+
+    /**
+     * is the snapshot form of the index
+     * @has nothing
+     * @does writes the GU ids and int arrays of the index and replaces them
+     * with those read back
+     */
+    private class Content implements LookupSnapshot.Content
+    {
+        public void writeTo(DataOutputStream out) throws IOException
+        {
+            out.writeInt(guIds.length);
+            for (int i = 0; i < guIds.length; i++)
+                LookupSnapshot.putString(out, guIds[i]);
+            putInts(out, guOffsets);
+            putInts(out, guMarkers);
+            putInts(out, markerKeys);
+            putInts(out, markerOffsets);
+            putInts(out, markerGUIds);
+        }
+
+        public void readFrom(ByteBuffer in)
+        {
+            String[] ids = new String[in.getInt()];
+            HashMap dict = new HashMap(ids.length * 4 / 3 + 1);
+            for (int i = 0; i < ids.length; i++)
+            {
+                ids[i] = LookupSnapshot.getString(in);
+                dict.put(ids[i], new Integer(i));
+            }
+            int[] go = getInts(in);
+            int[] gm = getInts(in);
+            int[] mk = getInts(in);
+            int[] mo = getInts(in);
+            int[] mg = getInts(in);
+            dictionary = dict;
+            guIds = ids;
+            guOffsets = go;
+            guMarkers = gm;
+            markerKeys = mk;
+            markerOffsets = mo;
+            markerGUIds = mg;
+        }
+
+        private void putInts(DataOutputStream out, int[] a)
+        throws IOException
+        {
+            out.writeInt(a.length);
+            for (int i = 0; i < a.length; i++)
+                out.writeInt(a[i]);
+        }
+
+        private int[] getInts(ByteBuffer in)
+        {
+            int[] a = new int[in.getInt()];
+            in.asIntBuffer().get(a);
+            in.position(in.position() + a.length * 4);
+            return a;
+        }
+    }
+
+    /**
+     * pack two non-negative ints into a long which sorts by the first int
+     * and then by the second
+     * @param first the first int
+     * @param second the second int
+     * @return the packed pair
+     */
+    private static long pair(int first, int second)
+    {
+        return ((long)first << 32) | (second & 0xffffffffL);
+    }
+
+    /**
+     * get the first int of a packed pair
+     * @param pair the packed pair
+     * @return the first int
+     */
+    private static int first(long pair)
+    {
+        return (int)(pair >>> 32);
+    }
+
+    /**
+     * get the second int of a packed pair
+     * @param pair the packed pair
+     * @return the second int
+     */
+    private static int second(long pair)
+    {
+        return (int)pair;
+    }
+
+    /**
+     * remove the duplicates from the start of a sorted array
+     * @param a the array
+     * @param length the number of elements in use
+     * @return the number of distinct elements now at the start of the array
+     */
+    private static int unique(long[] a, int length)
+    {
+        int n = 0;
+        for (int i = 0; i < length; i++)
+        {
+            if (n == 0 || a[i] != a[n - 1])
+                a[n++] = a[i];
+        }
+        return n;
+    }
+
+    /**
+     * double the length of an array
+     * @param a the array
+     * @return the new array holding the elements of the given one
+     */
+    private static long[] grow(long[] a)
+    {
+        long[] b = new long[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    /**
+     * double the length of an array
+     * @param a the array
+     * @return the new array holding the elements of the given one
+     */
+    private static String[] grow(String[] a)
+    {
+        String[] b = new String[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+}
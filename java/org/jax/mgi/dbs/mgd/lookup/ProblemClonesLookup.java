@@ -1,15 +1,19 @@
 package org.jax.mgi.dbs.mgd.lookup;
 
-import org.jax.mgi.shr.cache.MappedStringToBoolean;
+import org.jax.mgi.shr.cache.FullCachedStringSet;
 import org.jax.mgi.shr.dbutils.DBException;
+import org.jax.mgi.shr.dbutils.SQLDataManager;
 import org.jax.mgi.shr.dbutils.SQLDataManagerFactory;
 import org.jax.mgi.shr.config.ConfigException;
 import org.jax.mgi.shr.cache.CacheException;
 import org.jax.mgi.dbs.SchemaConstants;
+import org.jax.mgi.dbs.mgd.LogicalDBConstants;
 
 /**
- * is a FullCachedLookup for looking up whether or not a given accession id is
- * associated with a known problem clone (identified via PRB_notes)
+ * is a FullCachedStringSet for looking up whether or not a given accession id
+ * is associated with a known problem clone (identified via PRB_notes). Only
+ * GenBank ids can be problem clones, so ids of other logical databases are
+ * rejected without consulting the set
  * @has an internal cache
  * @does provides a lookup for accessing the cached data
  * @company Jackson Laboratory
@@ -17,7 +21,7 @@ import org.jax.mgi.dbs.SchemaConstants;
  *
  */
 
-public class ProblemClonesLookup extends MappedStringToBoolean
+public class ProblemClonesLookup extends FullCachedStringSet
 {
 
     /**
@@ -33,7 +37,64 @@ public class ProblemClonesLookup extends MappedStringToBoolean
         ConfigException,
         CacheException
     {
-        super(SQLDataManagerFactory.getShared(SchemaConstants.MGD));
+        this(SQLDataManagerFactory.getShared(SchemaConstants.MGD));
+    }
+
+    /**
+     * Constructor which queries the database through the given
+     * SQLDataManager so that the cache may be loaded on its own connection
+     * @param sqlMgr the SQLDataManager for the MGD database
+     * @throws DBException thrown if there is an error accessing the database
+     * @throws CacheException thrown if there is an error accessing the cache
+     * @throws ConfigException thrown of there is an error accessing the
+     * configuration
+     */
+
+    public ProblemClonesLookup(SQLDataManager sqlMgr)
+        throws DBException,
+        ConfigException,
+        CacheException
+    {
+        super(sqlMgr);
+    }
+
+    /**
+     * determine whether a GenBank accession id is a problem clone
+     * @assumes nothing
+     * @effects if the cache has not been initialized then the query will be
+     * executed and the cache will be loaded
+     * @param accid the GenBank accession id
+     * @return true if the accession id is a problem clone
+     * @throws CacheException thrown if there is an error accessing the cache
+     * @throws DBException thrown if there is an error accessing the database
+     */
+    public boolean lookup(String accid)
+        throws DBException,
+        CacheException
+    {
+        return super.contains(accid);
+    }
+
+    /**
+     * determine whether an accession id of a logical database is a problem
+     * clone
+     * @assumes nothing
+     * @effects if the cache has not been initialized then the query will be
+     * executed and the cache will be loaded
+     * @param logicalDBKey the logical database of the accession id
+     * @param accid the accession id
+     * @return true if the accession id is a problem clone, always false for
+     * logical databases other than GenBank
+     * @throws CacheException thrown if there is an error accessing the cache
+     * @throws DBException thrown if there is an error accessing the database
+     */
+    public boolean lookup(int logicalDBKey, String accid)
+        throws DBException,
+        CacheException
+    {
+        if (logicalDBKey != LogicalDBConstants.SEQUENCE)
+            return false;
+        return super.contains(accid);
     }
 
     /**
@@ -48,11 +109,32 @@ public class ProblemClonesLookup extends MappedStringToBoolean
         /**
          * gets accession ids of problem clones
          */
+        return "select a.accID " + getFromClause();
+    }
+
+    /**
+     * Get the probe query identifying the current problem clones for
+     * snapshots.
+     * @return the row count and latest modification date of the problem
+     * clone notes
+     */
+
+    public String getSnapshotProbeQuery()
+    {
+        return "select count(*), max(n.modification_date) " + getFromClause();
+    }
+
+    /**
+     * Get the from and where clauses selecting the problem clones.
+     * @return the from and where clauses
+     */
+
+    private String getFromClause()
+    {
         return
-            "select a.accID " +
             "from ACC_Accession a, PRB_Notes n " +
             "where n._Probe_key = a._Object_key " +
-            "and a._LogicalDB_key = 9 " +
+            "and a._LogicalDB_key = " + LogicalDBConstants.SEQUENCE + " " +
             "and a._MGIType_key = 3 " +
             "and lower(n.note) like '%staff have found evidence of artifact%'";
     }
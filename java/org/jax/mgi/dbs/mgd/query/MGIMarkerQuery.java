@@ -5,6 +5,9 @@ import java.util.regex.*;
 import java.io.File;
 
 import org.jax.mgi.shr.cache.CacheException;
+import org.jax.mgi.shr.cache.KeyValue;
+import org.jax.mgi.shr.dbutils.CursorTransaction;
+import org.jax.mgi.shr.dbutils.DataIterator;
 import org.jax.mgi.shr.dbutils.ObjectQuery;
 import org.jax.mgi.shr.dbutils.SQLDataManager;
 import org.jax.mgi.shr.dbutils.SQLDataManagerFactory;
@@ -17,6 +20,7 @@ import org.jax.mgi.dbs.SchemaConstants;
 import org.jax.mgi.app.entrezGene.AccessionClassifier;
 import org.jax.mgi.app.entrezGene.EntrezGeneBucketizable;
 import org.jax.mgi.app.entrezGene.SequenceAccession;
+import org.jax.mgi.app.entrezGene.SequenceAccessionPool;
 import org.jax.mgi.dbs.mgd.lookup.AssocAccidLookup;
 import org.jax.mgi.app.entrezGene.Constants;
 
@@ -45,9 +49,13 @@ public class MGIMarkerQuery extends ObjectQuery
   private SQLDataManager sqlMgr = null;
 
   // a FullCachedLookup for obtaining sequence associations (and non-preferred
-  // MGI IDs for the marker
+  // MGI IDs for the marker, null when the associations are merge joined
   private AssocAccidLookup sequenceLookup = null;
 
+  // whether the markers are merge joined with the association query rather
+  // than looked up in the AssocAccidLookup
+  private boolean mergeJoin = false;
+
   // classify a sequence type using character pattern matching on an accid
   private AccessionClassifier accidClassifier = new AccessionClassifier();
 
@@ -61,11 +69,79 @@ public class MGIMarkerQuery extends ObjectQuery
 
     public MGIMarkerQuery() throws CacheException, ConfigException,
         DBException
+    {
+        this(false);
+    }
+
+    /**
+     * Constructor
+     * @param mergeJoin true if the marker query and the association query
+     * of the AssocAccidLookup are read together in marker key order so that
+     * the associations of each marker are added as the marker is created,
+     * false if the associations are looked up in a fully cached
+     * AssocAccidLookup
+     * @throws CacheException thrown if there is an error accessing the cache
+     * @throws ConfigException thrown of there is an error accessing the
+     * configuration
+     * @throws DBException thrown if there is an error accessing the database
+     */
+
+    public MGIMarkerQuery(boolean mergeJoin) throws CacheException,
+        ConfigException, DBException
     {
         super(SQLDataManagerFactory.getShared(SchemaConstants.MGD));
         sqlMgr = SQLDataManagerFactory.getShared(SchemaConstants.MGD);
-        this.sequenceLookup = new AssocAccidLookup();
-        this.sequenceLookup.initCache();
+        this.mergeJoin = mergeJoin;
+        if (!mergeJoin)
+        {
+            this.sequenceLookup = new AssocAccidLookup();
+            this.sequenceLookup.initCache();
+        }
+    }
+
+    /**
+     * Constructor for looking up the associations in an AssocAccidLookup
+     * which has already been initialized, for instance together with other
+     * lookups by a LookupInitializer
+     * @param sequenceLookup the initialized AssocAccidLookup
+     * @throws ConfigException thrown of there is an error accessing the
+     * configuration
+     * @throws DBException thrown if there is an error accessing the database
+     */
+
+    public MGIMarkerQuery(AssocAccidLookup sequenceLookup)
+        throws ConfigException, DBException
+    {
+        super(SQLDataManagerFactory.getShared(SchemaConstants.MGD));
+        sqlMgr = SQLDataManagerFactory.getShared(SchemaConstants.MGD);
+        this.sequenceLookup = sequenceLookup;
+    }
+
+    /**
+     * execute the query
+     * @assumes nothing
+     * @effects the marker query, and in merge join mode the association
+     * query, will be executed
+     * @return a DataIterator over the MGIMarker objects
+     * @throws DBException thrown if there is an error accessing the database
+     */
+    public DataIterator execute() throws DBException
+    {
+        if (!this.mergeJoin)
+            return super.execute();
+
+        // the association cursor is exhausted before the marker cursor
+        // whenever the last markers have no associations, so the transaction
+        // the cursors share is ended by the MergeIterator
+        CursorTransaction transaction = null;
+        if (super.fetchSize > 0)
+            transaction = new CursorTransaction(this.sqlMgr.getConnection(),
+                "MGI marker and association queries");
+        AssociationQuery associationQuery = new AssociationQuery();
+        associationQuery.setFetchSize(super.fetchSize);
+        DataIterator markers = super.execute();
+        DataIterator associations = associationQuery.execute();
+        return new MergeIterator(markers, associations, transaction);
     }
 
 
@@ -94,6 +170,8 @@ public class MGIMarkerQuery extends ObjectQuery
             "and a.prefixPart = 'MGI:' " +
             "and a.preferred = 1 " +
             "and m._Marker_Type_key = t._Marker_Type_key";
+        if (this.mergeJoin)
+            stmt = stmt + " order by a._Object_key";
         return stmt;
     }
 
@@ -127,8 +205,13 @@ public class MGIMarkerQuery extends ObjectQuery
               // adds the the preferred MGI ID to the set of all MGI Ids
 	      // for this MGIMarker
               // adds the preferred MGI ID to the Bucketizable SVASet
-              marker.addMGIID(new SequenceAccession(marker.mgiID,
-                  SequenceAccession.MGI));
+              marker.addMGIID(SequenceAccessionPool.getShared().get(
+                  marker.mgiID, SequenceAccession.MGI));
+
+              // in merge join mode the associations are added by the
+              // MergeIterator
+              if (sequenceLookup == null)
+                  return marker;
 
               /**
                * obtain sequence associations AND non-preferred MGI ids for the 
@@ -137,71 +220,16 @@ public class MGIMarkerQuery extends ObjectQuery
               try
               {
 		  // sequences also contains non-preferred MGI IDs
-                  Vector sequences = sequenceLookup.lookup(marker.key);
+                  SequenceAccession[] sequences =
+                      sequenceLookup.lookup(marker.key.intValue());
                   if (sequences == null)
                       return marker;
-                  for (int i = 0; i < sequences.size(); i++)
+                  for (int i = 0; i < sequences.length; i++)
                   {
-                      SequenceAccession acc =
-                          (SequenceAccession)sequences.get(i);
-                      String seq = acc.getAccid();
-                      String seqCategory = accidClassifier.classify(seq);
-
-                      if (seqCategory.equals(Constants.GENBANK))
-                      {
-                          // set bucketizable data
-                          marker.addGenBankSequence(acc);
-                      }
-                      else if (seqCategory.equals(Constants.XM))
-                      {
-                          // set bucketizable data
-                          marker.addXMSequence(acc);
-                      }
-                      else if (seqCategory.equals(Constants.XR))
-                      {
-                          // set bucketizable data
-                          marker.addXRSequence(acc);
-                      }
-                      else if (seqCategory.equals(Constants.XP))
-		      {
-			  // set bucketizable data
-                          marker.addXPSequence(acc);
-		      }
-                      else if (seqCategory.equals(Constants.NM))
-		      {
-			  // set bucketizable data
-                          marker.addNMSequence(acc);
-		      }
-                      else if (seqCategory.equals(Constants.NR))
-		      {
-		          // set bucketizable data
-                          marker.addNRSequence(acc);
-		      }
-                      else if (seqCategory.equals(Constants.NP))
-		      {
-			  // set bucketizable data
-                          marker.addNPSequence(acc);
-		      }
-                      else if (seqCategory.equals(Constants.NG))
-		      {
-			  // set bucketizable data
-                          marker.addNGSequence(acc);
-		      }
-		     else if (seqCategory.equals(Constants.NT))
-                      {
-                          // set bucketizable data
-                          marker.addNTSequence(acc);
-                      }
-		      else if (seqCategory.equals(Constants.NW))
-                      {
-                          // set bucketizable data
-                          marker.addNWSequence(acc);
-                      }
-                      else if (seqCategory.equals(Constants.MGIID))
-                      {
-                          // set bucketizable data
-                          marker.addMGIID(acc);
-                      }
+                      SequenceAccession acc = sequences[i];
+                      // set bucketizable data
+                      marker.addSequence(
+                          accidClassifier.getCategory(acc.getAccid()), acc);
                   }
               }
               catch (CacheException e)
@@ -219,6 +247,112 @@ public class MGIMarkerQuery extends ObjectQuery
       return new Interpreter();
     }
 
+    /**
+     * is the association query of the AssocAccidLookup read as a stream for
+     * the merge join
+     * @has nothing
+     * @does provides the query and interpreter for creating KeyValue
+     * objects of marker key and SequenceAccession
+     */
+    private class AssociationQuery extends ObjectQuery
+    {
+        public AssociationQuery()
+        {
+            super(MGIMarkerQuery.this.sqlMgr);
+        }
+
+        public String getQuery()
+        {
+            return AssocAccidLookup.getAssociationQuery();
+        }
+
+        public RowDataInterpreter getRowDataInterpreter()
+        {
+            class Interpreter implements RowDataInterpreter
+            {
+                public Object interpret(RowReference row) throws DBException
+                {
+                    return new KeyValue(row.getInt(1),
+                        AssocAccidLookup.interpretAccession(row));
+                }
+            }
+            return new Interpreter();
+        }
+    }
+
+    /**
+     * is a DataIterator which merge joins the markers with their
+     * associations. Both streams are ordered by marker key. Associations of
+     * markers which are not returned by the marker query (e.g. withdrawn
+     * markers) are skipped.
+     * @has the marker and association streams and the next unmatched
+     * association
+     * @does adds the associations of each marker as it is read
+     */
+    private class MergeIterator implements DataIterator
+    {
+        private DataIterator markers = null;
+        private DataIterator associations = null;
+        private KeyValue nextAssociation = null;
+        // the transaction of the cursors or null if cursors are not used
+        private CursorTransaction transaction = null;
+
+        public MergeIterator(DataIterator markers, DataIterator associations,
+                             CursorTransaction transaction)
+        {
+            this.markers = markers;
+            this.associations = associations;
+            this.transaction = transaction;
+        }
+
+        public boolean hasNext() throws DBException
+        {
+            if (this.markers.hasNext())
+                return true;
+            close();
+            return false;
+        }
+
+        public Object next() throws DBException
+        {
+            MGIMarker marker = (MGIMarker)this.markers.next();
+            if (marker == null)
+                return null;
+            int key = marker.key.intValue();
+            while (true)
+            {
+                if (this.nextAssociation == null)
+                {
+                    if (!this.associations.hasNext())
+                        break;
+                    this.nextAssociation = (KeyValue)this.associations.next();
+                }
+                int associationKey =
+                    ((Integer)this.nextAssociation.key).intValue();
+                if (associationKey > key)
+                    break;
+                if (associationKey == key)
+                {
+                    SequenceAccession acc =
+                        (SequenceAccession)this.nextAssociation.value;
+                    // set bucketizable data
+                    marker.addSequence(
+                        accidClassifier.getCategory(acc.getAccid()), acc);
+                }
+                this.nextAssociation = null;
+            }
+            return marker;
+        }
+
+        public void close() throws DBException
+        {
+            this.associations.close();
+            this.markers.close();
+            if (this.transaction != null)
+                this.transaction.end();
+        }
+    }
+
     /**
      * is a plain old java object for MGI marker data
      * @has MGIMarker instance attributes and "bucketizable" attributes (those
@@ -245,33 +379,8 @@ public class MGIMarkerQuery extends ObjectQuery
             super(id, Constants.PROVIDER_MGI);
         }
 
-        public HashSet getAllRefSeqSequences()
-        {
-            HashSet refseqSeqs = new HashSet();
-            refseqSeqs.addAll(super.getNMSequences());
-            refseqSeqs.addAll(super.getNRSequences());
-            refseqSeqs.addAll(super.getNPSequences());
-            refseqSeqs.addAll(super.getNGSequences());
-	    refseqSeqs.addAll(super.getNTSequences());
-            refseqSeqs.addAll(super.getNWSequences());
-            refseqSeqs.addAll(super.getXMSequences());
-            refseqSeqs.addAll(super.getXRSequences());
-            refseqSeqs.addAll(super.getXPSequences());
-            return refseqSeqs;
-        }
-
-        public HashSet getAllSequences()
-        {
-            HashSet allSeqs = new HashSet();
-            allSeqs.addAll(super.getGenBankSequences());
-            allSeqs.addAll(getAllRefSeqSequences());
-            return allSeqs;
-        }
-
         public String toString()
         {
-            HashSet refseqSeqs = getAllRefSeqSequences();
-
             return mgiID + " : " + name + " | " + symbol + " | " + chromosome +
                 " | " + Constants.MGIID + " = " + super.getMGIIDs().toString() +
                 " | " + Constants.GENBANK + " = " + super.getGenBankSequences().toString() +
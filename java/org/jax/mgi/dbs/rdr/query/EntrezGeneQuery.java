@@ -1,21 +1,30 @@
 package org.jax.mgi.dbs.rdr.query;
 
-import java.util.HashSet;
+import java.io.File;
 import java.util.Set;
 import java.util.Vector;
 
 
 import org.jax.mgi.shr.cache.CacheException;
+import org.jax.mgi.shr.cache.KeyValue;
 import org.jax.mgi.shr.dbutils.ObjectQuery;
+import org.jax.mgi.shr.dbutils.DataIterator;
+import org.jax.mgi.shr.dbutils.CursorTransaction;
+import org.jax.mgi.shr.dbutils.SQLDataManager;
 import org.jax.mgi.shr.dbutils.SQLDataManagerFactory;
+import org.jax.mgi.shr.dbutils.PartitionedQueryIterator;
+import org.jax.mgi.shr.dbutils.DBExceptionFactory;
 import org.jax.mgi.shr.dbutils.DBException;
 import org.jax.mgi.shr.dbutils.RowDataInterpreter;
 import org.jax.mgi.shr.dbutils.RowReference;
-import org.jax.mgi.shr.dbutils.MultiRowInterpreter;
+import org.jax.mgi.shr.dbutils.GroupingInterpreter;
 import org.jax.mgi.shr.config.ConfigException;
+import org.jax.mgi.shr.config.DatabaseCfg;
 import org.jax.mgi.dbs.SchemaConstants;
 import org.jax.mgi.app.entrezGene.AccessionClassifier;
 import org.jax.mgi.app.entrezGene.SequenceAccession;
+import org.jax.mgi.app.entrezGene.SequenceAccessionPool;
+import org.jax.mgi.app.entrezGene.SequenceCategory;
 import org.jax.mgi.app.entrezGene.EntrezGeneBucketizable;
 import org.jax.mgi.app.entrezGene.Constants;
 
@@ -46,6 +55,48 @@ public class EntrezGeneQuery extends ObjectQuery
     protected AccessionClassifier accidClassifier =
         new AccessionClassifier();
 
+    /**
+     * the pool of SequenceAccession objects shared with the MGI marker
+     * query
+     */
+    protected SequenceAccessionPool accessionPool =
+        SequenceAccessionPool.getShared();
+
+    /**
+     * whether the data is fetched as three normalized streams rather than
+     * through the single query provided in getQuery()
+     */
+    private boolean normalizedFetch = false;
+
+    /**
+     * the taxonomy id of the genes queried
+     */
+    private static final String MOUSE_TAXID = "10090";
+
+    /**
+     * the number of geneID ranges the data is partitioned into
+     */
+    private int partitions = 1;
+
+    /**
+     * the inclusive lower and exclusive upper bounds of the geneIDs queried,
+     * either of which is null if the range is open at that end
+     */
+    private String lowGeneID = null;
+    private String highGeneID = null;
+
+    /**
+     * the directory holding snapshots of the data or null if snapshots are
+     * not used
+     */
+    private File snapshotDirectory = null;
+
+    /**
+     * the snapshot the data was last read from or written to by execute()
+     * or null if snapshots are not used
+     */
+    private EntrezGeneSnapshot snapshot = null;
+
     /**
      * Constructor
      * @assumes Nothing
@@ -62,6 +113,234 @@ public class EntrezGeneQuery extends ObjectQuery
         super(SQLDataManagerFactory.getShared(SchemaConstants.RADAR));
     }
 
+    /**
+     * Constructor for a partition of the data
+     * @assumes Nothing
+     * @effects Nothing
+     * @param sqlMgr the SQLDataManager used by the partition
+     * @param lowGeneID the inclusive lower bound of the geneIDs of the
+     * partition or null for no lower bound
+     * @param highGeneID the exclusive upper bound of the geneIDs of the
+     * partition or null for no upper bound
+     */
+    private EntrezGeneQuery(SQLDataManager sqlMgr, String lowGeneID,
+                            String highGeneID)
+    {
+        super(sqlMgr);
+        this.lowGeneID = lowGeneID;
+        this.highGeneID = highGeneID;
+    }
+
+    /**
+     * set the number of geneID ranges the data is partitioned into. Each
+     * range is queried on its own connection and interpreted on its own
+     * thread and the ranges are returned one after another in geneID order
+     * @param partitions the number of partitions, 1 queries the data
+     * without partitioning it
+     */
+    public void setPartitions(int partitions)
+    {
+        this.partitions = partitions;
+    }
+
+
+    /**
+     * set whether the data is fetched as three normalized streams, the gene
+     * info, the MGI ids cross referenced by the genes and the distinct
+     * accession ids of the genes, which are merged on geneID as they are
+     * read. The single query provided in getQuery() returns a row for
+     * every combination of rna, genomic and protein accession of a gene
+     * along with the gene info, so the normalized streams transfer and
+     * interpret each accession id once
+     * @param normalizedFetch true to fetch normalized streams
+     */
+    public void setNormalizedFetch(boolean normalizedFetch)
+    {
+        this.normalizedFetch = normalizedFetch;
+    }
+
+    /**
+     * set the directory holding snapshots of the data. When set, the data
+     * is read from the snapshot of the current RADAR data if there is one,
+     * otherwise it is queried and a snapshot written once it has all been
+     * read
+     * @param snapshotDirectory the directory or null to not use snapshots
+     */
+    public void setSnapshotDirectory(File snapshotDirectory)
+    {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    /**
+     * execute the query
+     * @assumes nothing
+     * @effects the query or the normalized stream queries will be executed
+     * unless the data is read from a snapshot
+     * @return a DataIterator over the EntrezGene objects in geneID order
+     * @throws DBException thrown if there is an error accessing the database
+     * or a snapshot
+     */
+    public DataIterator execute() throws DBException
+    {
+        if (this.snapshotDirectory == null)
+            return executeQueries();
+        this.snapshot = new EntrezGeneSnapshot(
+            this.snapshotDirectory,
+            EntrezGeneSnapshot.getSourceKey(super.sqlMgr));
+        if (this.snapshot.exists())
+            return this.snapshot.read(this);
+        return this.snapshot.write(executeQueries());
+    }
+
+    /**
+     * read the snapshot the data was last read from or written to by
+     * execute() again, without calculating the key of the RADAR data again
+     * @assumes execute() was called with a snapshot directory set and the
+     * DataIterator it returned was read to the end, so the snapshot has
+     * been written
+     * @effects the snapshot file will be memory mapped
+     * @return a DataIterator over the EntrezGene objects in geneID order
+     * @throws DBException thrown if the snapshot could not be read
+     */
+    public DataIterator readSnapshot() throws DBException
+    {
+        if (this.snapshot == null)
+            throw new IllegalStateException("no Entrez Gene snapshot used");
+        return this.snapshot.read(this);
+    }
+
+    /**
+     * create an EntrezGene without sequences
+     * @param id the geneID
+     * @param chromosome the chromosome
+     * @param symbol the symbol
+     * @return the EntrezGene
+     */
+    EntrezGene createEntrezGene(String id, String chromosome, String symbol)
+    {
+        EntrezGene egene = new EntrezGene(id);
+        egene.chromosome = chromosome;
+        egene.symbol = symbol;
+        return egene;
+    }
+
+    /**
+     * execute the query, the normalized stream queries or the partition
+     * queries
+     * @return a DataIterator over the EntrezGene objects in geneID order
+     * @throws DBException thrown if there is an error accessing the database
+     */
+    private DataIterator executeQueries() throws DBException
+    {
+        if (this.partitions > 1)
+            return executePartitions();
+        if (!this.normalizedFetch)
+            return super.execute();
+
+        GeneInfoQuery infoQuery = new GeneInfoQuery();
+        XRefQuery xrefQuery = new XRefQuery();
+        AccessionQuery accessionQuery = new AccessionQuery();
+        infoQuery.setFetchSize(super.fetchSize);
+        xrefQuery.setFetchSize(super.fetchSize);
+        accessionQuery.setFetchSize(super.fetchSize);
+
+        // the streams exhaust in no particular order, so when they are read
+        // through cursors the transaction they share is started here and
+        // ended by the MergeIterator rather than by the first cursor opened
+        CursorTransaction transaction = null;
+        if (super.fetchSize > 0)
+            transaction = new CursorTransaction(super.sqlMgr.getConnection(),
+                "normalized Entrez Gene queries");
+        DataIterator genes = infoQuery.execute();
+        DataIterator xrefs = xrefQuery.execute();
+        DataIterator accessions = accessionQuery.execute();
+        return new MergeIterator(genes, xrefs, accessions, transaction);
+    }
+
+    /**
+     * execute a query for each geneID range of the data concurrently
+     * @assumes nothing
+     * @effects a connection to RADAR will be opened for each partition
+     * @return a DataIterator over the EntrezGene objects of all partitions
+     * in geneID order
+     * @throws DBException thrown if there is an error accessing the database
+     */
+    private DataIterator executePartitions() throws DBException
+    {
+        String[] bounds = getPartitionBounds();
+        EntrezGeneQuery[] queries = new EntrezGeneQuery[bounds.length + 1];
+        for (int i = 0; i < queries.length; i++)
+        {
+            SQLDataManager partitionMgr = null;
+            try
+            {
+                partitionMgr = new SQLDataManager(
+                    new DatabaseCfg(SchemaConstants.RADAR));
+            }
+            catch (ConfigException e)
+            {
+                DBExceptionFactory eFactory = new DBExceptionFactory();
+                DBException e2 = (DBException)
+                    eFactory.getException(DBExceptionFactory.ConfigErr, e);
+                throw e2;
+            }
+            queries[i] = new EntrezGeneQuery(partitionMgr,
+                i == 0 ? null : bounds[i - 1],
+                i == bounds.length ? null : bounds[i]);
+            queries[i].setFetchSize(super.fetchSize);
+            queries[i].setNormalizedFetch(this.normalizedFetch);
+        }
+        return new PartitionedQueryIterator(queries);
+    }
+
+    /**
+     * get the geneIDs at which the data is split so that each partition
+     * holds about the same number of genes. The server splits the ordered
+     * distinct geneIDs into as many tiles as there are partitions and
+     * returns the first geneID of each tile but the first
+     * @assumes nothing
+     * @effects nothing
+     * @return the lower bound of each partition except the first in geneID
+     * order, which may be fewer than the number of partitions less one if
+     * there are not enough distinct geneIDs
+     * @throws DBException thrown if there is an error accessing the database
+     */
+    private String[] getPartitionBounds() throws DBException
+    {
+        PartitionBoundQuery query = new PartitionBoundQuery();
+
+        Vector bounds = new Vector();
+        DataIterator it = query.execute();
+        while (it.hasNext())
+            bounds.add(it.next());
+        it.close();
+        return (String[])bounds.toArray(new String[bounds.size()]);
+    }
+
+    /**
+     * get the condition selecting the genes from DP_EntrezGene_Info (aliased
+     * as i) which are queried
+     * @return the condition
+     */
+    private String getGeneCondition()
+    {
+        String condition = "i.taxID = " + MOUSE_TAXID;
+        if (this.lowGeneID != null)
+            condition += " and i.geneID >= " + quote(this.lowGeneID);
+        if (this.highGeneID != null)
+            condition += " and i.geneID < " + quote(this.highGeneID);
+        return condition;
+    }
+
+    /**
+     * quote a string as a sql literal
+     * @param s the string
+     * @return the sql literal
+     */
+    private static String quote(String s)
+    {
+        return "'" + s.replaceAll("'", "''") + "'";
+    }
 
     /**
      * get the query string
@@ -81,7 +360,7 @@ public class EntrezGeneQuery extends ObjectQuery
 		"DP_EntrezGene_Info i " +
 		"left outer join DP_EntrezGene_Accession a on " +
 		"lower(i.geneID) = lower(a.geneID) " +
-            "where i.taxID = 10090 " +
+            "where " + getGeneCondition() + " " +
 	    "and lower(i.geneID) = lower(x.geneID) " +
 	    "and lower(x.dbXrefID) like 'mgi:%' " +
 	    "union " +
@@ -91,7 +370,7 @@ public class EntrezGeneQuery extends ObjectQuery
             "from DP_EntrezGene_Info i " +
 		"left outer join DP_EntrezGene_Accession a on " +
 		"lower(i.geneID) = lower(a.geneID) " +
-            "where i.taxID = 10090 " +
+            "where " + getGeneCondition() + " " +
 	    "and not exists (select 1 from DP_EntrezGene_DBXRef x " +
 	    "where lower(i.geneID) = lower(x.geneID) " +
 	    "and lower(x.dbXrefID) like 'mgi:%') " +
@@ -101,77 +380,60 @@ public class EntrezGeneQuery extends ObjectQuery
 
     /**
      * returns a RowDataInterpreter which can interpret the results from the
-     * query provided in getQuery(). The object returned is the extended
-     * version of the RowDataInterpreter called MultiRowInterpreter which
-     * is used for processing cartesian products such that many rows represent
-     * a single object
+     * query provided in getQuery(). The object returned is a
+     * GroupingInterpreter which is used for processing cartesian products
+     * such that many rows represent a single object. The EntrezGene object
+     * is created from the first row of a gene and the sequences of each row
+     * are added to it as the rows are read
      * @return a RowDataInterpreter for creating EntrezGene objects
      */
     public RowDataInterpreter getRowDataInterpreter()
     {
         class Interpreter
-            implements MultiRowInterpreter
+            implements GroupingInterpreter
         {
             /**
-             * process one row from the database
+             * create the EntrezGene object from the first row of a gene
              * @param row the database row
-             * @return an object which will later be processed by the
-             * interpretRows() method
+             * @return the new EntrezGene object
              * @throws DBException thrown if there is an error with the
              * database
              */
             public Object interpret(RowReference row) throws DBException
             {
-                EntrezGeneRow egr = new EntrezGeneRow();
-                egr.id = row.getString(1);
-                egr.mgiID = row.getString(2);
-                if (!row.getString(3).equals("-"))
-                    egr.rna = new SequenceAccession(row.getString(3),
-                        SequenceAccession.RNA);
-                if (!row.getString(4).equals("-"))
-                    egr.dna = new SequenceAccession(row.getString(4),
-                        SequenceAccession.DNA);
-                if (!row.getString(5).equals("-"))
-                {
-                    String category =
-                        accidClassifier.classify(
-                        row.getString(5).toUpperCase());
-                    if (category.equals(Constants.XP) ||
-                        category.equals(Constants.NP))
-                        egr.prot = new SequenceAccession(row.getString(5),
-                            SequenceAccession.PROTEIN);
-                }
-                egr.chromosome = row.getString(6);
-                egr.symbol = row.getString(7);
-                return egr;
+                EntrezGene egene = new EntrezGene(row.getString(1));
+                egene.chromosome = row.getString(6);
+                egene.symbol = row.getString(7);
+
+                // only the MGI id of the first row is used for a gene
+                egene.addMGIID(accessionPool.get(row.getString(2),
+                    SequenceAccession.MGI));
+                return egene;
             }
+
             /**
-             * processes a Vector of objects to create an EntrezGene object
-             * @param v the vector of objects obtained from returns from
-             * subsequent calls to the interpret() method
-             * @return the new EntrezGene object
+             * add the sequences of a row to the EntrezGene object
+             * @param group the EntrezGene object of the row
+             * @param row the database row
+             * @throws DBException thrown if there is an error with the
+             * database
              */
-            public Object interpretRows(Vector v)
+            public void accumulate(Object group, RowReference row)
+            throws DBException
             {
-                EntrezGeneRow commonElements = (EntrezGeneRow)v.get(0);
-                EntrezGene egene = new EntrezGene(commonElements.id);
-                egene.chromosome = commonElements.chromosome;
-                egene.symbol = commonElements.symbol;
-
-                egene.addMGIID(new SequenceAccession(commonElements.mgiID,
-                    SequenceAccession.MGI));
-
-                for (int i = 0; i < v.size(); i++)
-                {
-                    EntrezGeneRow row = (EntrezGeneRow)v.get(i);
-                    if (row.rna != null)
-                        storeSequence(egene, row.rna);
-                    if (row.dna != null)
-                        storeSequence(egene, row.dna);
-                    if (row.prot != null)
-                        storeSequence(egene, row.prot);
-                }
-                return egene;
+                EntrezGene egene = (EntrezGene)group;
+                String rna = row.getString(3);
+                String dna = row.getString(4);
+                String prot = row.getString(5);
+                if (!rna.equals("-"))
+                    storeSequence(egene,
+                        accessionPool.get(rna, SequenceAccession.RNA));
+                if (!dna.equals("-"))
+                    storeSequence(egene,
+                        accessionPool.get(dna, SequenceAccession.DNA));
+                if (!prot.equals("-") && isStoredProtein(prot))
+                    storeSequence(egene,
+                        accessionPool.get(prot, SequenceAccession.PROTEIN));
             }
 
             /**
@@ -186,67 +448,45 @@ public class EntrezGeneQuery extends ObjectQuery
             {
               return row.getString(1);
             }
-            /**
-             * store the sequence data as EntrezGene attributes while passing
-             * some sequence data to the EntrezGene object as Bucketizable
-             * data used by the AbstractBucketizer
-             * @param egene
-             * @param acc
-             */
-            private void storeSequence(EntrezGene egene,
-                                         SequenceAccession acc)
-            {
-                String seqid = acc.getAccid();
-                String seqCategory = accidClassifier.classify(seqid);
-
-                if (seqCategory.equals(Constants.GENBANK))
-                {
-                    egene.addGenBankSequence(acc);
-                }
-                else if (seqCategory.equals(Constants.XM))
-                {
-                    egene.addXMSequence(acc);
-                }
-                else if (seqCategory.equals(Constants.XR))
-                {
-                    egene.addXRSequence(acc);
-                }
-                else if (seqCategory.equals(Constants.XP))
-		{
-		     egene.addXPSequence(acc);
-		}
-                else if (seqCategory.equals(Constants.NM))
-		{
-		     egene.addNMSequence(acc);
-		}
-                else if (seqCategory.equals(Constants.NR))
-		{
-		     egene.addNRSequence(acc);
-		}
-                else if (seqCategory.equals(Constants.NP))
-		{
-		    egene.addNPSequence(acc);
-		}
-                else if (seqCategory.equals(Constants.NG))
-		{
-		    egene.addNGSequence(acc);
-		}
-		else if (seqCategory.equals(Constants.NT))
-                {
-                    egene.addNTSequence(acc);
-                }
-		else if (seqCategory.equals(Constants.NW))
-                {
-                    egene.addNWSequence(acc);
-                }
-            }
-
         }
         return new Interpreter();
     }
 
     /**
-     * is a plain old java object for EntrezGene data
+     * store the sequence data as EntrezGene attributes while passing
+     * some sequence data to the EntrezGene object as Bucketizable
+     * data used by the AbstractBucketizer
+     * @param egene
+     * @param acc
+     */
+    protected void storeSequence(EntrezGene egene, SequenceAccession acc)
+    {
+        SequenceCategory category =
+            accidClassifier.getCategory(acc.getAccid());
+
+        // MGI ids are only taken from the DBXRef column
+        if (category != SequenceCategory.MGIID)
+            egene.addSequence(category, acc);
+    }
+
+    /**
+     * determine whether a protein accession id is one which is stored for
+     * a gene. Only RefSeq proteins (XP, NP) are stored
+     * @param accid the protein accession id
+     * @return true if the protein should be stored
+     */
+    protected boolean isStoredProtein(String accid)
+    {
+        SequenceCategory category = accidClassifier.getCategory(accid);
+        return category == SequenceCategory.XP ||
+            category == SequenceCategory.NP;
+    }
+
+    /**
+     * is a plain old java object for EntrezGene data. The sequence getters
+     * never return null, a gene without sequences of a category returns
+     * the shared immutable empty set (see
+     * EntrezGeneBucketizable.getSequences())
      * @has nothing
      * @does nothing
      * @company The Jackson Laboratory
@@ -281,142 +521,344 @@ public class EntrezGeneQuery extends ObjectQuery
 
         public Set getNMs()
         {
-	    if (super.getNMSequences() == null)
-                return new HashSet();
-            else
-                return super.getNMSequences();
+            return super.getNMSequences();
         }
 
         public Set getNRs()
         {
-	    if (super.getNRSequences() == null)
-                return new HashSet();
-            else
-                return super.getNRSequences();
+            return super.getNRSequences();
         }
 
         public Set getNPs()
         {
-	    if (super.getNPSequences() == null)
-                return new HashSet();
-            else
-                return super.getNPSequences();
+            return super.getNPSequences();
         }
 
         public Set getNGs()
         {
-	    if (super.getNGSequences() == null)
-                return new HashSet();
-            else
-                return super.getNGSequences();
+            return super.getNGSequences();
         }
+
         public Set getNTs()
         {
-            if (super.getNTSequences() == null)
-                return new HashSet();
-            else
-                return super.getNTSequences();
+            return super.getNTSequences();
         }
 
         public Set getNWs()
         {
-            if (super.getNWSequences() == null)
-                return new HashSet();
-            else
-                return super.getNWSequences();
+            return super.getNWSequences();
         }
 
         public Set getXMs()
         {
-            if (super.getXMSequences() == null)
-                return new HashSet();
-            else
-                return super.getXMSequences();
+            return super.getXMSequences();
         }
 
         public Set getXRs()
         {
-            if (super.getXRSequences() == null)
-                return new HashSet();
-            else
-                return super.getXRSequences();
+            return super.getXRSequences();
         }
 
         public Set getXPs()
         {
-	    if (super.getXPSequences() == null)
-                return new HashSet();
-            else
-                return super.getXPSequences();
+            return super.getXPSequences();
         }
 
         public Set getGenBankSeqs()
         {
-            if (super.getGenBankSequences() == null)
-                return new HashSet();
-            else
-                return super.getGenBankSequences();
+            return super.getGenBankSequences();
         }
 
-        public HashSet getAllRefSeqSequences()
+        public String toString()
         {
-            HashSet refseqSeqs = new HashSet();
-            refseqSeqs.addAll(super.getNMSequences());
-            refseqSeqs.addAll(super.getNRSequences());
-            refseqSeqs.addAll(super.getNPSequences());
-            refseqSeqs.addAll(super.getNGSequences());
-            refseqSeqs.addAll(super.getNTSequences());
-            refseqSeqs.addAll(super.getNWSequences());
-            refseqSeqs.addAll(super.getXMSequences());
-            refseqSeqs.addAll(super.getXRSequences());
-            refseqSeqs.addAll(super.getXPSequences());
-            return refseqSeqs;
+            return id + " : " + chromosome + " | " + Constants.MGIID +
+                " = " + super.getMGIIDs().toString() + " | " +
+                Constants.GENBANK + " = " + super.getGenBankSequences().toString() +
+                " | " + Constants.REFSEQ + " = " + getAllRefSeqSequences().toString();
         }
+    }
 
-        public HashSet getAllSequences()
+    /**
+     * is the query for the geneIDs at which the data is partitioned
+     * @has nothing
+     * @does provides the query and interpreter for obtaining the lower
+     * bound of each partition but the first
+     */
+    private class PartitionBoundQuery extends ObjectQuery
+    {
+        public PartitionBoundQuery()
         {
-            HashSet allSeqs = new HashSet();
-            allSeqs.addAll(super.getGenBankSequences());
-            allSeqs.addAll(getAllRefSeqSequences());
-            return allSeqs;
+            super(EntrezGeneQuery.this.sqlMgr);
         }
 
+        public String getQuery()
+        {
+            return "select min(t.geneID) as geneID " +
+                "from (select g.geneID, ntile(" + partitions + ") " +
+                "over (order by g.geneID) as tile " +
+                "from (select distinct i.geneID " +
+                "from DP_EntrezGene_Info i " +
+                "where " + getGeneCondition() + ") g) t " +
+                "where t.tile > 1 " +
+                "group by t.tile " +
+                "order by t.tile";
+        }
 
-        public String toString()
+        public RowDataInterpreter getRowDataInterpreter()
         {
-            HashSet refseqs = getAllRefSeqSequences();
+            class Interpreter implements RowDataInterpreter
+            {
+                public Object interpret(RowReference row) throws DBException
+                {
+                    return row.getString(1);
+                }
+            }
+            return new Interpreter();
+        }
+    }
 
-            return id + " : " + chromosome + " | " + Constants.MGIID +
-                " = " + super.getMGIIDs().toString() + " | " +
-                Constants.GENBANK + " = " + super.getGenBankSequences().toString() +
-                " | " + Constants.REFSEQ + " = " + getAllRefSeqSequences().toString();
+    /**
+     * is the query for the gene info stream of the normalized fetch
+     * @has nothing
+     * @does provides the query and interpreter for creating EntrezGene
+     * objects without sequences from the gene info
+     */
+    private class GeneInfoQuery extends ObjectQuery
+    {
+        public GeneInfoQuery()
+        {
+            super(EntrezGeneQuery.this.sqlMgr);
+        }
+
+        public String getQuery()
+        {
+            return "select i.geneID as geneID, i.chromosome, i.symbol " +
+                "from DP_EntrezGene_Info i " +
+                "where " + getGeneCondition() + " " +
+                "order by geneID";
+        }
+
+        public RowDataInterpreter getRowDataInterpreter()
+        {
+            class Interpreter implements GroupingInterpreter
+            {
+                public Object interpret(RowReference row) throws DBException
+                {
+                    EntrezGene egene = new EntrezGene(row.getString(1));
+                    egene.chromosome = row.getString(2);
+                    egene.symbol = row.getString(3);
+                    return egene;
+                }
+
+                public Object interpretKey(RowReference row)
+                throws DBException
+                {
+                    return row.getString(1);
+                }
+
+                /**
+                 * genes are grouped on geneID as they are by the single
+                 * query so that the first of any duplicate info rows is used
+                 */
+                public void accumulate(Object group, RowReference row)
+                {
+                }
+            }
+            return new Interpreter();
         }
     }
 
     /**
-     *
-     * is a plain old java object for holding one row of data from the query
+     * is the query for the MGI id stream of the normalized fetch
      * @has nothing
-     * @does nothing
-     * @company Jackson Laboratory
-     * @author M Walker
-     *
+     * @does provides the query and interpreter for creating KeyValue
+     * objects of geneID and MGI id
      */
-    public class EntrezGeneRow
+    private class XRefQuery extends ObjectQuery
     {
-      public String id = null;
-      public String mgiID = null;
-      public SequenceAccession dna = null;
-      public SequenceAccession rna = null;
-      public SequenceAccession prot = null;
-      public String chromosome = null;
-      public String symbol = null;
-
-      public String toString()
-      {
-        return id + "|" + mgiID + "|" + chromosome + "|" +
-            dna + "|" + rna + "|" + prot;
-      }
+        public XRefQuery()
+        {
+            super(EntrezGeneQuery.this.sqlMgr);
+        }
+
+        public String getQuery()
+        {
+            return "select distinct i.geneID as geneID, x.dbXrefID " +
+                "from DP_EntrezGene_DBXRef x, DP_EntrezGene_Info i " +
+                "where " + getGeneCondition() + " " +
+                "and lower(i.geneID) = lower(x.geneID) " +
+                "and lower(x.dbXrefID) like 'mgi:%' " +
+                "order by geneID, x.dbXrefID";
+        }
+
+        public RowDataInterpreter getRowDataInterpreter()
+        {
+            class Interpreter implements RowDataInterpreter
+            {
+                public Object interpret(RowReference row) throws DBException
+                {
+                    return new KeyValue(row.getString(1), row.getString(2));
+                }
+            }
+            return new Interpreter();
+        }
     }
-}
 
+    /**
+     * is the query for the accession stream of the normalized fetch
+     * @has nothing
+     * @does provides the query and interpreter for creating KeyValue
+     * objects of geneID and SequenceAccession. Proteins which are not
+     * stored for a gene are interpreted as null values
+     */
+    private class AccessionQuery extends ObjectQuery
+    {
+        public AccessionQuery()
+        {
+            super(EntrezGeneQuery.this.sqlMgr);
+        }
+
+        public String getQuery()
+        {
+            return
+                select("a.rna", SequenceAccession.RNA) + "union " +
+                select("a.genomic", SequenceAccession.DNA) + "union " +
+                select("a.protein", SequenceAccession.PROTEIN) +
+                "order by geneID, seqType";
+        }
+
+        /**
+         * get the select statement for one accession column
+         * @param column the accession column
+         * @param type the sequence type of the column
+         * @return the select statement
+         */
+        private String select(String column, int type)
+        {
+            return "select i.geneID as geneID, " + column + " as accID, " +
+                type + " as seqType " +
+                "from DP_EntrezGene_Info i, DP_EntrezGene_Accession a " +
+                "where " + getGeneCondition() + " " +
+                "and lower(i.geneID) = lower(a.geneID) " +
+                "and " + column + " is not null " +
+                "and " + column + " != '-' ";
+        }
+
+        public RowDataInterpreter getRowDataInterpreter()
+        {
+            class Interpreter implements RowDataInterpreter
+            {
+                public Object interpret(RowReference row) throws DBException
+                {
+                    String accid = row.getString(2);
+                    int type = row.getInt(3).intValue();
+                    SequenceAccession acc = null;
+                    if (type != SequenceAccession.PROTEIN ||
+                        isStoredProtein(accid))
+                        acc = accessionPool.get(accid, type);
+                    return new KeyValue(row.getString(1), acc);
+                }
+            }
+            return new Interpreter();
+        }
+    }
+
+    /**
+     * is a DataIterator which merges the normalized streams on geneID. The
+     * gene info stream drives the iteration, the MGI id and accession
+     * streams are read for as long as their geneID matches that of the
+     * current gene. All streams are ordered by the same geneID column of
+     * DP_EntrezGene_Info so only equality of geneIDs needs to be checked.
+     * @has the three streams and the next unmatched entry of the MGI id
+     * and accession streams
+     * @does creates EntrezGene objects from the streams
+     */
+    private class MergeIterator implements DataIterator
+    {
+        private DataIterator genes = null;
+        private DataIterator xrefs = null;
+        private DataIterator accessions = null;
+        private KeyValue nextXRef = null;
+        private KeyValue nextAccession = null;
+        // the transaction of the cursors or null if cursors are not used
+        private CursorTransaction transaction = null;
+
+        public MergeIterator(DataIterator genes, DataIterator xrefs,
+                             DataIterator accessions,
+                             CursorTransaction transaction)
+        {
+            this.genes = genes;
+            this.xrefs = xrefs;
+            this.accessions = accessions;
+            this.transaction = transaction;
+        }
+
+        public boolean hasNext() throws DBException
+        {
+            if (this.genes.hasNext())
+                return true;
+            close();
+            return false;
+        }
+
+        public Object next() throws DBException
+        {
+            EntrezGene egene = (EntrezGene)this.genes.next();
+            if (egene == null)
+                return null;
+            String id = egene.getId();
+
+            // as with the single query only one MGI id is used for a gene,
+            // genes without one get the '-' placeholder
+            String mgiID = null;
+            while ((this.nextXRef = peek(this.xrefs, this.nextXRef)) != null
+                   && this.nextXRef.key.equals(id))
+            {
+                if (mgiID == null)
+                    mgiID = (String)this.nextXRef.value;
+                this.nextXRef = null;
+            }
+            egene.addMGIID(accessionPool.get(mgiID == null ? "-" : mgiID,
+                SequenceAccession.MGI));
+
+            while ((this.nextAccession =
+                    peek(this.accessions, this.nextAccession)) != null
+                   && this.nextAccession.key.equals(id))
+            {
+                SequenceAccession acc =
+                    (SequenceAccession)this.nextAccession.value;
+                if (acc != null)
+                    storeSequence(egene, acc);
+                this.nextAccession = null;
+            }
+            return egene;
+        }
+
+        public void close() throws DBException
+        {
+            this.accessions.close();
+            this.xrefs.close();
+            this.genes.close();
+            if (this.transaction != null)
+                this.transaction.end();
+        }
+
+        /**
+         * get the next unmatched entry of a stream
+         * @param it the stream
+         * @param pending the entry already read from the stream or null
+         * @return the pending entry, the next entry of the stream or null if
+         * the stream is exhausted
+         * @throws DBException thrown if there is an error reading the stream
+         */
+        private KeyValue peek(DataIterator it, KeyValue pending)
+        throws DBException
+        {
+            if (pending != null)
+                return pending;
+            if (it.hasNext())
+                return (KeyValue)it.next();
+            return null;
+        }
+    }
+}
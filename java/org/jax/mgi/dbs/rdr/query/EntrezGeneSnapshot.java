@@ -0,0 +1,719 @@
+package org.jax.mgi.dbs.rdr.query;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import org.jax.mgi.shr.dbutils.DataIterator;
+import org.jax.mgi.shr.dbutils.DBException;
+import org.jax.mgi.shr.dbutils.ObjectQuery;
+import org.jax.mgi.shr.dbutils.RowDataInterpreter;
+import org.jax.mgi.shr.dbutils.RowReference;
+import org.jax.mgi.shr.dbutils.SQLDataManager;
+import org.jax.mgi.app.entrezGene.SequenceAccession;
+import org.jax.mgi.app.entrezGene.SequenceAccessionPool;
+import org.jax.mgi.app.entrezGene.SequenceCategory;
+
+/**
+ * is a local file holding the interpreted EntrezGene objects of a run of
+ * the EntrezGeneQuery so that later runs against the same RADAR data can
+ * read the genes from the file rather than from the database. A snapshot
+ * is named by the md5 digest of the row count and a sum of the md5 hashes
+ * of the rows of each RADAR table queried, both computed by the server
+ * over the mouse rows read by the extract, so a snapshot is only used
+ * while the content of those rows is unchanged. A snapshot too large to be
+ * mapped into memory is not written.
+ * <p>
+ * The file is laid out by column: a header holding the key, the number of
+ * genes and the offset of each column, a dictionary of the distinct
+ * accession ids followed by the geneID, chromosome, symbol and sequence
+ * count columns, one entry per gene, and the sequence column holding the
+ * dictionary index, sequence type and category of each sequence of each
+ * gene. The file is memory mapped when read and each column is read from
+ * its own view of the mapping as the genes are returned. While the snapshot
+ * is written each column is spooled to its own temporary file, and the
+ * columns are joined into the snapshot file once all genes have been read.
+ * @has the snapshot file
+ * @does reads and writes snapshot files and calculates the key of the
+ * current RADAR data
+ * @company The Jackson Laboratory
+ * @author M Walker
+ *
+ */
+
+public class EntrezGeneSnapshot
+{
+    private static final int MAGIC = 0x45475348;
+    private static final int VERSION = 1;
+
+    // the columns in the order they are written
+    private static final int DICTIONARY = 0;
+    private static final int GENE_IDS = 1;
+    private static final int CHROMOSOMES = 2;
+    private static final int SYMBOLS = 3;
+    private static final int SEQUENCE_COUNTS = 4;
+    private static final int SEQUENCES = 5;
+    private static final int COLUMNS = 6;
+
+    private static final String PREFIX = "entrezGene.";
+    private static final String SUFFIX = ".snapshot";
+    private static final String ENCODING = "UTF-8";
+    private static final String DIGEST = "MD5";
+
+    /**
+     * the queries whose results make up the key of the RADAR data: the row
+     * count of each table and the sums of the two halves of the md5 hash of
+     * each row, each column quoted so that nulls and separators within
+     * values are distinguished. The rows are restricted to the mouse genes
+     * as they are by the extract and, since the sums do not depend on the
+     * order of the rows, the server neither sorts the rows nor builds a
+     * string from the whole table
+     */
+    private static final String[] fingerprints =
+    {
+        getFingerprint(
+            "quote_nullable(i.geneID) || ',' || " +
+            "quote_nullable(i.chromosome) || ',' || " +
+            "quote_nullable(i.symbol)",
+            "DP_EntrezGene_Info i " +
+            "where i.taxID = 10090"),
+        getFingerprint(
+            "quote_nullable(x.geneID) || ',' || " +
+            "quote_nullable(x.dbXrefID)",
+            "DP_EntrezGene_DBXRef x, DP_EntrezGene_Info i " +
+            "where i.taxID = 10090 " +
+            "and lower(i.geneID) = lower(x.geneID) " +
+            "and lower(x.dbXrefID) like 'mgi:%'"),
+        getFingerprint(
+            "quote_nullable(a.geneID) || ',' || " +
+            "quote_nullable(a.rna) || ',' || " +
+            "quote_nullable(a.genomic) || ',' || " +
+            "quote_nullable(a.protein)",
+            "DP_EntrezGene_Info i, DP_EntrezGene_Accession a " +
+            "where i.taxID = 10090 " +
+            "and lower(i.geneID) = lower(a.geneID)")
+    };
+
+    private File file = null;
+
+    /**
+     * constructor
+     * @param directory the directory holding the snapshots
+     * @param key the key of the RADAR data from getSourceKey()
+     */
+    public EntrezGeneSnapshot(File directory, String key)
+    {
+        this.file = new File(directory, PREFIX + key + SUFFIX);
+    }
+
+    /**
+     * calculate the key of the current RADAR data
+     * @assumes nothing
+     * @effects nothing
+     * @param sqlMgr the SQLDataManager for RADAR
+     * @return the key
+     * @throws DBException thrown if there is an error accessing the database
+     */
+    public static String getSourceKey(SQLDataManager sqlMgr)
+    throws DBException
+    {
+        MessageDigest digest = null;
+        try
+        {
+            digest = MessageDigest.getInstance(DIGEST);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // every Java platform supports MD5
+            throw new IllegalStateException(e.getMessage());
+        }
+        digest.update(getBytes(String.valueOf(VERSION)));
+        for (int i = 0; i < fingerprints.length; i++)
+        {
+            DataIterator it = new FingerprintQuery(sqlMgr,
+                                                   fingerprints[i]).execute();
+            while (it.hasNext())
+                digest.update(getBytes((String)it.next() + ";"));
+            it.close();
+        }
+        byte[] bytes = digest.digest();
+        StringBuffer key = new StringBuffer();
+        for (int i = 0; i < bytes.length; i++)
+        {
+            key.append(Character.forDigit((bytes[i] >> 4) & 0xf, 16));
+            key.append(Character.forDigit(bytes[i] & 0xf, 16));
+        }
+        return key.toString();
+    }
+
+    /**
+     * get the query for the fingerprint of a table
+     * @param row the expression joining the quoted columns of a row
+     * @param from the from and where clauses selecting the rows
+     * @return the query
+     */
+    private static String getFingerprint(String row, String from)
+    {
+        return "select count(*), " +
+            "coalesce(sum(('x' || substr(h, 1, 16))::bit(64)::bigint), 0), " +
+            "coalesce(sum(('x' || substr(h, 17, 16))::bit(64)::bigint), 0) " +
+            "from (select md5(" + row + ") as h from " + from + ") r";
+    }
+
+    /**
+     * get the snapshot file
+     * @return the file
+     */
+    public File getFile()
+    {
+        return this.file;
+    }
+
+    /**
+     * determine whether the snapshot file exists
+     * @return true if the file exists
+     */
+    public boolean exists()
+    {
+        return this.file.exists();
+    }
+
+    /**
+     * read the snapshot file
+     * @assumes the file exists
+     * @effects the file will be memory mapped
+     * @param query the EntrezGeneQuery which creates the EntrezGene objects
+     * @return a DataIterator over the EntrezGene objects in the order they
+     * were written
+     * @throws DBException thrown if the file could not be read or is too
+     * large to be mapped
+     */
+    public DataIterator read(EntrezGeneQuery query) throws DBException
+    {
+        ByteBuffer buffer = null;
+        try
+        {
+            FileInputStream in = new FileInputStream(this.file);
+            try
+            {
+                FileChannel channel = in.getChannel();
+                if (channel.size() > Integer.MAX_VALUE)
+                    throw getException(SnapshotExceptionFactory.SizeErr,
+                                       null);
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                     channel.size());
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            throw getException(SnapshotExceptionFactory.ReadErr, e);
+        }
+        return new Reader(buffer, query);
+    }
+
+    /**
+     * get a DataIterator which passes the EntrezGene objects of the given
+     * iterator through unchanged and writes them to the snapshot file once
+     * the given iterator is exhausted. If the iterator is closed before it
+     * is exhausted no snapshot is written
+     * @assumes nothing
+     * @effects the snapshot file will be written and the snapshot files of
+     * other keys in the directory removed
+     * @param genes the EntrezGene objects
+     * @return the DataIterator
+     * @throws DBException thrown if the temporary column files could not be
+     * created
+     */
+    public DataIterator write(DataIterator genes) throws DBException
+    {
+        return new Writer(genes);
+    }
+
+    /**
+     * create a DBException for the given error
+     * @param name the name of the exception in the SnapshotExceptionFactory
+     * @param e the exception which caused the error or null
+     * @return the DBException
+     */
+    private DBException getException(String name, Exception e)
+    {
+        SnapshotExceptionFactory eFactory = new SnapshotExceptionFactory();
+        DBException e2 = null;
+        if (e == null)
+            e2 = (DBException)eFactory.getException(name);
+        else
+            e2 = (DBException)eFactory.getException(name, e);
+        e2.bind(this.file.getPath());
+        return e2;
+    }
+
+    /**
+     * encode a string as UTF-8
+     * @param s the string
+     * @return the encoded bytes
+     */
+    private static byte[] getBytes(String s)
+    {
+        try
+        {
+            return s.getBytes(ENCODING);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            // every Java platform supports UTF-8
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    /**
+     * is a DataIterator which creates EntrezGene objects from the columns
+     * of a memory mapped snapshot
+     * @has a view of the mapped file for each column and the accession id
+     * dictionary
+     * @does reads the snapshot one gene at a time
+     */
+    private class Reader implements DataIterator
+    {
+        private EntrezGeneQuery query = null;
+        private SequenceAccessionPool pool = SequenceAccessionPool.getShared();
+        private SequenceCategory[] categories = SequenceCategory.values();
+        private ByteBuffer[] columns = new ByteBuffer[COLUMNS];
+        private String[] dictionary = null;
+        private int geneCount = 0;
+        private int genesRead = 0;
+
+        public Reader(ByteBuffer buffer, EntrezGeneQuery query)
+        throws DBException
+        {
+            this.query = query;
+            try
+            {
+                if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                    throw getException(SnapshotExceptionFactory.FormatErr,
+                                       null);
+                getString(buffer);
+                this.geneCount = buffer.getInt();
+                this.dictionary = new String[buffer.getInt()];
+                for (int i = 0; i < COLUMNS; i++)
+                {
+                    long offset = buffer.getLong();
+                    if (offset < 0 || offset > buffer.limit())
+                        throw getException(
+                            SnapshotExceptionFactory.FormatErr, null);
+                    this.columns[i] = buffer.duplicate();
+                    this.columns[i].position((int)offset);
+                }
+                ByteBuffer dict = this.columns[DICTIONARY];
+                for (int i = 0; i < this.dictionary.length; i++)
+                    this.dictionary[i] = getString(dict);
+            }
+            catch (BufferUnderflowException e)
+            {
+                throw getException(SnapshotExceptionFactory.FormatErr, e);
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw getException(SnapshotExceptionFactory.FormatErr, e);
+            }
+        }
+
+        public boolean hasNext()
+        {
+            return this.genesRead < this.geneCount;
+        }
+
+        public Object next() throws DBException
+        {
+            if (!hasNext())
+                return null;
+            this.genesRead++;
+            try
+            {
+                EntrezGeneQuery.EntrezGene egene = this.query.createEntrezGene(
+                    getString(this.columns[GENE_IDS]),
+                    getString(this.columns[CHROMOSOMES]),
+                    getString(this.columns[SYMBOLS]));
+                int count = this.columns[SEQUENCE_COUNTS].getInt();
+                ByteBuffer sequences = this.columns[SEQUENCES];
+                for (int i = 0; i < count; i++)
+                {
+                    String accid = this.dictionary[sequences.getInt()];
+                    int type = sequences.get();
+                    SequenceCategory category =
+                        this.categories[sequences.get()];
+                    egene.addSequence(category, this.pool.get(accid, type));
+                }
+                return egene;
+            }
+            catch (BufferUnderflowException e)
+            {
+                throw getException(SnapshotExceptionFactory.FormatErr, e);
+            }
+            catch (IndexOutOfBoundsException e)
+            {
+                throw getException(SnapshotExceptionFactory.FormatErr, e);
+            }
+        }
+
+        public void close()
+        {
+            this.genesRead = this.geneCount;
+        }
+
+        /**
+         * read a string from a column
+         * @param column the column
+         * @return the string or null
+         */
+        private String getString(ByteBuffer column)
+        {
+            int length = column.getInt();
+            if (length < 0)
+                return null;
+            byte[] bytes = new byte[length];
+            column.get(bytes);
+            try
+            {
+                return new String(bytes, ENCODING);
+            }
+            catch (UnsupportedEncodingException e)
+            {
+                // every Java platform supports UTF-8
+                throw new IllegalStateException(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * is a DataIterator which records the EntrezGene objects it passes
+     * through into the columns of a snapshot
+     * @has the iterator over the EntrezGene objects, a temporary file for
+     * each column and the accession id dictionary
+     * @does writes the snapshot file once the genes are exhausted
+     */
+    private class Writer implements DataIterator
+    {
+        private DataIterator genes = null;
+        private File[] columnFiles = new File[COLUMNS];
+        private DataOutputStream[] columns = new DataOutputStream[COLUMNS];
+        private HashMap dictionary = new HashMap();
+        private SequenceCategory[] categories = SequenceCategory.values();
+        private int geneCount = 0;
+        private boolean done = false;
+
+        public Writer(DataIterator genes) throws DBException
+        {
+            this.genes = genes;
+            try
+            {
+                for (int i = 0; i < COLUMNS; i++)
+                {
+                    this.columnFiles[i] =
+                        new File(file.getPath() + ".column" + i);
+                    this.columns[i] = new DataOutputStream(
+                        new BufferedOutputStream(
+                            new FileOutputStream(this.columnFiles[i])));
+                }
+            }
+            catch (FileNotFoundException e)
+            {
+                removeColumns();
+                throw getException(SnapshotExceptionFactory.WriteErr, e);
+            }
+        }
+
+        public boolean hasNext() throws DBException
+        {
+            if (this.done)
+                return false;
+            if (this.genes.hasNext())
+                return true;
+            this.done = true;
+            this.genes.close();
+            writeFile();
+            return false;
+        }
+
+        public Object next() throws DBException
+        {
+            if (!hasNext())
+                return null;
+            EntrezGeneQuery.EntrezGene egene =
+                (EntrezGeneQuery.EntrezGene)this.genes.next();
+            if (egene == null)
+                return null;
+            try
+            {
+                record(egene);
+            }
+            catch (IOException e)
+            {
+                removeColumns();
+                throw getException(SnapshotExceptionFactory.WriteErr, e);
+            }
+            return egene;
+        }
+
+        public void close() throws DBException
+        {
+            if (this.done)
+                return;
+            this.done = true;
+            removeColumns();
+            this.genes.close();
+        }
+
+        /**
+         * add a gene to the columns
+         * @param egene the gene
+         * @throws IOException thrown if a column file could not be written
+         */
+        private void record(EntrezGeneQuery.EntrezGene egene)
+        throws IOException
+        {
+            this.geneCount++;
+            putString(this.columns[GENE_IDS], egene.getId());
+            putString(this.columns[CHROMOSOMES], egene.getChromosome());
+            putString(this.columns[SYMBOLS], egene.getSymbol());
+            int count = 0;
+            DataOutputStream sequences = this.columns[SEQUENCES];
+            for (int i = 0; i < this.categories.length; i++)
+            {
+                SequenceCategory category = this.categories[i];
+                Iterator it = egene.getSequences(category).iterator();
+                while (it.hasNext())
+                {
+                    SequenceAccession acc = (SequenceAccession)it.next();
+                    sequences.writeInt(getIndex(acc.getAccid()));
+                    sequences.writeByte(acc.getType());
+                    sequences.writeByte(category.ordinal());
+                    count++;
+                }
+            }
+            this.columns[SEQUENCE_COUNTS].writeInt(count);
+        }
+
+        /**
+         * get the dictionary index of an accession id, adding it to the
+         * dictionary if it is not yet there
+         * @param accid the accession id
+         * @return the index
+         * @throws IOException thrown if the dictionary column file could not
+         * be written
+         */
+        private int getIndex(String accid) throws IOException
+        {
+            Integer index = (Integer)this.dictionary.get(accid);
+            if (index == null)
+            {
+                index = new Integer(this.dictionary.size());
+                this.dictionary.put(accid, index);
+                putString(this.columns[DICTIONARY], accid);
+            }
+            return index.intValue();
+        }
+
+        /**
+         * write the header and join the column files into the snapshot
+         * file unless it would be too large to be mapped. The file is
+         * written under a temporary name and renamed when complete so that
+         * an incomplete snapshot is never read
+         * @throws DBException thrown if the file could not be written
+         */
+        private void writeFile() throws DBException
+        {
+            File tmp = new File(file.getPath() + ".tmp");
+            try
+            {
+                for (int i = 0; i < COLUMNS; i++)
+                {
+                    DataOutputStream column = this.columns[i];
+                    this.columns[i] = null;
+                    column.close();
+                }
+                byte[] key = getBytes(getKey());
+                long offset = 4 + 4 + 4 + key.length + 4 + 4 + 8 * COLUMNS;
+                long size = offset;
+                for (int i = 0; i < COLUMNS; i++)
+                    size += this.columnFiles[i].length();
+                // the reader maps the whole file into a single buffer
+                if (size > Integer.MAX_VALUE)
+                    return;
+                DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)));
+                try
+                {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(key.length);
+                    out.write(key);
+                    out.writeInt(this.geneCount);
+                    out.writeInt(this.dictionary.size());
+                    for (int i = 0; i < COLUMNS; i++)
+                    {
+                        out.writeLong(offset);
+                        offset += this.columnFiles[i].length();
+                    }
+                    for (int i = 0; i < COLUMNS; i++)
+                        copy(this.columnFiles[i], out);
+                }
+                finally
+                {
+                    out.close();
+                }
+                if (!tmp.renameTo(file))
+                    throw new IOException("could not rename " + tmp);
+            }
+            catch (IOException e)
+            {
+                tmp.delete();
+                throw getException(SnapshotExceptionFactory.WriteErr, e);
+            }
+            finally
+            {
+                removeColumns();
+            }
+            removeOtherSnapshots();
+        }
+
+        /**
+         * append a column file to the snapshot file
+         * @param column the column file
+         * @param out the snapshot file
+         * @throws IOException thrown if the column could not be copied
+         */
+        private void copy(File column, DataOutputStream out)
+        throws IOException
+        {
+            FileInputStream in = new FileInputStream(column);
+            try
+            {
+                byte[] buffer = new byte[65536];
+                for (int n = in.read(buffer); n > 0; n = in.read(buffer))
+                    out.write(buffer, 0, n);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+
+        /**
+         * close and delete the column files, ignoring errors since the
+         * columns are no longer needed
+         */
+        private void removeColumns()
+        {
+            for (int i = 0; i < COLUMNS; i++)
+            {
+                try
+                {
+                    if (this.columns[i] != null)
+                        this.columns[i].close();
+                }
+                catch (IOException e) {}
+                this.columns[i] = null;
+                if (this.columnFiles[i] != null)
+                    this.columnFiles[i].delete();
+            }
+        }
+
+        /**
+         * get the key from the name of the snapshot file
+         * @return the key
+         */
+        private String getKey()
+        {
+            String name = file.getName();
+            return name.substring(PREFIX.length(),
+                                  name.length() - SUFFIX.length());
+        }
+
+        /**
+         * remove the snapshots of other RADAR data from the directory
+         */
+        private void removeOtherSnapshots()
+        {
+            File[] files = file.getAbsoluteFile().getParentFile().listFiles();
+            if (files == null)
+                return;
+            for (int i = 0; i < files.length; i++)
+            {
+                String name = files[i].getName();
+                if (name.startsWith(PREFIX) && name.endsWith(SUFFIX) &&
+                    !name.equals(file.getName()))
+                    files[i].delete();
+            }
+        }
+
+        /**
+         * write a string to a column
+         * @param column the column
+         * @param s the string or null
+         * @throws IOException thrown if the column file could not be written
+         */
+        private void putString(DataOutputStream column, String s)
+        throws IOException
+        {
+            if (s == null)
+            {
+                column.writeInt(-1);
+                return;
+            }
+            byte[] bytes = getBytes(s);
+            column.writeInt(bytes.length);
+            column.write(bytes);
+        }
+    }
+
+    /**
+     * is a query for one of the fingerprints of the RADAR data
+     * @has the query string
+     * @does provides the query and interpreter for obtaining the
+     * fingerprint as a string
+     */
+    private static class FingerprintQuery extends ObjectQuery
+    {
+        private String sql = null;
+
+        public FingerprintQuery(SQLDataManager sqlMgr, String sql)
+        {
+            super(sqlMgr);
+            this.sql = sql;
+        }
+
+        public String getQuery()
+        {
+            return this.sql;
+        }
+
+        public RowDataInterpreter getRowDataInterpreter()
+        {
+            class Interpreter implements RowDataInterpreter
+            {
+                public Object interpret(RowReference row) throws DBException
+                {
+                    return row.getString(1) + "|" + row.getString(2) + "|" +
+                        row.getString(3);
+                }
+            }
+            return new Interpreter();
+        }
+    }
+}
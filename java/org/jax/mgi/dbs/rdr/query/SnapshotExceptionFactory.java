@@ -0,0 +1,60 @@
+package org.jax.mgi.dbs.rdr.query;
+
+import org.jax.mgi.shr.dbutils.DBException;
+import org.jax.mgi.shr.exception.ExceptionFactory;
+
+/**
+ * An ExceptionFactory for errors reading and writing Entrez Gene snapshot
+ * files.
+ * @has a hashmap of predefined DBExceptions stored by a name key
+ * @does looks up DBExceptions by name
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class SnapshotExceptionFactory extends ExceptionFactory {
+
+  /**
+   * the snapshot file could not be read
+   */
+  public static final String ReadErr =
+      "org.jax.mgi.dbs.rdr.query.SnapshotReadErr";
+  static {
+    exceptionsMap.put(ReadErr, new DBException(
+        "Could not read the Entrez Gene snapshot file ??", false));
+  }
+
+  /**
+   * the snapshot file could not be written
+   */
+  public static final String WriteErr =
+      "org.jax.mgi.dbs.rdr.query.SnapshotWriteErr";
+  static {
+    exceptionsMap.put(WriteErr, new DBException(
+        "Could not write the Entrez Gene snapshot file ??", false));
+  }
+
+  /**
+   * the snapshot file is not in the expected format
+   */
+  public static final String FormatErr =
+      "org.jax.mgi.dbs.rdr.query.SnapshotFormatErr";
+  static {
+    exceptionsMap.put(FormatErr, new DBException(
+        "The Entrez Gene snapshot file ?? is not in the expected format",
+        false));
+  }
+
+  /**
+   * the snapshot file is too large to be read
+   */
+  public static final String SizeErr =
+      "org.jax.mgi.dbs.rdr.query.SnapshotSizeErr";
+  static {
+    exceptionsMap.put(SizeErr, new DBException(
+        "The Entrez Gene snapshot file ?? is too large to be mapped",
+        false));
+  }
+
+
+}
@@ -0,0 +1,24 @@
+package org.jax.mgi.shr.bucketizer;
+
+import org.jax.mgi.shr.dbutils.DataIterator;
+import org.jax.mgi.shr.exception.MGIException;
+
+/**
+ * is an interface for sources of Bucketizables which can be read more than
+ * once, such as a query which can be executed again. Each DataIterator
+ * opened should return the same Bucketizables in the same order.
+ * @has nothing
+ * @does opens a DataIterator over the Bucketizables
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public interface BucketizableSource
+{
+    /**
+     * open a DataIterator over the Bucketizables
+     * @return the DataIterator
+     * @throws MGIException thrown if the Bucketizables could not be read
+     */
+    public DataIterator open() throws MGIException;
+}
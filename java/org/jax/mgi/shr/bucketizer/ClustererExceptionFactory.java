@@ -0,0 +1,50 @@
+package org.jax.mgi.shr.bucketizer;
+
+import org.jax.mgi.shr.exception.ExceptionFactory;
+import org.jax.mgi.shr.exception.MGIException;
+
+/**
+ * An ExceptionFactory for errors raised while clustering partitions on the
+ * worker threads of the DisjointSetClusterer.
+ * @has a hashmap of predefined MGIExceptions stored by a name key
+ * @does looks up MGIExceptions by name
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class ClustererExceptionFactory extends ExceptionFactory {
+
+  /**
+   * the thread waiting for the partitions was interrupted
+   */
+  public static final String InterruptErr =
+      "org.jax.mgi.shr.bucketizer.ClustererInterruptErr";
+  static {
+    exceptionsMap.put(InterruptErr, new MGIException(
+        "Interrupted while waiting for the following clustering step: ??",
+        false));
+  }
+
+  /**
+   * a partition failed with an unexpected error
+   */
+  public static final String UnexpectedErr =
+      "org.jax.mgi.shr.bucketizer.ClustererUnexpectedErr";
+  static {
+    exceptionsMap.put(UnexpectedErr, new MGIException(
+        "Unexpected error in the following clustering step: ??", false));
+  }
+
+  /**
+   * a source of members returned different members when read again
+   */
+  public static final String SourceChangedErr =
+      "org.jax.mgi.shr.bucketizer.ClustererSourceChangedErr";
+  static {
+    exceptionsMap.put(SourceChangedErr, new MGIException(
+        "The ?? source returned different members when it was read again",
+        false));
+  }
+
+
+}
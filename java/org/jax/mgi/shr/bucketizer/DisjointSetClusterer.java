@@ -0,0 +1,1293 @@
+package org.jax.mgi.shr.bucketizer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jax.mgi.shr.dbutils.DataIterator;
+import org.jax.mgi.shr.exception.MGIException;
+import org.jax.mgi.shr.sva.SVASet;
+
+/**
+ * is a clustering engine which finds the same connected components as the
+ * AbstractBucketizer without building an SVAIndex of objects. Each
+ * Bucketizable is given a dense int id and each distinct value of a
+ * sequence group a dense int slot while the set valued attributes are
+ * scanned once, and the members are then unioned through a disjoint set
+ * held in int arrays. As with the AbstractBucketizer, a value held by more
+ * than one member of the same provider is excluded from bucketizing, so a
+ * value links at most one member of each provider. The components are
+ * handed to the process methods of a bucketizer as BucketItems of the same
+ * cardinality classes; a component with members of only one provider is
+ * handed over one member at a time as one to zero or zero to one items.
+ * The number of members holding each value remains available once the
+ * components have been processed.
+ * <p>
+ * Given a Partitioner, the members are divided into partitions which are
+ * indexed and unioned independently on a pool of threads. The values
+ * held in more than one partition are then found by a reconciliation pass,
+ * sharded by the hash of the value, which applies the counts of all
+ * partitions to them and unions the members they link across partitions.
+ * <p>
+ * Given two BucketizableSources instead of DataIterators, the members are
+ * streamed. The first pass indexes the values of each member as it is read
+ * without keeping the member, so the components are found from the int
+ * arrays and value tables alone. The second pass reads the sources again
+ * and hands each component to the bucketizer as soon as its last member
+ * has been read, releasing its members, so only the members of the
+ * components still open are held at a time.
+ * @has the sequence group names, the partitions of the members and the
+ * number of threads the partitions are clustered on
+ * @does reads the Bucketizables, finds the connected components and
+ * processes them as BucketItems
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class DisjointSetClusterer
+{
+    // the name of the only partition when there is no Partitioner
+    private static final String ALL = "ALL";
+
+    // the number of reconciliation shards per thread
+    private static final int SHARDS_PER_THREAD = 4;
+
+    // the names of the sequence groups
+    private String[] groups = null;
+
+    // assigns members to partitions or null for a single partition
+    private Partitioner partitioner = null;
+
+    // the number of threads partitions are clustered on
+    private int threads = 1;
+
+    // the partitions by name while the members are read, then in the order
+    // they were first seen along with the global id of the first member of
+    // each. Global ids number the members of each partition in turn
+    private HashMap partitionsByName = new HashMap();
+    private ArrayList partitionList = new ArrayList();
+    private Partition[] partitions = null;
+    private int[] offsets = null;
+
+    // the pool of threads or null when clustering on the calling thread
+    private ExecutorService pool = null;
+
+    // the component of each member by global id, the start of the members
+    // of each component and the members of all components in turn, by
+    // global id
+    private int[] component = null;
+    private int[] componentStarts = null;
+    private int[] componentMembers = null;
+
+    /**
+     * constructor for clustering all members as a single partition on the
+     * calling thread
+     * @param sequenceGroups the names of the set valued attributes whose
+     * values link the members
+     */
+    public DisjointSetClusterer(String[] sequenceGroups)
+    {
+        this(sequenceGroups, null, 1);
+    }
+
+    /**
+     * constructor for clustering the members in partitions
+     * @param sequenceGroups the names of the set valued attributes whose
+     * values link the members
+     * @param partitioner assigns members to partitions or null for a single
+     * partition
+     * @param threads the number of threads partitions are clustered on, 1
+     * clusters them on the calling thread
+     */
+    public DisjointSetClusterer(String[] sequenceGroups,
+                                Partitioner partitioner, int threads)
+    {
+        this.groups = sequenceGroups;
+        this.partitioner = partitioner;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * get the number of partitions
+     * @assumes run() has been called
+     * @effects nothing
+     * @return the number of partitions
+     */
+    public int getPartitionCount()
+    {
+        return this.partitions.length;
+    }
+
+    /**
+     * get the number of members holding a value of a sequence group
+     * @assumes run() has been called
+     * @effects nothing
+     * @param group the name of the sequence group
+     * @param value the value
+     * @return the number of members of either provider holding the value
+     */
+    public int getMemberCount(String group, Object value)
+    {
+        int g = getGroup(group);
+        if (g < 0)
+            return 0;
+        // a value held in several partitions has the counts of all of them
+        // in each, so the first partition holding it has the total
+        for (int p = 0; p < this.partitions.length; p++)
+        {
+            Partition partition = this.partitions[p];
+            int slot = partition.tables[g].find(value);
+            if (slot >= 0)
+                return partition.firstCounts[slot] +
+                    partition.secondCounts[slot];
+        }
+        return 0;
+    }
+
+    /**
+     * read the members from two DataIterators, find the connected
+     * components and hand each one to the process method of the bucketizer
+     * for its cardinality
+     * @assumes nothing
+     * @effects the DataIterators will be read to the end and the process
+     * methods of the bucketizer will be called
+     * @param it1 a DataIterator of Bucketizables of either provider
+     * @param it2 a DataIterator of Bucketizables of either provider
+     * @param provider1 the first provider, the 'one' of a one to many item
+     * @param provider2 the second provider
+     * @param bucketizer the bucketizer processing the BucketItems
+     * @throws MGIException thrown if there is an error reading the data or
+     * processing a BucketItem
+     */
+    public void run(DataIterator it1, DataIterator it2, String provider1,
+                    String provider2, AbstractBucketizer bucketizer)
+    throws MGIException
+    {
+        read(it1, provider1, true);
+        read(it2, provider1, true);
+        cluster();
+        this.component = null;
+        for (int c = 0; c < this.componentStarts.length - 1; c++)
+            process(this.componentStarts[c], this.componentStarts[c + 1],
+                    bucketizer);
+        release();
+    }
+
+    /**
+     * read the members from two BucketizableSources twice, finding the
+     * connected components from the values alone on the first pass and
+     * handing each one to the process method of the bucketizer for its
+     * cardinality as soon as its last member is read on the second pass.
+     * The second pass reads the sources in step with each other so that
+     * the components whose members are near the same relative position in
+     * both sources are closed early
+     * @assumes each source returns the same members in the same order each
+     * time it is opened
+     * @effects each source will be opened and read to the end twice and the
+     * process methods of the bucketizer will be called
+     * @param source1 a source of Bucketizables of either provider
+     * @param source2 a source of Bucketizables of either provider
+     * @param provider1 the first provider, the 'one' of a one to many item
+     * @param provider2 the second provider
+     * @param bucketizer the bucketizer processing the BucketItems
+     * @throws MGIException thrown if there is an error reading the data,
+     * a source returned different members the second time or a BucketItem
+     * could not be processed
+     */
+    public void run(BucketizableSource source1, BucketizableSource source2,
+                    String provider1, String provider2,
+                    AbstractBucketizer bucketizer)
+    throws MGIException
+    {
+        IntPairs order1 = read(source1.open(), provider1, false);
+        IntPairs order2 = read(source2.open(), provider1, false);
+        cluster();
+        int[] members1 = getGlobalIds(order1);
+        int[] members2 = getGlobalIds(order2);
+        order1 = null;
+        order2 = null;
+
+        int components = this.componentStarts.length - 1;
+        int[] remaining = new int[components];
+        for (int c = 0; c < components; c++)
+            remaining[c] =
+                this.componentStarts[c + 1] - this.componentStarts[c];
+
+        DataIterator it1 = source1.open();
+        DataIterator it2 = source2.open();
+        int n1 = members1.length;
+        int n2 = members2.length;
+        int k1 = 0;
+        int k2 = 0;
+        while (k1 < n1 || k2 < n2)
+        {
+            // read from the source which is relatively further behind
+            boolean fromFirst =
+                k2 == n2 || (k1 < n1 && (long)k1 * n2 <= (long)k2 * n1);
+            DataIterator it = (fromFirst ? it1 : it2);
+            int m = (fromFirst ? members1[k1++] : members2[k2++]);
+            if (!it.hasNext())
+                throw getException(ClustererExceptionFactory.SourceChangedErr,
+                                   (fromFirst ? "first" : "second"), null);
+            Bucketizable b = (Bucketizable)it.next();
+            if (!replay(m, b, provider1))
+                throw getException(ClustererExceptionFactory.SourceChangedErr,
+                                   (fromFirst ? "first" : "second"), null);
+            int c = this.component[m];
+            if (--remaining[c] > 0)
+                continue;
+            process(this.componentStarts[c], this.componentStarts[c + 1],
+                    bucketizer);
+            for (int i = this.componentStarts[c];
+                 i < this.componentStarts[c + 1]; i++)
+                setMember(this.componentMembers[i], null);
+        }
+        if (it1.hasNext())
+            throw getException(ClustererExceptionFactory.SourceChangedErr,
+                               "first", null);
+        if (it2.hasNext())
+            throw getException(ClustererExceptionFactory.SourceChangedErr,
+                               "second", null);
+        release();
+    }
+
+    /**
+     * read the members from a DataIterator into their partitions
+     * @param it the DataIterator
+     * @param provider1 the first provider
+     * @param retain true to keep the members for indexing once all have been
+     * read, false to index the values of each member as it is read and keep
+     * only the values
+     * @return the partition and local id of each member read when the
+     * members are not retained, otherwise null
+     * @throws MGIException thrown if there is an error reading the data
+     */
+    private IntPairs read(DataIterator it, String provider1, boolean retain)
+    throws MGIException
+    {
+        IntPairs order = (retain ? null : new IntPairs());
+        while (it.hasNext())
+        {
+            Bucketizable b = (Bucketizable)it.next();
+            String name = ALL;
+            if (this.partitioner != null)
+                name = this.partitioner.getPartition(b);
+            Partition partition = (Partition)this.partitionsByName.get(name);
+            if (partition == null)
+            {
+                partition = new Partition(this.partitionList.size());
+                this.partitionsByName.put(name, partition);
+                this.partitionList.add(partition);
+            }
+            if (order != null)
+                order.add(partition.number, partition.size);
+            partition.add(b, b.getProvider().equals(provider1), retain);
+        }
+        return order;
+    }
+
+    /**
+     * index and union the partitions which have been read, find the
+     * connected components and list the members of each
+     * @throws MGIException thrown if a partition could not be clustered
+     */
+    private void cluster() throws MGIException
+    {
+        this.partitions = (Partition[])this.partitionList.toArray(
+            new Partition[this.partitionList.size()]);
+        this.partitionsByName = null;
+        this.partitionList = null;
+        this.offsets = new int[this.partitions.length + 1];
+        for (int p = 0; p < this.partitions.length; p++)
+            this.offsets[p + 1] = this.offsets[p] + this.partitions[p].size;
+        int n = this.offsets[this.partitions.length];
+
+        int[] parent = new int[n];
+        int[] size = new int[n];
+        ReconcileTask[] shards = new ReconcileTask[0];
+        if (this.partitions.length > 1)
+            shards = new ReconcileTask[this.threads * SHARDS_PER_THREAD];
+        if (this.threads > 1 && this.partitions.length > 1)
+            this.pool = Executors.newFixedThreadPool(this.threads);
+        try
+        {
+            Task[] tasks = new Task[this.partitions.length];
+            for (int p = 0; p < tasks.length; p++)
+                tasks[p] = new IndexTask(p, shards.length);
+            runTasks(tasks);
+
+            if (this.partitions.length > 1)
+            {
+                for (int s = 0; s < shards.length; s++)
+                    shards[s] = new ReconcileTask(s);
+                runTasks(shards);
+            }
+
+            for (int p = 0; p < tasks.length; p++)
+                tasks[p] = new UnionTask(p, parent, size);
+            runTasks(tasks);
+        }
+        finally
+        {
+            if (this.pool != null)
+                this.pool.shutdownNow();
+            this.pool = null;
+        }
+
+        // union the members linked across partitions
+        for (int s = 0; s < shards.length; s++)
+        {
+            IntPairs links = shards[s].links;
+            for (int i = 0; i < links.size; i++)
+                union(parent, size, links.a[i], links.b[i]);
+        }
+        shards = null;
+
+        // number the components in the order of their first member and
+        // list the members of each. The sizes are no longer needed so the
+        // array is reused for the component of each root
+        int[] rootComponents = size;
+        for (int m = 0; m < n; m++)
+            rootComponents[m] = -1;
+        this.component = new int[n];
+        int components = 0;
+        for (int m = 0; m < n; m++)
+        {
+            int root = find(parent, m);
+            if (rootComponents[root] < 0)
+                rootComponents[root] = components++;
+            this.component[m] = rootComponents[root];
+        }
+        parent = null;
+        size = null;
+        rootComponents = null;
+        this.componentStarts = new int[components + 1];
+        for (int m = 0; m < n; m++)
+            this.componentStarts[this.component[m] + 1]++;
+        for (int c = 0; c < components; c++)
+            this.componentStarts[c + 1] += this.componentStarts[c];
+        this.componentMembers = new int[n];
+        int[] next = new int[components];
+        for (int m = 0; m < n; m++)
+        {
+            int c = this.component[m];
+            this.componentMembers[this.componentStarts[c] + next[c]++] = m;
+        }
+    }
+
+    /**
+     * release the components and everything but the value tables and counts
+     * of the partitions once the components have been processed
+     */
+    private void release()
+    {
+        this.component = null;
+        this.componentStarts = null;
+        this.componentMembers = null;
+        for (int p = 0; p < this.partitions.length; p++)
+            this.partitions[p].release();
+    }
+
+    /**
+     * get the global ids of the members read from a source
+     * @param order the partition and local id of each member in the order
+     * they were read
+     * @return the global id of each member in the order they were read
+     */
+    private int[] getGlobalIds(IntPairs order)
+    {
+        int[] ids = new int[order.size];
+        for (int i = 0; i < order.size; i++)
+            ids[i] = this.offsets[order.a[i]] + order.b[i];
+        return ids;
+    }
+
+    /**
+     * put a member read again back in its partition, checking it is the
+     * member read the first time
+     * @param m the global id the member was given the first time
+     * @param b the member
+     * @param provider1 the first provider
+     * @return true if the member has the id and provider of the member read
+     * the first time
+     */
+    private boolean replay(int m, Bucketizable b, String provider1)
+    {
+        int p = getPartition(m);
+        Partition partition = this.partitions[p];
+        int local = m - this.offsets[p];
+        if (partition.idHashes[local] != b.getId().hashCode() ||
+            partition.first[local] != b.getProvider().equals(provider1))
+            return false;
+        partition.members.set(local, b);
+        return true;
+    }
+
+    /**
+     * run clustering tasks on the pool, or on the calling thread if there
+     * is none, and wait for all of them to finish
+     * @param tasks the tasks
+     * @throws MGIException thrown if a task failed
+     */
+    private void runTasks(Task[] tasks) throws MGIException
+    {
+        if (this.pool == null)
+        {
+            for (int i = 0; i < tasks.length; i++)
+                tasks[i].execute();
+            return;
+        }
+        Future[] futures = new Future[tasks.length];
+        for (int i = 0; i < tasks.length; i++)
+            futures[i] = this.pool.submit(tasks[i]);
+        for (int i = 0; i < futures.length; i++)
+        {
+            try
+            {
+                futures[i].get();
+            }
+            catch (ExecutionException e)
+            {
+                Throwable t = e.getCause();
+                if (t instanceof RuntimeException)
+                    throw (RuntimeException)t;
+                if (t instanceof Error)
+                    throw (Error)t;
+                throw getException(ClustererExceptionFactory.UnexpectedErr,
+                                   tasks[i], (Exception)t);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw getException(ClustererExceptionFactory.InterruptErr,
+                                   tasks[i], e);
+            }
+        }
+    }
+
+    /**
+     * create an MGIException for the given error
+     * @param name the name of the exception in the ClustererExceptionFactory
+     * @param task the task which failed
+     * @param e the exception which caused the error
+     * @return the MGIException
+     */
+    private MGIException getException(String name, Task task, Exception e)
+    {
+        return getException(name, task.toString(), e);
+    }
+
+    /**
+     * create an MGIException for the given error
+     * @param name the name of the exception in the ClustererExceptionFactory
+     * @param detail the detail bound to the message of the exception
+     * @param e the exception which caused the error or null if there is none
+     * @return the MGIException
+     */
+    private MGIException getException(String name, String detail,
+                                      Exception e)
+    {
+        ClustererExceptionFactory eFactory = new ClustererExceptionFactory();
+        MGIException e2 = (e == null ? eFactory.getException(name) :
+                           eFactory.getException(name, e));
+        e2.bind(detail);
+        return e2;
+    }
+
+    /**
+     * create the BucketItem of a component and hand it to the bucketizer
+     * @param start the index of the first member of the component in the
+     * members of all components
+     * @param end the index after the last member of the component
+     * @param bucketizer the bucketizer processing the BucketItem
+     * @throws MGIException thrown if the BucketItem could not be processed
+     */
+    private void process(int start, int end, AbstractBucketizer bucketizer)
+    throws MGIException
+    {
+        int[] componentMembers = this.componentMembers;
+        int firstCount = 0;
+        for (int i = start; i < end; i++)
+        {
+            if (isFirst(componentMembers[i]))
+                firstCount++;
+        }
+        int secondCount = end - start - firstCount;
+
+        if (firstCount == 0 || secondCount == 0)
+        {
+            for (int i = start; i < end; i++)
+            {
+                BucketItem item = new BucketItem();
+                item.addMember(getMember(componentMembers[i]));
+                if (firstCount == 0)
+                    bucketizer.process_Zero_To_One(item);
+                else
+                    bucketizer.process_One_To_Zero(item);
+            }
+            return;
+        }
+
+        BucketItem item = new BucketItem();
+        for (int i = start; i < end; i++)
+            item.addMember(getMember(componentMembers[i]));
+
+        // associate each member of the first provider with the members of
+        // the second provider it shares values with, labelled by the
+        // sequence groups of the shared values
+        for (int i = start; i < end; i++)
+        {
+            int m = componentMembers[i];
+            if (!isFirst(m))
+                continue;
+            int p = getPartition(m);
+            Partition partition = this.partitions[p];
+            int local = m - this.offsets[p];
+            LinkedHashMap labels = new LinkedHashMap();
+            for (int e = partition.edgeStarts[local];
+                 e < partition.edgeStarts[local + 1]; e++)
+            {
+                int s = partition.edgeSlots[e];
+                if (!partition.isLinking(s))
+                    continue;
+                Bucketizable b = getMember(
+                    partition.getLinkedMember(s, local, this.offsets[p]));
+                Set label = (Set)labels.get(b);
+                if (label == null)
+                {
+                    label = new HashSet();
+                    labels.put(b, label);
+                }
+                label.add(this.groups[partition.slotGroups[s]]);
+            }
+            Bucketizable a = getMember(m);
+            for (Iterator j = labels.keySet().iterator(); j.hasNext();)
+            {
+                Bucketizable b = (Bucketizable)j.next();
+                item.addAssociation(a, b, (Set)labels.get(b));
+            }
+        }
+
+        if (firstCount == 1 && secondCount == 1)
+            bucketizer.process_One_To_One(item);
+        else if (firstCount == 1)
+            bucketizer.process_One_To_Many(item);
+        else if (secondCount == 1)
+            bucketizer.process_Many_To_One(item);
+        else
+            bucketizer.process_Many_To_Many(item);
+    }
+
+    /**
+     * get the partition of a member
+     * @param m the global id of the member
+     * @return the index of the partition
+     */
+    private int getPartition(int m)
+    {
+        int low = 0;
+        int high = this.partitions.length - 1;
+        while (low < high)
+        {
+            int mid = (low + high + 1) >>> 1;
+            if (this.offsets[mid] <= m)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        return low;
+    }
+
+    /**
+     * get a member
+     * @param m the global id of the member
+     * @return the member
+     */
+    private Bucketizable getMember(int m)
+    {
+        int p = getPartition(m);
+        return (Bucketizable)this.partitions[p].members.get(
+            m - this.offsets[p]);
+    }
+
+    /**
+     * set a member
+     * @param m the global id of the member
+     * @param b the member or null to release it
+     */
+    private void setMember(int m, Bucketizable b)
+    {
+        int p = getPartition(m);
+        this.partitions[p].members.set(m - this.offsets[p], b);
+    }
+
+    /**
+     * determine whether a member is of the first provider
+     * @param m the global id of the member
+     * @return true if the member is of the first provider
+     */
+    private boolean isFirst(int m)
+    {
+        int p = getPartition(m);
+        return this.partitions[p].first[m - this.offsets[p]];
+    }
+
+    /**
+     * get the index of a sequence group
+     * @param group the name of the sequence group
+     * @return the index or -1 if there is no such group
+     */
+    private int getGroup(String group)
+    {
+        for (int g = 0; g < this.groups.length; g++)
+        {
+            if (this.groups[g].equals(group))
+                return g;
+        }
+        return -1;
+    }
+
+    /**
+     * find the root of the set of a member, halving the path on the way
+     * @param parent the parent of each member
+     * @param m the member
+     * @return the root
+     */
+    private static int find(int[] parent, int m)
+    {
+        while (parent[m] != m)
+        {
+            parent[m] = parent[parent[m]];
+            m = parent[m];
+        }
+        return m;
+    }
+
+    /**
+     * join the sets of two members, the smaller under the larger
+     * @param parent the parent of each member
+     * @param size the size of the set of each root
+     * @param a a member
+     * @param b another member
+     */
+    private static void union(int[] parent, int[] size, int a, int b)
+    {
+        a = find(parent, a);
+        b = find(parent, b);
+        if (a == b)
+            return;
+        if (size[a] < size[b])
+        {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        parent[b] = a;
+        size[a] += size[b];
+    }
+
+    /**
+     * spread the bits of the hash code of a value
+     * @param value the value
+     * @return the hash
+     */
+    private static int hash(Object value)
+    {
+        int h = value.hashCode() * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * get the reconciliation shard of a value
+     * @param value the value
+     * @param shards the number of shards
+     * @return the shard
+     */
+    private static int getShard(Object value, int shards)
+    {
+        return (hash(value) >>> 1) % shards;
+    }
+
+    /**
+     * copy an array into a longer one
+     * @param a the array
+     * @param length the new length
+     * @return the new array
+     */
+    private static int[] grow(int[] a, int length)
+    {
+        int[] b = new int[length];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    /**
+     * is the members of one partition and the values they hold
+     * @has the members, a table of the values of each sequence group, the
+     * number of members of each provider holding each value, the slots of
+     * the values held by each member and the members holding each slot
+     * @does indexes the values of the members
+     */
+    private class Partition
+    {
+        // the index of the partition in the order partitions were first seen
+        public int number = 0;
+
+        // the members by local id, or null for a member which is not held,
+        // whether each is of the first provider and the hash code of its id
+        public ArrayList members = new ArrayList();
+        public boolean[] first = new boolean[64];
+        public int[] idHashes = new int[64];
+        public int size = 0;
+
+        // the number of members whose values have been indexed
+        private int indexed = 0;
+
+        // the table of the values of each sequence group
+        public ValueTable[] tables = null;
+
+        // the number of members of the first and second provider holding
+        // the value of each slot and the sequence group of each slot. For a
+        // value held in other partitions as well the counts are those of
+        // all partitions
+        public int[] firstCounts = new int[64];
+        public int[] secondCounts = new int[64];
+        public int[] slotGroups = new int[64];
+        public int slots = 0;
+
+        // the slots of the values held by each member: the slots of member
+        // i are at edgeSlots[edgeStarts[i]] up to edgeSlots[edgeStarts[i+1]]
+        public int[] edgeStarts = new int[65];
+        public int[] edgeSlots = new int[256];
+        public int edges = 0;
+
+        // the members holding each slot: the members of slot s are at
+        // slotMembers[slotStarts[s]] up to slotMembers[slotStarts[s + 1]]
+        public int[] slotStarts = null;
+        public int[] slotMembers = null;
+
+        // whether the value of each slot is held in other partitions and,
+        // for such a value linking two members, the global id of the member
+        // in the other partition. Only allocated when there are several
+        // partitions
+        public boolean[] cross = null;
+        public int[] crossMembers = null;
+
+        // the values of each reconciliation shard, as the sequence group
+        // and value table index of each. Only built when there are several
+        // partitions and released by each shard once it is reconciled
+        public IntPairs[] routes = null;
+
+        public Partition(int number)
+        {
+            this.number = number;
+            this.tables = new ValueTable[groups.length];
+            for (int g = 0; g < this.tables.length; g++)
+                this.tables[g] = new ValueTable();
+        }
+
+        /**
+         * add a member
+         * @param b the member
+         * @param isFirst true if the member is of the first provider
+         * @param retain true to keep the member for indexing later, false to
+         * index its values now and not keep it
+         */
+        public void add(Bucketizable b, boolean isFirst, boolean retain)
+        {
+            if (this.size == this.first.length)
+            {
+                boolean[] f = new boolean[this.size * 2];
+                System.arraycopy(this.first, 0, f, 0, this.size);
+                this.first = f;
+                this.idHashes = grow(this.idHashes, this.size * 2);
+                this.edgeStarts = grow(this.edgeStarts, this.size * 2 + 1);
+            }
+            this.first[this.size] = isFirst;
+            this.idHashes[this.size] = b.getId().hashCode();
+            this.members.add(retain ? b : null);
+            if (!retain)
+                addValues(this.size, b.getSVASet());
+            this.size++;
+        }
+
+        /**
+         * give each value of the members a slot and list the slots of each
+         * member and the members of each slot
+         * @param withCross true to allocate the cross partition arrays
+         */
+        public void index(boolean withCross)
+        {
+            for (int m = this.indexed; m < this.size; m++)
+                addValues(m, ((Bucketizable)this.members.get(m)).getSVASet());
+
+            this.slotStarts = new int[this.slots + 1];
+            for (int s = 0; s < this.slots; s++)
+                this.slotStarts[s + 1] = this.slotStarts[s] +
+                    this.firstCounts[s] + this.secondCounts[s];
+            this.slotMembers = new int[this.edges];
+            int[] filled = new int[this.slots];
+            for (int m = 0; m < this.size; m++)
+            {
+                for (int e = this.edgeStarts[m]; e < this.edgeStarts[m + 1];
+                     e++)
+                {
+                    int s = this.edgeSlots[e];
+                    this.slotMembers[this.slotStarts[s] + filled[s]++] = m;
+                }
+            }
+
+            if (withCross)
+            {
+                this.cross = new boolean[this.slots];
+                this.crossMembers = new int[this.slots];
+            }
+        }
+
+        /**
+         * list the values of each reconciliation shard in one pass over the
+         * value tables
+         * @param shards the number of shards
+         */
+        public void route(int shards)
+        {
+            this.routes = new IntPairs[shards];
+            for (int s = 0; s < shards; s++)
+                this.routes[s] = new IntPairs();
+            for (int g = 0; g < this.tables.length; g++)
+            {
+                ValueTable t = this.tables[g];
+                for (int i = 0; i < t.capacity(); i++)
+                {
+                    Object value = t.valueAt(i);
+                    if (value != null)
+                        this.routes[getShard(value, shards)].add(g, i);
+                }
+            }
+        }
+
+        /**
+         * give each value of a member a slot, list the slots of the member
+         * and count the member in the counts of each slot
+         * @param m the local id of the member, which is the next member to
+         * be indexed
+         * @param svaSet the set valued attributes of the member
+         */
+        private void addValues(int m, SVASet svaSet)
+        {
+            this.edgeStarts[m] = this.edges;
+            for (int g = 0; g < groups.length; g++)
+            {
+                Set values = svaSet.getSVA(groups[g]);
+                if (values == null)
+                    continue;
+                for (Iterator i = values.iterator(); i.hasNext();)
+                {
+                    int slot = this.tables[g].slot(i.next(), this.slots);
+                    if (slot == this.slots)
+                        newSlot(g);
+                    if (this.edges == this.edgeSlots.length)
+                        this.edgeSlots = grow(this.edgeSlots, this.edges * 2);
+                    this.edgeSlots[this.edges++] = slot;
+                    if (this.first[m])
+                        this.firstCounts[slot]++;
+                    else
+                        this.secondCounts[slot]++;
+                }
+            }
+            this.edgeStarts[m + 1] = this.edges;
+            this.indexed = m + 1;
+        }
+
+        /**
+         * allocate the next slot
+         * @param g the sequence group of the slot
+         */
+        private void newSlot(int g)
+        {
+            int slot = this.slots++;
+            if (slot == this.firstCounts.length)
+            {
+                this.firstCounts = grow(this.firstCounts, slot * 2);
+                this.secondCounts = grow(this.secondCounts, slot * 2);
+                this.slotGroups = grow(this.slotGroups, slot * 2);
+            }
+            this.slotGroups[slot] = g;
+        }
+
+        /**
+         * determine whether the value of a slot links two members, which
+         * it does when it is held by exactly one member of each provider
+         * @param s the slot
+         * @return true if the value links two members
+         */
+        public boolean isLinking(int s)
+        {
+            return this.firstCounts[s] == 1 && this.secondCounts[s] == 1;
+        }
+
+        /**
+         * determine whether the value of a slot is held in other partitions
+         * @param s the slot
+         * @return true if the value is held in other partitions
+         */
+        public boolean isCross(int s)
+        {
+            return this.cross != null && this.cross[s];
+        }
+
+        /**
+         * get the member a linking slot links a member of the partition to
+         * @param s the slot
+         * @param local the local id of the member
+         * @param offset the global id of the first member of the partition
+         * @return the global id of the other member
+         */
+        public int getLinkedMember(int s, int local, int offset)
+        {
+            if (isCross(s))
+                return this.crossMembers[s];
+            int other = this.slotMembers[this.slotStarts[s]];
+            if (other == local)
+                other = this.slotMembers[this.slotStarts[s] + 1];
+            return offset + other;
+        }
+
+        /**
+         * release everything but the value tables and counts
+         */
+        public void release()
+        {
+            this.members = null;
+            this.first = null;
+            this.idHashes = null;
+            this.edgeStarts = null;
+            this.edgeSlots = null;
+            this.slotStarts = null;
+            this.slotMembers = null;
+            this.cross = null;
+            this.crossMembers = null;
+            this.routes = null;
+        }
+    }
+
+    /**
+     * is a step of the clustering for one partition or shard
+     * @has nothing
+     * @does runs the step on the calling thread or a pool thread
+     */
+    private abstract class Task implements Callable
+    {
+        public abstract void execute();
+
+        public Object call()
+        {
+            execute();
+            return null;
+        }
+    }
+
+    /**
+     * is the indexing of the values of a partition and, when there are
+     * several partitions, the routing of its values to the reconciliation
+     * shards
+     * @has the partition and the number of shards
+     * @does indexes the partition
+     */
+    private class IndexTask extends Task
+    {
+        private int p = 0;
+        private int shards = 0;
+
+        public IndexTask(int p, int shards)
+        {
+            this.p = p;
+            this.shards = shards;
+        }
+
+        public void execute()
+        {
+            partitions[this.p].index(partitions.length > 1);
+            if (this.shards > 0)
+                partitions[this.p].route(this.shards);
+        }
+
+        public String toString()
+        {
+            return "indexing partition " + this.p;
+        }
+    }
+
+    /**
+     * is the union of the members of a partition linked by the values held
+     * only in the partition. Partitions union disjoint ranges of the
+     * arrays so they may run at the same time
+     * @has the partition and the disjoint set arrays
+     * @does unions the members of the partition
+     */
+    private class UnionTask extends Task
+    {
+        private int p = 0;
+        private int[] parent = null;
+        private int[] size = null;
+
+        public UnionTask(int p, int[] parent, int[] size)
+        {
+            this.p = p;
+            this.parent = parent;
+            this.size = size;
+        }
+
+        public void execute()
+        {
+            Partition partition = partitions[this.p];
+            int offset = offsets[this.p];
+            for (int m = 0; m < partition.size; m++)
+            {
+                this.parent[offset + m] = offset + m;
+                this.size[offset + m] = 1;
+            }
+            for (int s = 0; s < partition.slots; s++)
+            {
+                if (!partition.isLinking(s) || partition.isCross(s))
+                    continue;
+                int start = partition.slotStarts[s];
+                union(this.parent, this.size,
+                      offset + partition.slotMembers[start],
+                      offset + partition.slotMembers[start + 1]);
+            }
+        }
+
+        public String toString()
+        {
+            return "unioning partition " + this.p;
+        }
+    }
+
+    /**
+     * is the reconciliation of the values in one shard of the value hashes
+     * which are held in more than one partition. Their counts in each
+     * partition are replaced by the counts of all partitions and the
+     * members they link across partitions are recorded. The shards hold
+     * disjoint values so they may run at the same time. Each partition has
+     * already routed its values to their shards, so a shard only visits
+     * its own values
+     * @has the shard number and the cross partition links found
+     * @does reconciles the values of the shard
+     */
+    private class ReconcileTask extends Task
+    {
+        private int shard = 0;
+
+        // the pairs of global ids linked across partitions
+        public IntPairs links = new IntPairs();
+
+        // the values of the shard in each sequence group and, by record,
+        // the first partition and slot holding each value, the counts of all
+        // partitions and the number of partitions holding it
+        private ValueTable[] tables = null;
+        private int[] partitionOf = new int[256];
+        private int[] slotOf = new int[256];
+        private int[] firstCounts = new int[256];
+        private int[] secondCounts = new int[256];
+        private int[] holders = new int[256];
+        private int records = 0;
+
+        public ReconcileTask(int shard)
+        {
+            this.shard = shard;
+        }
+
+        public void execute()
+        {
+            this.tables = new ValueTable[groups.length];
+            for (int g = 0; g < this.tables.length; g++)
+                this.tables[g] = new ValueTable();
+
+            for (int p = 0; p < partitions.length; p++)
+            {
+                IntPairs route = partitions[p].routes[this.shard];
+                for (int j = 0; j < route.size; j++)
+                {
+                    int g = route.a[j];
+                    ValueTable t = partitions[p].tables[g];
+                    int i = route.b[j];
+                    count(p, this.tables[g].slot(t.valueAt(i), this.records),
+                          t.slotAt(i));
+                }
+            }
+
+            for (int p = 0; p < partitions.length; p++)
+            {
+                IntPairs route = partitions[p].routes[this.shard];
+                for (int j = 0; j < route.size; j++)
+                {
+                    int g = route.a[j];
+                    ValueTable t = partitions[p].tables[g];
+                    int i = route.b[j];
+                    reconcile(p, this.tables[g].find(t.valueAt(i)),
+                              t.slotAt(i));
+                }
+                partitions[p].routes[this.shard] = null;
+            }
+            this.tables = null;
+        }
+
+        public String toString()
+        {
+            return "reconciling shard " + this.shard;
+        }
+
+        private void count(int p, int r, int slot)
+        {
+            if (r == this.records)
+            {
+                if (r == this.holders.length)
+                {
+                    this.partitionOf = grow(this.partitionOf, r * 2);
+                    this.slotOf = grow(this.slotOf, r * 2);
+                    this.firstCounts = grow(this.firstCounts, r * 2);
+                    this.secondCounts = grow(this.secondCounts, r * 2);
+                    this.holders = grow(this.holders, r * 2);
+                }
+                this.partitionOf[r] = p;
+                this.slotOf[r] = slot;
+                this.records++;
+            }
+            this.firstCounts[r] += partitions[p].firstCounts[slot];
+            this.secondCounts[r] += partitions[p].secondCounts[slot];
+            this.holders[r]++;
+        }
+
+        private void reconcile(int p, int r, int slot)
+        {
+            if (this.holders[r] < 2)
+                return;
+            Partition partition = partitions[p];
+            partition.cross[slot] = true;
+            partition.firstCounts[slot] = this.firstCounts[r];
+            partition.secondCounts[slot] = this.secondCounts[r];
+
+            // a linking value is held by one member in each of two
+            // partitions; link them when the second partition is reached
+            if (this.firstCounts[r] != 1 || this.secondCounts[r] != 1 ||
+                this.partitionOf[r] == p)
+                return;
+            int q = this.partitionOf[r];
+            Partition other = partitions[q];
+            int a = offsets[q] +
+                other.slotMembers[other.slotStarts[this.slotOf[r]]];
+            int b = offsets[p] +
+                partition.slotMembers[partition.slotStarts[slot]];
+            other.crossMembers[this.slotOf[r]] = b;
+            partition.crossMembers[slot] = a;
+            this.links.add(a, b);
+        }
+    }
+
+    /**
+     * is a growable list of pairs of ints
+     * @has the pairs
+     * @does adds pairs
+     */
+    private static class IntPairs
+    {
+        public int[] a = new int[16];
+        public int[] b = new int[16];
+        public int size = 0;
+
+        public void add(int x, int y)
+        {
+            if (this.size == this.a.length)
+            {
+                this.a = grow(this.a, this.size * 2);
+                this.b = grow(this.b, this.size * 2);
+            }
+            this.a[this.size] = x;
+            this.b[this.size++] = y;
+        }
+    }
+
+    /**
+     * is an open addressing table giving each distinct value a slot
+     * @has the values and their slots
+     * @does finds the slot of a value, adding the value with a given slot
+     * if it is new
+     */
+    private static class ValueTable
+    {
+        private Object[] values = new Object[64];
+        private int[] valueSlots = new int[64];
+        private int size = 0;
+
+        public int find(Object value)
+        {
+            int mask = this.values.length - 1;
+            for (int i = hash(value) & mask; this.values[i] != null;
+                 i = (i + 1) & mask)
+            {
+                if (this.values[i].equals(value))
+                    return this.valueSlots[i];
+            }
+            return -1;
+        }
+
+        public int slot(Object value, int newSlot)
+        {
+            int mask = this.values.length - 1;
+            int i = hash(value) & mask;
+            for (; this.values[i] != null; i = (i + 1) & mask)
+            {
+                if (this.values[i].equals(value))
+                    return this.valueSlots[i];
+            }
+            this.values[i] = value;
+            this.valueSlots[i] = newSlot;
+            if (++this.size * 2 > this.values.length)
+                rehash();
+            return newSlot;
+        }
+
+        public int capacity()
+        {
+            return this.values.length;
+        }
+
+        public Object valueAt(int i)
+        {
+            return this.values[i];
+        }
+
+        public int slotAt(int i)
+        {
+            return this.valueSlots[i];
+        }
+
+        private void rehash()
+        {
+            Object[] v = new Object[this.values.length * 2];
+            int[] s = new int[v.length];
+            int mask = v.length - 1;
+            for (int j = 0; j < this.values.length; j++)
+            {
+                if (this.values[j] == null)
+                    continue;
+                int i = hash(this.values[j]) & mask;
+                while (v[i] != null)
+                    i = (i + 1) & mask;
+                v[i] = this.values[j];
+                s[i] = this.valueSlots[j];
+            }
+            this.values = v;
+            this.valueSlots = s;
+        }
+    }
+}
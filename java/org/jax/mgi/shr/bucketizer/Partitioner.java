@@ -0,0 +1,22 @@
+package org.jax.mgi.shr.bucketizer;
+
+/**
+ * is an interface for assigning Bucketizables to partitions which the
+ * DisjointSetClusterer clusters independently before reconciling the
+ * components which span partitions. Partitions should be chosen so that
+ * few values are shared between them, for instance by chromosome.
+ * @has nothing
+ * @does names the partition of a Bucketizable
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public interface Partitioner
+{
+    /**
+     * get the name of the partition of a Bucketizable
+     * @param b the Bucketizable
+     * @return the name of the partition
+     */
+    public String getPartition(Bucketizable b);
+}
@@ -0,0 +1,433 @@
+package org.jax.mgi.shr.cache;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.jax.mgi.shr.dbutils.DBException;
+import org.jax.mgi.shr.dbutils.ResultsNavigator;
+import org.jax.mgi.shr.dbutils.RowReference;
+import org.jax.mgi.shr.dbutils.SQLDataManager;
+import org.jax.mgi.shr.timing.Stopwatch;
+
+/**
+ * is the counterpart of the FullCachedLookup for caches keyed by an int,
+ * such as a marker key. The keys are held unboxed in an open addressing
+ * hash table and the values of each key are held in one array, so no
+ * Integer, KeyValue or Vector objects are kept per entry. Each row of the
+ * full init query contributes one value to the array of its key, in the
+ * order the rows are returned. Subclasses which implement SnapshotValues,
+ * providing a snapshot probe query and a serialized form of their values,
+ * can be loaded from a LookupSnapshot while the data behind them is
+ * unchanged.
+ * @has an open addressing table of int keys and value arrays
+ * @does runs the full init query and looks up the values of a key
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+abstract public class FullCachedIntLookup implements LoadableCache
+{
+    // the largest fraction of the table slots which may be used
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private SQLDataManager sqlMgr = null;
+
+    // the keys and the value arrays by table slot. A slot is in use when
+    // its value array is not null
+    private int[] keys = new int[0];
+    private Object[][] values = new Object[0][];
+
+    // the number of keys in the table
+    private int size = 0;
+
+    private boolean initialized = false;
+
+    // the directory holding snapshots of the cache or null if snapshots are
+    // not used
+    private File snapshotDirectory = null;
+
+    // the load statistics and lookup counters of the cache
+    private LookupMetrics metrics = null;
+
+    /**
+     * constructor
+     * @param sqlMgr the SQLDataManager the full init query is run through
+     */
+    public FullCachedIntLookup(SQLDataManager sqlMgr)
+    {
+        this.sqlMgr = sqlMgr;
+        this.metrics = LookupMetricsRegistry.getShared().getMetrics(
+            LookupMetricsRegistry.getName(this));
+    }
+
+    /**
+     * get the query to fully initialize the cache
+     * @return the query
+     */
+    abstract public String getFullInitQuery();
+
+    /**
+     * get the key of a row of the full init query
+     * @param row the row
+     * @return the key
+     * @throws DBException thrown if there is an error reading the row
+     */
+    abstract protected int interpretKey(RowReference row) throws DBException;
+
+    /**
+     * get the value of a row of the full init query
+     * @param row the row
+     * @return the value
+     * @throws DBException thrown if there is an error reading the row
+     */
+    abstract protected Object interpretValue(RowReference row)
+    throws DBException;
+
+    /**
+     * set the directory holding snapshots of the cache. When set, and the
+     * subclass implements SnapshotValues, the cache is read from the snapshot
+     * of the current data if there is one, otherwise the cache is queried
+     * and a snapshot written
+     * @param snapshotDirectory the directory or null to not use snapshots
+     */
+    public void setSnapshotDirectory(File snapshotDirectory)
+    {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    /**
+     * estimate the memory retained by a value. By default values are taken
+     * to be shared with other structures and count nothing
+     * @param value the value
+     * @return the estimated bytes
+     */
+    protected long sizeOfValue(Object value)
+    {
+        return 0;
+    }
+
+    /**
+     * get the load statistics and lookup counters of the cache
+     * @return the LookupMetrics
+     */
+    public LookupMetrics getMetrics()
+    {
+        return this.metrics;
+    }
+
+    /**
+     * create the array for the values of a key. Subclasses may override this
+     * to return a typed array which lookup results can be cast to
+     * @param length the number of values
+     * @return the array
+     */
+    protected Object[] createValues(int length)
+    {
+        return new Object[length];
+    }
+
+    /**
+     * lookup the values of a key
+     * @assumes nothing
+     * @effects if the cache has not been initialized then the query will be
+     * executed and the cache will be loaded
+     * @param key the key
+     * @return the values in query order or null if the key is not cached
+     * @throws DBException thrown if there is an error accessing the database
+     * @throws CacheException thrown if there is an error accessing the cache
+     */
+    protected Object[] lookupValues(int key)
+    throws DBException, CacheException
+    {
+        if (!this.initialized)
+            initCache();
+        Object[] found = find(key);
+        this.metrics.recordLookup(found != null);
+        return found;
+    }
+
+    /**
+     * find the values of a key in the table
+     * @param key the key
+     * @return the values or null if the key is not in the table
+     */
+    private Object[] find(int key)
+    {
+        if (this.size == 0)
+            return null;
+        int mask = this.keys.length - 1;
+        for (int slot = hash(key) & mask; this.values[slot] != null;
+             slot = (slot + 1) & mask)
+        {
+            if (this.keys[slot] == key)
+                return this.values[slot];
+        }
+        return null;
+    }
+
+    /**
+     * estimate the memory retained by the table and the value arrays
+     * @return the estimated bytes
+     */
+    private long getRetainedBytes()
+    {
+        long bytes = LookupMetrics.sizeOfArray(this.keys.length, 4) +
+            LookupMetrics.sizeOfArray(this.values.length, 8);
+        for (int slot = 0; slot < this.values.length; slot++)
+        {
+            Object[] v = this.values[slot];
+            if (v == null)
+                continue;
+            bytes += LookupMetrics.sizeOfArray(v.length, 8);
+            for (int i = 0; i < v.length; i++)
+                bytes += sizeOfValue(v[i]);
+        }
+        return bytes;
+    }
+
+    /**
+     * get the number of keys in the cache
+     * @return the number of keys
+     */
+    public int getCacheSize()
+    {
+        return this.size;
+    }
+
+    /**
+     * run the full init query and load the cache
+     * @assumes nothing
+     * @effects the query will be executed and the cache replaced
+     * @throws DBException thrown if there is an error accessing the database
+     * @throws CacheException thrown if there is an error accessing the cache
+     */
+    public void initCache() throws DBException, CacheException
+    {
+        Stopwatch stopwatch = new Stopwatch();
+        stopwatch.start();
+        LookupSnapshot snapshot = null;
+        Content content = null;
+        boolean fromSnapshot = false;
+        if (this.snapshotDirectory != null && this instanceof SnapshotValues)
+        {
+            SnapshotValues snapshotValues = (SnapshotValues)this;
+            snapshot = new LookupSnapshot(this.snapshotDirectory,
+                this.metrics, this.sqlMgr,
+                snapshotValues.getSnapshotProbeQuery());
+            content = new Content(snapshotValues);
+            fromSnapshot = snapshot.read(content);
+        }
+        if (!fromSnapshot)
+        {
+            loadQuery();
+            if (snapshot != null)
+                snapshot.write(content);
+        }
+        this.initialized = true;
+        stopwatch.stop();
+        this.metrics.recordLoad(stopwatch.time(), this.size,
+                                getRetainedBytes(), fromSnapshot);
+    }
+
+    /**
+     * run the full init query and build the table
+     * @throws DBException thrown if there is an error accessing the database
+     */
+    private void loadQuery() throws DBException
+    {
+        int[] rowKeys = new int[1024];
+        Object[] rowValues = new Object[1024];
+        int rows = 0;
+
+        ResultsNavigator nav = this.sqlMgr.executeQuery(getFullInitQuery());
+        try
+        {
+            while (nav.next())
+            {
+                RowReference row = nav.getRowReference();
+                if (rows == rowKeys.length)
+                {
+                    int[] k = new int[rows * 2];
+                    System.arraycopy(rowKeys, 0, k, 0, rows);
+                    rowKeys = k;
+                    Object[] v = new Object[rows * 2];
+                    System.arraycopy(rowValues, 0, v, 0, rows);
+                    rowValues = v;
+                }
+                rowKeys[rows] = interpretKey(row);
+                rowValues[rows] = interpretValue(row);
+                rows++;
+            }
+        }
+        finally
+        {
+            nav.close();
+        }
+
+        // count the rows of each distinct key, then size the table once
+        // and fill the value arrays in row order
+        IntCounter counter = new IntCounter();
+        for (int i = 0; i < rows; i++)
+            counter.increment(rowKeys[i]);
+
+        int capacity = tableSize(counter.size);
+        int mask = capacity - 1;
+        int[] keys = new int[capacity];
+        Object[][] values = new Object[capacity][];
+        int[] filled = new int[capacity];
+        for (int i = 0; i < rows; i++)
+        {
+            int key = rowKeys[i];
+            int slot = hash(key) & mask;
+            while (values[slot] != null && keys[slot] != key)
+                slot = (slot + 1) & mask;
+            if (values[slot] == null)
+            {
+                keys[slot] = key;
+                values[slot] = createValues(counter.get(key));
+            }
+            values[slot][filled[slot]++] = rowValues[i];
+        }
+
+        this.keys = keys;
+        this.values = values;
+        this.size = counter.size;
+    }
+
+    /**
+     * spread the bits of a key over the table slots
+     * @param key the key
+     * @return the hash
+     */
+    private static int hash(int key)
+    {
+        int h = key * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * get the smallest power of two table size holding the given number of
+     * keys within the load factor
+     * @param count the number of keys
+     * @return the table size
+     */
+    private static int tableSize(int count)
+    {
+        int capacity = 2;
+        while (capacity * LOAD_FACTOR < count)
+            capacity <<= 1;
+        return capacity;
+    }
+
+    /**
+     * is the snapshot form of the cache
+     * @has the serialized form of the values
+     * @does writes the keys and values of the cache and replaces them with
+     * those read back
+     */
+    private class Content implements LookupSnapshot.Content
+    {
+        private SnapshotValues snapshotValues = null;
+
+        public Content(SnapshotValues snapshotValues)
+        {
+            this.snapshotValues = snapshotValues;
+        }
+
+        public void writeTo(DataOutputStream out) throws IOException
+        {
+            out.writeInt(size);
+            for (int slot = 0; slot < keys.length; slot++)
+            {
+                if (values[slot] == null)
+                    continue;
+                out.writeInt(keys[slot]);
+                out.writeInt(values[slot].length);
+                for (int i = 0; i < values[slot].length; i++)
+                    this.snapshotValues.writeValue(out, values[slot][i]);
+            }
+        }
+
+        public void readFrom(ByteBuffer in)
+        {
+            int count = in.getInt();
+            int capacity = tableSize(count);
+            int mask = capacity - 1;
+            int[] k = new int[capacity];
+            Object[][] v = new Object[capacity][];
+            for (int n = 0; n < count; n++)
+            {
+                int key = in.getInt();
+                int slot = hash(key) & mask;
+                while (v[slot] != null)
+                    slot = (slot + 1) & mask;
+                Object[] a = createValues(in.getInt());
+                for (int i = 0; i < a.length; i++)
+                    a[i] = this.snapshotValues.readValue(in);
+                k[slot] = key;
+                v[slot] = a;
+            }
+            keys = k;
+            values = v;
+            size = count;
+        }
+    }
+
+    /**
+     * is an open addressing table counting occurrences of int keys
+     * @has the keys and their counts
+     * @does counts keys, growing the table as needed
+     */
+    private static class IntCounter
+    {
+        private int[] keys = new int[16];
+        private int[] counts = new int[16];
+        private int size = 0;
+
+        public void increment(int key)
+        {
+            if (this.size + 1 > this.keys.length * LOAD_FACTOR)
+                rehash(this.keys.length * 2);
+            int slot = find(this.keys, this.counts, key);
+            if (this.counts[slot] == 0)
+            {
+                this.keys[slot] = key;
+                this.size++;
+            }
+            this.counts[slot]++;
+        }
+
+        public int get(int key)
+        {
+            return this.counts[find(this.keys, this.counts, key)];
+        }
+
+        private static int find(int[] keys, int[] counts, int key)
+        {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (counts[slot] != 0 && keys[slot] != key)
+                slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        private void rehash(int capacity)
+        {
+            int[] keys = new int[capacity];
+            int[] counts = new int[capacity];
+            for (int i = 0; i < this.keys.length; i++)
+            {
+                if (this.counts[i] != 0)
+                {
+                    int slot = find(keys, counts, this.keys[i]);
+                    keys[slot] = this.keys[i];
+                    counts[slot] = this.counts[i];
+                }
+            }
+            this.keys = keys;
+            this.counts = counts;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package org.jax.mgi.shr.cache;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.jax.mgi.shr.dbutils.DBException;
+import org.jax.mgi.shr.dbutils.ResultsNavigator;
+import org.jax.mgi.shr.dbutils.SQLDataManager;
+import org.jax.mgi.shr.timing.Stopwatch;
+
+/**
+ * is a fully cached set of strings for membership tests, the compact
+ * counterpart of the MappedStringToBoolean. The strings returned by the full
+ * init query are held in one sorted array and are fronted by a Bloom filter
+ * so that most strings which are not members are rejected without searching
+ * the array. Subclasses which provide a snapshot probe query can be loaded
+ * from a LookupSnapshot while the data behind them is unchanged.
+ * @has a sorted array of the member strings and the bits of a Bloom filter
+ * @does runs the full init query and tests strings for membership
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+abstract public class FullCachedStringSet implements LoadableCache
+{
+    // the number of Bloom filter bits per member, giving a false positive
+    // rate of about one percent with the number of hashes below
+    private static final int BITS_PER_MEMBER = 10;
+
+    // the number of bits set in the Bloom filter for each member
+    private static final int HASHES = 4;
+
+    private SQLDataManager sqlMgr = null;
+
+    // the members in ascending order
+    private String[] members = new String[0];
+
+    // the Bloom filter bits and the mask for a bit index
+    private long[] bits = new long[1];
+    private int mask = 63;
+
+    private boolean initialized = false;
+
+    // the directory holding snapshots of the set or null if snapshots are
+    // not used
+    private File snapshotDirectory = null;
+
+    // the load statistics and lookup counters of the set
+    private LookupMetrics metrics = null;
+
+    /**
+     * constructor
+     * @param sqlMgr the SQLDataManager the full init query is run through
+     */
+    public FullCachedStringSet(SQLDataManager sqlMgr)
+    {
+        this.sqlMgr = sqlMgr;
+        this.metrics = LookupMetricsRegistry.getShared().getMetrics(
+            LookupMetricsRegistry.getName(this));
+    }
+
+    /**
+     * get the query to fully initialize the cache. The first column of each
+     * row is a member of the set
+     * @return the query
+     */
+    abstract public String getFullInitQuery();
+
+    /**
+     * get the probe query whose results identify the data of the set for
+     * snapshots. By default there is none and the set is not snapshot
+     * @return the query returning two columns or null
+     */
+    public String getSnapshotProbeQuery()
+    {
+        return null;
+    }
+
+    /**
+     * set the directory holding snapshots of the set. When set, and the
+     * subclass provides a probe query, the set is read from the snapshot of
+     * the current data if there is one, otherwise the set is queried and a
+     * snapshot written
+     * @param snapshotDirectory the directory or null to not use snapshots
+     */
+    public void setSnapshotDirectory(File snapshotDirectory)
+    {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    /**
+     * determine whether a string is a member of the set
+     * @assumes nothing
+     * @effects if the cache has not been initialized then the query will be
+     * executed and the cache will be loaded
+     * @param s the string
+     * @return true if the string is a member
+     * @throws DBException thrown if there is an error accessing the database
+     * @throws CacheException thrown if there is an error accessing the cache
+     */
+    public boolean contains(String s) throws DBException, CacheException
+    {
+        if (!this.initialized)
+            initCache();
+        boolean found = isMember(s);
+        this.metrics.recordLookup(found);
+        return found;
+    }
+
+    /**
+     * get the load statistics and lookup counters of the set
+     * @return the LookupMetrics
+     */
+    public LookupMetrics getMetrics()
+    {
+        return this.metrics;
+    }
+
+    /**
+     * get the number of members in the set
+     * @return the number of members
+     */
+    public int getCacheSize()
+    {
+        return this.members.length;
+    }
+
+    /**
+     * run the full init query and load the set
+     * @assumes nothing
+     * @effects the query will be executed and the set replaced
+     * @throws DBException thrown if there is an error accessing the database
+     * @throws CacheException thrown if there is an error accessing the cache
+     */
+    public void initCache() throws DBException, CacheException
+    {
+        Stopwatch stopwatch = new Stopwatch();
+        stopwatch.start();
+        LookupSnapshot snapshot = null;
+        String probe = getSnapshotProbeQuery();
+        boolean fromSnapshot = false;
+        if (this.snapshotDirectory != null && probe != null)
+        {
+            snapshot = new LookupSnapshot(this.snapshotDirectory,
+                this.metrics, this.sqlMgr, probe);
+            fromSnapshot = snapshot.read(new Content());
+        }
+        if (!fromSnapshot)
+        {
+            loadQuery();
+            if (snapshot != null)
+                snapshot.write(new Content());
+        }
+        this.initialized = true;
+        stopwatch.stop();
+        this.metrics.recordLoad(stopwatch.time(), this.members.length,
+                                getRetainedBytes(), fromSnapshot);
+    }
+
+    /**
+     * determine whether a string is a member of the set, consulting the
+     * Bloom filter before the members
+     * @param s the string
+     * @return true if the string is a member
+     */
+    private boolean isMember(String s)
+    {
+        if (s == null)
+            return false;
+        int h1 = s.hashCode();
+        int h2 = secondHash(h1);
+        for (int i = 0; i < HASHES; i++)
+        {
+            int bit = (h1 + i * h2) & this.mask;
+            if ((this.bits[bit >>> 6] & (1L << bit)) == 0)
+                return false;
+        }
+        return Arrays.binarySearch(this.members, s) >= 0;
+    }
+
+    /**
+     * estimate the memory retained by the members and the Bloom filter
+     * @return the estimated bytes
+     */
+    private long getRetainedBytes()
+    {
+        long bytes = LookupMetrics.sizeOfArray(this.members.length, 8) +
+            LookupMetrics.sizeOfArray(this.bits.length, 8);
+        for (int i = 0; i < this.members.length; i++)
+            bytes += LookupMetrics.sizeOf(this.members[i]);
+        return bytes;
+    }
+
+    /**
+     * run the full init query and build the set
+     * @throws DBException thrown if there is an error accessing the database
+     */
+    private void loadQuery() throws DBException
+    {
+        String[] rows = new String[1024];
+        int count = 0;
+
+        ResultsNavigator nav = this.sqlMgr.executeQuery(getFullInitQuery());
+        try
+        {
+            while (nav.next())
+            {
+                String s = nav.getRowReference().getString(1);
+                if (s == null)
+                    continue;
+                if (count == rows.length)
+                {
+                    String[] r = new String[count * 2];
+                    System.arraycopy(rows, 0, r, 0, count);
+                    rows = r;
+                }
+                rows[count++] = s;
+            }
+        }
+        finally
+        {
+            nav.close();
+        }
+
+        Arrays.sort(rows, 0, count);
+        int n = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (n == 0 || !rows[i].equals(rows[n - 1]))
+                rows[n++] = rows[i];
+        }
+        String[] members = new String[n];
+        System.arraycopy(rows, 0, members, 0, n);
+
+        int size = 64;
+        while (size < n * BITS_PER_MEMBER)
+            size <<= 1;
+        long[] bits = new long[size >>> 6];
+        int mask = size - 1;
+        for (int i = 0; i < n; i++)
+        {
+            int h1 = members[i].hashCode();
+            int h2 = secondHash(h1);
+            for (int j = 0; j < HASHES; j++)
+            {
+                int bit = (h1 + j * h2) & mask;
+                bits[bit >>> 6] |= 1L << bit;
+            }
+        }
+
+        this.members = members;
+        this.bits = bits;
+        this.mask = mask;
+    }
+
+    /**
+     * derive the second hash of the double hashing used to choose the Bloom
+     * filter bits. It is odd so that the bits chosen are distinct
+     * @param h the string hash code
+     * @return the second hash
+     */
+    private static int secondHash(int h)
+    {
+        h *= 0x9e3779b9;
+        return (h ^ (h >>> 15)) | 1;
+    }
+
+    /**
+     * is the snapshot form of the set
+     * @has nothing
+     * @does writes the members and Bloom filter bits of the set and replaces
+     * them with those read back
+     */
+    private class Content implements LookupSnapshot.Content
+    {
+        public void writeTo(DataOutputStream out) throws IOException
+        {
+            out.writeInt(members.length);
+            for (int i = 0; i < members.length; i++)
+                LookupSnapshot.putString(out, members[i]);
+            out.writeInt(bits.length);
+            for (int i = 0; i < bits.length; i++)
+                out.writeLong(bits[i]);
+        }
+
+        public void readFrom(ByteBuffer in)
+        {
+            String[] m = new String[in.getInt()];
+            for (int i = 0; i < m.length; i++)
+                m[i] = LookupSnapshot.getString(in);
+            long[] b = new long[in.getInt()];
+            in.asLongBuffer().get(b);
+            in.position(in.position() + b.length * 8);
+            members = m;
+            bits = b;
+            mask = b.length * 64 - 1;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.jax.mgi.shr.cache;
+
+import org.jax.mgi.shr.dbutils.DBException;
+
+/**
+ * is an interface for in-memory structures which are fully loaded from the
+ * database in one step, such as the caches of FullCachedLookups or indexes
+ * built from a single query, so that they can be scheduled by the
+ * LookupInitializer
+ * @has nothing
+ * @does defines the loading of the structure and the size of its contents
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public interface LoadableCache
+{
+    /**
+     * load the contents of the structure from the database
+     * @throws DBException thrown if there is an error accessing the database
+     * @throws CacheException thrown if there is an error loading the cache
+     */
+    public void initCache() throws DBException, CacheException;
+
+    /**
+     * get the number of entries loaded
+     * @return the number of entries
+     */
+    public int getCacheSize();
+}
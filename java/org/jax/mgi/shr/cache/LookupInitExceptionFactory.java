@@ -0,0 +1,40 @@
+package org.jax.mgi.shr.cache;
+
+import org.jax.mgi.shr.dbutils.DBException;
+import org.jax.mgi.shr.exception.ExceptionFactory;
+
+/**
+ * An ExceptionFactory for errors raised while initializing lookups with the
+ * LookupInitializer.
+ * @has a hashmap of predefined DBExceptions stored by a name key
+ * @does looks up DBExceptions by name
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class LookupInitExceptionFactory extends ExceptionFactory {
+
+  /**
+   * the thread waiting for the lookups was interrupted
+   */
+  public static final String InterruptErr =
+      "org.jax.mgi.shr.cache.LookupInitInterruptErr";
+  static {
+    exceptionsMap.put(InterruptErr, new DBException(
+        "Interrupted while waiting for the following lookup to be " +
+        "initialized: ??", false));
+  }
+
+  /**
+   * a lookup failed with an unexpected error
+   */
+  public static final String UnexpectedErr =
+      "org.jax.mgi.shr.cache.LookupInitUnexpectedErr";
+  static {
+    exceptionsMap.put(UnexpectedErr, new DBException(
+        "Unexpected error while initializing the following lookup: ??",
+        false));
+  }
+
+
+}
@@ -0,0 +1,288 @@
+package org.jax.mgi.shr.cache;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jax.mgi.shr.dbutils.DBException;
+import org.jax.mgi.shr.dbutils.SQLDataManager;
+import org.jax.mgi.shr.log.Logger;
+import org.jax.mgi.shr.timing.Stopwatch;
+
+/**
+ * is a scheduler for initializing the caches of several independent
+ * CachedLookups or other LoadableCaches concurrently so that the time
+ * taken is bounded by the slowest lookup rather than the sum of all of
+ * them. Each lookup should be created with its own SQLDataManager so that
+ * the queries run on separate connections; these SQLDataManagers may be
+ * given to the scheduler to be closed once their lookup is loaded.
+ * @has the lookups to initialize and the maximum number of lookups which
+ * are initialized at the same time
+ * @does initializes the lookups and logs the time taken by each
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class LookupInitializer
+{
+    private int maxConcurrent = 1;
+    private ArrayList tasks = new ArrayList();
+
+    /**
+     * constructor
+     * @param maxConcurrent the maximum number of lookups initialized at the
+     * same time, 1 initializes the lookups one after another on the calling
+     * thread
+     */
+    public LookupInitializer(int maxConcurrent)
+    {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+    }
+
+    /**
+     * get the maximum number of lookups initialized at the same time
+     * @return the maximum number of lookups
+     */
+    public int getMaxConcurrent()
+    {
+        return this.maxConcurrent;
+    }
+
+    /**
+     * add a lookup to be initialized
+     * @param name the name of the lookup used when logging
+     * @param lookup the lookup
+     * @param sqlMgr the SQLDataManager created for the lookup which is to
+     * be closed once the lookup is loaded or null if there is none
+     */
+    public void add(String name, CachedLookup lookup, SQLDataManager sqlMgr)
+    {
+        this.tasks.add(new Task(name, new LookupCache(lookup), sqlMgr));
+    }
+
+    /**
+     * add a LoadableCache to be initialized
+     * @param name the name of the cache used when logging
+     * @param cache the cache
+     * @param sqlMgr the SQLDataManager created for the cache which is to
+     * be closed once the cache is loaded or null if there is none
+     */
+    public void add(String name, LoadableCache cache, SQLDataManager sqlMgr)
+    {
+        this.tasks.add(new Task(name, cache, sqlMgr));
+    }
+
+    /**
+     * initialize the caches of all lookups added
+     * @assumes nothing
+     * @effects the caches of the lookups will be loaded
+     * @param logger the logger for the timings of each lookup
+     * @throws DBException thrown if there is an error accessing the database
+     * @throws CacheException thrown if there is an error loading a cache
+     */
+    public void initAll(Logger logger) throws DBException, CacheException
+    {
+        Stopwatch stopwatch = new Stopwatch();
+        stopwatch.start();
+        int threads = Math.min(this.maxConcurrent, this.tasks.size());
+        if (threads <= 1)
+        {
+            for (int i = 0; i < this.tasks.size(); i++)
+                ((Task)this.tasks.get(i)).call();
+        }
+        else
+            initConcurrently(threads);
+        stopwatch.stop();
+
+        for (int i = 0; i < this.tasks.size(); i++)
+            logger.logInfo(((Task)this.tasks.get(i)).getSummary());
+        logger.logInfo("initialized " + this.tasks.size() + " lookups with " +
+            Math.max(threads, 1) + " threads in " + stopwatch.time() +
+            " seconds");
+        this.tasks.clear();
+    }
+
+    /**
+     * initialize the lookups on a pool of threads, waiting for all of them
+     * to finish before reporting the first error
+     * @param threads the number of threads
+     * @throws DBException thrown if there is an error accessing the database
+     * @throws CacheException thrown if there is an error loading a cache
+     */
+    private void initConcurrently(int threads)
+    throws DBException, CacheException
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try
+        {
+            Future[] futures = new Future[this.tasks.size()];
+            for (int i = 0; i < futures.length; i++)
+                futures[i] = pool.submit((Task)this.tasks.get(i));
+
+            Throwable first = null;
+            String firstName = null;
+            for (int i = 0; i < futures.length; i++)
+            {
+                String name = ((Task)this.tasks.get(i)).getName();
+                try
+                {
+                    futures[i].get();
+                }
+                catch (ExecutionException e)
+                {
+                    if (first == null)
+                    {
+                        first = e.getCause();
+                        firstName = name;
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    if (first == null)
+                        throw getException(
+                            LookupInitExceptionFactory.InterruptErr, name, e);
+                    break;
+                }
+            }
+            if (first != null)
+                rethrow(first, firstName);
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * rethrow the error of a lookup on the calling thread
+     * @param t the error
+     * @param name the name of the lookup
+     * @throws DBException thrown if the error is a DBException or was not
+     * expected
+     * @throws CacheException thrown if the error is a CacheException
+     */
+    private void rethrow(Throwable t, String name)
+    throws DBException, CacheException
+    {
+        if (t instanceof DBException)
+            throw (DBException)t;
+        if (t instanceof CacheException)
+            throw (CacheException)t;
+        if (t instanceof Error)
+            throw (Error)t;
+        throw getException(LookupInitExceptionFactory.UnexpectedErr, name,
+                           (Exception)t);
+    }
+
+    /**
+     * create a DBException for the given error
+     * @param errName the name of the exception in the
+     * LookupInitExceptionFactory
+     * @param name the name of the lookup
+     * @param e the exception which caused the error
+     * @return the DBException
+     */
+    private DBException getException(String errName, String name, Exception e)
+    {
+        LookupInitExceptionFactory eFactory = new LookupInitExceptionFactory();
+        DBException e2 = (DBException)eFactory.getException(errName, e);
+        e2.bind(name);
+        return e2;
+    }
+
+    /**
+     * is the initialization of one lookup
+     * @has the lookup, its name and its SQLDataManager
+     * @does loads the cache of the lookup and records the time taken
+     */
+    private static class Task implements java.util.concurrent.Callable
+    {
+        private String name = null;
+        private LoadableCache lookup = null;
+        private SQLDataManager sqlMgr = null;
+        private double seconds = 0;
+
+        public Task(String name, LoadableCache lookup, SQLDataManager sqlMgr)
+        {
+            this.name = name;
+            this.lookup = lookup;
+            this.sqlMgr = sqlMgr;
+        }
+
+        public Object call() throws DBException, CacheException
+        {
+            Stopwatch stopwatch = new Stopwatch();
+            stopwatch.start();
+            boolean loaded = false;
+            try
+            {
+                this.lookup.initCache();
+                loaded = true;
+            }
+            finally
+            {
+                stopwatch.stop();
+                this.seconds = stopwatch.time();
+                if (!loaded)
+                    release();
+            }
+            if (this.sqlMgr != null)
+                this.sqlMgr.closeResources();
+            return null;
+        }
+
+        /**
+         * release the connection of a lookup which failed to load, ignoring
+         * further errors so they do not mask the original error
+         */
+        private void release()
+        {
+            try
+            {
+                if (this.sqlMgr != null)
+                    this.sqlMgr.closeResources();
+            }
+            catch (DBException e) {}
+        }
+
+        public String getName()
+        {
+            return this.name;
+        }
+
+        public String getSummary()
+        {
+            return this.name + " initialized with " +
+                this.lookup.getCacheSize() + " entries in " + this.seconds +
+                " seconds";
+        }
+    }
+
+    /**
+     * is a LoadableCache view of a CachedLookup
+     * @has the CachedLookup
+     * @does initializes the CachedLookup and reports its size
+     */
+    private static class LookupCache implements LoadableCache
+    {
+        private CachedLookup lookup = null;
+
+        public LookupCache(CachedLookup lookup)
+        {
+            this.lookup = lookup;
+        }
+
+        public void initCache() throws DBException, CacheException
+        {
+            this.lookup.initCache();
+        }
+
+        public int getCacheSize()
+        {
+            return this.lookup.getCacheSize();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.jax.mgi.shr.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * is the record of the load and use of one lookup: how long its cache took
+ * to load, how many entries it holds, an estimate of the memory the cache
+ * retains and how often it was consulted. Estimates assume 16 byte object
+ * headers and 8 byte references and count only the objects owned by the
+ * cache, not shared objects such as pooled SequenceAccessions.
+ * @has the name of the lookup, its load statistics and lookup counters
+ * @does records loads and lookups and summarizes them
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class LookupMetrics
+{
+    private static final int HEADER = 16;
+    private static final int REFERENCE = 8;
+
+    private String name = null;
+
+    private volatile double loadSeconds = 0;
+    private volatile int entries = 0;
+    private volatile long retainedBytes = 0;
+    private volatile boolean fromSnapshot = false;
+
+    // the reason the snapshot of the lookup could not be used or null
+    private volatile String snapshotFailure = null;
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+
+    /**
+     * constructor
+     * @param name the name of the lookup
+     */
+    public LookupMetrics(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * get the name of the lookup
+     * @return the name
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * record the load of the cache
+     * @param seconds the time taken
+     * @param entries the number of entries loaded
+     * @param retainedBytes the estimated memory retained by the cache
+     * @param fromSnapshot true if the cache was read from a snapshot rather
+     * than queried
+     */
+    public void recordLoad(double seconds, int entries, long retainedBytes,
+                           boolean fromSnapshot)
+    {
+        this.loadSeconds = seconds;
+        this.entries = entries;
+        this.retainedBytes = retainedBytes;
+        this.fromSnapshot = fromSnapshot;
+    }
+
+    /**
+     * record that the snapshot of the lookup could not be read or written
+     * @param message the reason
+     */
+    public void recordSnapshotFailure(String message)
+    {
+        this.snapshotFailure = message;
+    }
+
+    /**
+     * record a lookup
+     * @param hit true if the key was found
+     */
+    public void recordLookup(boolean hit)
+    {
+        if (hit)
+            this.hits.incrementAndGet();
+        else
+            this.misses.incrementAndGet();
+    }
+
+    /**
+     * get the time taken to load the cache
+     * @return the seconds
+     */
+    public double getLoadSeconds()
+    {
+        return this.loadSeconds;
+    }
+
+    /**
+     * get the number of entries loaded
+     * @return the number of entries
+     */
+    public int getEntries()
+    {
+        return this.entries;
+    }
+
+    /**
+     * get the estimated memory retained by the cache
+     * @return the estimated bytes
+     */
+    public long getRetainedBytes()
+    {
+        return this.retainedBytes;
+    }
+
+    /**
+     * get the number of lookups which found their key
+     * @return the number of hits
+     */
+    public long getHits()
+    {
+        return this.hits.get();
+    }
+
+    /**
+     * get the number of lookups which did not find their key
+     * @return the number of misses
+     */
+    public long getMisses()
+    {
+        return this.misses.get();
+    }
+
+    /**
+     * get a one line summary of the metrics
+     * @return the summary
+     */
+    public String toString()
+    {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return this.name + ": loaded " + this.entries + " entries in " +
+            this.loadSeconds + " seconds" +
+            (this.fromSnapshot ? " from snapshot" : "") +
+            ", ~" + (this.retainedBytes / 1024) + " KB retained, " +
+            lookups + " lookups, " + hits + " hits, " + getMisses() +
+            " misses" + (lookups == 0 ? "" :
+                         " (" + (hits * 100 / lookups) + "% hit rate)") +
+            (this.snapshotFailure == null ? "" :
+             ", snapshot not used: " + this.snapshotFailure);
+    }
+
+    /**
+     * estimate the memory retained by a string
+     * @param s the string or null
+     * @return the estimated bytes
+     */
+    public static long sizeOf(String s)
+    {
+        if (s == null)
+            return 0;
+        // the String object and its character array
+        return align(HEADER + REFERENCE + 8) + sizeOfArray(s.length(), 2);
+    }
+
+    /**
+     * estimate the memory retained by an array, not counting the objects
+     * its elements refer to
+     * @param length the length of the array
+     * @param elementBytes the size of an element, 8 for references
+     * @return the estimated bytes
+     */
+    public static long sizeOfArray(int length, int elementBytes)
+    {
+        return align(HEADER + (long)length * elementBytes);
+    }
+
+    /**
+     * estimate the memory retained by a HashMap, not counting its keys and
+     * values
+     * @param entries the number of entries
+     * @return the estimated bytes
+     */
+    public static long sizeOfMap(int entries)
+    {
+        int buckets = 16;
+        while (buckets * 0.75 < entries)
+            buckets <<= 1;
+        return align(HEADER + 40) + sizeOfArray(buckets, REFERENCE) +
+            (long)entries * align(HEADER + 3 * REFERENCE + 4);
+    }
+
+    /**
+     * round a size up to the 8 byte object alignment
+     * @param bytes the size
+     * @return the aligned size
+     */
+    private static long align(long bytes)
+    {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -0,0 +1,77 @@
+package org.jax.mgi.shr.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.jax.mgi.shr.log.Logger;
+
+/**
+ * is the registry of the LookupMetrics of all lookups in the process, in
+ * the order the lookups were created, so that they can be reported at the
+ * end of a run
+ * @has the LookupMetrics by lookup name
+ * @does provides the LookupMetrics of a lookup and logs all of them
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class LookupMetricsRegistry
+{
+    private static LookupMetricsRegistry shared = new LookupMetricsRegistry();
+
+    private LinkedHashMap metrics = new LinkedHashMap();
+
+    /**
+     * get the registry shared by the process
+     * @return the shared registry
+     */
+    public static LookupMetricsRegistry getShared()
+    {
+        return shared;
+    }
+
+    /**
+     * get the LookupMetrics of a lookup, creating them if the lookup has
+     * not been registered. Lookups of the same name share their metrics
+     * @param name the name of the lookup
+     * @return the LookupMetrics
+     */
+    public synchronized LookupMetrics getMetrics(String name)
+    {
+        LookupMetrics m = (LookupMetrics)this.metrics.get(name);
+        if (m == null)
+        {
+            m = new LookupMetrics(name);
+            this.metrics.put(name, m);
+        }
+        return m;
+    }
+
+    /**
+     * get the name of a lookup from its class
+     * @param lookup the lookup
+     * @return the class name without the package
+     */
+    public static String getName(Object lookup)
+    {
+        String name = lookup.getClass().getName();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * log the metrics of all lookups and their total retained memory
+     * @param logger the logger
+     */
+    public synchronized void dump(Logger logger)
+    {
+        long bytes = 0;
+        for (Iterator i = this.metrics.values().iterator(); i.hasNext();)
+        {
+            LookupMetrics m = (LookupMetrics)i.next();
+            logger.logInfo(m.toString());
+            bytes += m.getRetainedBytes();
+        }
+        logger.logInfo(this.metrics.size() + " lookups retain ~" +
+                       (bytes / 1024) + " KB");
+    }
+}
@@ -0,0 +1,361 @@
+package org.jax.mgi.shr.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import org.jax.mgi.shr.dbutils.DBException;
+import org.jax.mgi.shr.dbutils.ResultsNavigator;
+import org.jax.mgi.shr.dbutils.RowReference;
+import org.jax.mgi.shr.dbutils.SQLDataManager;
+
+/**
+ * is a versioned local file holding the contents of a fully cached lookup
+ * so that the lookup can be loaded without querying the database when the
+ * data behind it has not changed. The data is identified by a key computed
+ * from a cheap probe query, typically the row count and maximum
+ * modification date of the tables the lookup reads, and the key is part of
+ * the file name. A lookup serializes its own contents into the body of the
+ * file through the Content interface, and the file is memory mapped when
+ * read. Snapshots are only a shortcut, so a snapshot which cannot be read
+ * is deleted and one which cannot be written is skipped, the lookup being
+ * queried as usual. Either failure is recorded in the LookupMetrics of the
+ * lookup so it is logged with them.
+ * @has the snapshot file, the key of the current data and the metrics of
+ * the lookup
+ * @does computes the key of the current data, reads and writes the file
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class LookupSnapshot
+{
+    private static final int MAGIC = 0x4c4b5350;
+    private static final int VERSION = 1;
+
+    private static final String SUFFIX = ".lookup";
+    private static final String ENCODING = "UTF-8";
+
+    // the name of the lookup which prefixes the names of its snapshots
+    private String name = null;
+    private String key = null;
+    private LookupMetrics metrics = null;
+    private File file = null;
+
+    /**
+     * constructor which runs the probe query to compute the key of the
+     * current data
+     * @assumes nothing
+     * @effects the probe query will be executed
+     * @param directory the directory holding the snapshots
+     * @param metrics the metrics of the lookup, whose name prefixes the
+     * names of its snapshots
+     * @param sqlMgr the SQLDataManager the probe query is run through
+     * @param probeQuery a query returning two columns whose values change
+     * whenever the data of the lookup changes
+     * @throws DBException thrown if there is an error accessing the database
+     */
+    public LookupSnapshot(File directory, LookupMetrics metrics,
+                          SQLDataManager sqlMgr, String probeQuery)
+    throws DBException
+    {
+        this.name = metrics.getName();
+        this.metrics = metrics;
+        this.key = getKey(sqlMgr, probeQuery);
+        this.file = new File(directory, this.name + "." + this.key + SUFFIX);
+    }
+
+    /**
+     * get the snapshot file
+     * @return the file
+     */
+    public File getFile()
+    {
+        return this.file;
+    }
+
+    /**
+     * read the snapshot of the current data into a lookup. A snapshot which
+     * cannot be read or is not in the expected format is deleted and the
+     * failure recorded in the metrics of the lookup
+     * @assumes nothing
+     * @effects the file will be memory mapped and the contents of the
+     * lookup replaced
+     * @param content the contents of the lookup
+     * @return true if the snapshot was read, false if there is no usable
+     * snapshot of the current data, in which case the lookup must be loaded
+     * from its query, replacing any contents partly read
+     */
+    public boolean read(Content content)
+    {
+        if (!this.file.exists())
+            return false;
+        try
+        {
+            readFile(content);
+            return true;
+        }
+        catch (DBException e)
+        {
+            this.metrics.recordSnapshotFailure(e.getMessage());
+            this.file.delete();
+            return false;
+        }
+    }
+
+    /**
+     * write the snapshot of the current data from a lookup. The file is
+     * written under a temporary name and renamed when complete so that an
+     * incomplete snapshot is never read. A snapshot which cannot be written
+     * is skipped and the failure recorded in the metrics of the lookup
+     * @assumes nothing
+     * @effects the snapshot file will be written and the snapshots of other
+     * data for the same lookup removed
+     * @param content the contents of the lookup
+     */
+    public void write(Content content)
+    {
+        File tmp = new File(this.file.getPath() + ".tmp");
+        try
+        {
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)));
+            try
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                putString(out, this.key);
+                content.writeTo(out);
+            }
+            finally
+            {
+                out.close();
+            }
+            if (!tmp.renameTo(this.file))
+                throw new IOException("could not rename " + tmp);
+        }
+        catch (IOException e)
+        {
+            tmp.delete();
+            this.metrics.recordSnapshotFailure(getException(
+                LookupSnapshotExceptionFactory.WriteErr, e).getMessage());
+            return;
+        }
+        removeOtherSnapshots();
+    }
+
+    /**
+     * map the snapshot file and read it into a lookup
+     * @param content the contents of the lookup
+     * @throws DBException thrown if the file could not be read or is not in
+     * the expected format
+     */
+    private void readFile(Content content) throws DBException
+    {
+        ByteBuffer buffer = null;
+        try
+        {
+            FileInputStream in = new FileInputStream(this.file);
+            try
+            {
+                FileChannel channel = in.getChannel();
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                     channel.size());
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            throw getException(LookupSnapshotExceptionFactory.ReadErr, e);
+        }
+        try
+        {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION ||
+                !this.key.equals(getString(buffer)))
+                throw getException(LookupSnapshotExceptionFactory.FormatErr,
+                                   null);
+            content.readFrom(buffer);
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw getException(LookupSnapshotExceptionFactory.FormatErr, e);
+        }
+        catch (IndexOutOfBoundsException e)
+        {
+            throw getException(LookupSnapshotExceptionFactory.FormatErr, e);
+        }
+        catch (NegativeArraySizeException e)
+        {
+            // a corrupt length read as the size of an array
+            throw getException(LookupSnapshotExceptionFactory.FormatErr, e);
+        }
+        catch (IllegalArgumentException e)
+        {
+            // a corrupt length or position passed to the buffer
+            throw getException(LookupSnapshotExceptionFactory.FormatErr, e);
+        }
+    }
+
+    /**
+     * write a string as a length and its UTF-8 bytes
+     * @param out the output
+     * @param s the string or null
+     * @throws IOException thrown if the string could not be written
+     */
+    public static void putString(DataOutputStream out, String s)
+    throws IOException
+    {
+        if (s == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = getBytes(s);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * read a string written by putString()
+     * @param in the input
+     * @return the string or null
+     */
+    public static String getString(ByteBuffer in)
+    {
+        int length = in.getInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        try
+        {
+            return new String(bytes, ENCODING);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            // every Java platform supports UTF-8
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    /**
+     * calculate the key of the current data
+     * @param sqlMgr the SQLDataManager the probe query is run through
+     * @param probeQuery the probe query
+     * @return the key
+     * @throws DBException thrown if there is an error accessing the database
+     */
+    private static String getKey(SQLDataManager sqlMgr, String probeQuery)
+    throws DBException
+    {
+        CRC32 crc = new CRC32();
+        crc.update(VERSION);
+        crc.update(getBytes(probeQuery));
+        ResultsNavigator nav = sqlMgr.executeQuery(probeQuery);
+        try
+        {
+            while (nav.next())
+            {
+                RowReference row = nav.getRowReference();
+                crc.update(getBytes(row.getString(1) + "|" +
+                                    row.getString(2)));
+            }
+        }
+        finally
+        {
+            nav.close();
+        }
+        return Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * remove the snapshots of other data for this lookup from the directory
+     */
+    private void removeOtherSnapshots()
+    {
+        File[] files = this.file.getAbsoluteFile().getParentFile().listFiles();
+        if (files == null)
+            return;
+        String prefix = this.name + ".";
+        for (int i = 0; i < files.length; i++)
+        {
+            String fileName = files[i].getName();
+            if (fileName.startsWith(prefix) && fileName.endsWith(SUFFIX) &&
+                fileName.indexOf('.', prefix.length()) ==
+                    fileName.length() - SUFFIX.length() &&
+                !fileName.equals(this.file.getName()))
+                files[i].delete();
+        }
+    }
+
+    /**
+     * create a DBException for the given error
+     * @param name the name of the exception in the
+     * LookupSnapshotExceptionFactory
+     * @param e the exception which caused the error or null
+     * @return the DBException
+     */
+    private DBException getException(String name, Exception e)
+    {
+        LookupSnapshotExceptionFactory eFactory =
+            new LookupSnapshotExceptionFactory();
+        DBException e2 = null;
+        if (e == null)
+            e2 = (DBException)eFactory.getException(name);
+        else
+            e2 = (DBException)eFactory.getException(name, e);
+        e2.bind(this.file.getPath());
+        return e2;
+    }
+
+    /**
+     * encode a string as UTF-8
+     * @param s the string
+     * @return the encoded bytes
+     */
+    private static byte[] getBytes(String s)
+    {
+        try
+        {
+            return s.getBytes(ENCODING);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            // every Java platform supports UTF-8
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    /**
+     * is the serialized form of the contents of a lookup
+     * @has nothing
+     * @does writes the contents of a lookup and replaces them with the
+     * contents read back
+     */
+    public interface Content
+    {
+        /**
+         * write the contents of the lookup
+         * @param out the output
+         * @throws IOException thrown if the contents could not be written
+         */
+        public void writeTo(DataOutputStream out) throws IOException;
+
+        /**
+         * replace the contents of the lookup with those written by writeTo()
+         * @param in the input positioned at the start of the contents
+         */
+        public void readFrom(ByteBuffer in);
+    }
+}
@@ -0,0 +1,48 @@
+package org.jax.mgi.shr.cache;
+
+import org.jax.mgi.shr.dbutils.DBException;
+import org.jax.mgi.shr.exception.ExceptionFactory;
+
+/**
+ * An ExceptionFactory for errors reading and writing lookup snapshot files.
+ * @has a hashmap of predefined DBExceptions stored by a name key
+ * @does looks up DBExceptions by name
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class LookupSnapshotExceptionFactory extends ExceptionFactory {
+
+  /**
+   * the snapshot file could not be read
+   */
+  public static final String ReadErr =
+      "org.jax.mgi.shr.cache.LookupSnapshotReadErr";
+  static {
+    exceptionsMap.put(ReadErr, new DBException(
+        "Could not read the lookup snapshot file ??", false));
+  }
+
+  /**
+   * the snapshot file could not be written
+   */
+  public static final String WriteErr =
+      "org.jax.mgi.shr.cache.LookupSnapshotWriteErr";
+  static {
+    exceptionsMap.put(WriteErr, new DBException(
+        "Could not write the lookup snapshot file ??", false));
+  }
+
+  /**
+   * the snapshot file is not in the expected format
+   */
+  public static final String FormatErr =
+      "org.jax.mgi.shr.cache.LookupSnapshotFormatErr";
+  static {
+    exceptionsMap.put(FormatErr, new DBException(
+        "The lookup snapshot file ?? is not in the expected format",
+        false));
+  }
+
+
+}
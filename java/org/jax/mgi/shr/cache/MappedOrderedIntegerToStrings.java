@@ -1,74 +1,60 @@
 package org.jax.mgi.shr.cache;
 
-import java.util.Vector;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.io.File;
-
-import org.jax.mgi.shr.cache.FullCachedLookup;
+import org.jax.mgi.shr.cache.FullCachedIntLookup;
 import org.jax.mgi.shr.cache.CacheException;
-import org.jax.mgi.shr.cache.CacheConstants;
-import org.jax.mgi.shr.cache.KeyValue;
 import org.jax.mgi.shr.dbutils.SQLDataManager;
-import org.jax.mgi.shr.dbutils.SQLDataManagerFactory;
-import org.jax.mgi.shr.dbutils.BatchProcessor;
 import org.jax.mgi.shr.dbutils.DBException;
-import org.jax.mgi.shr.dbutils.RowDataInterpreter;
-import org.jax.mgi.shr.dbutils.MultiRowInterpreter;
 import org.jax.mgi.shr.dbutils.RowReference;
-import org.jax.mgi.shr.dbutils.DBException;
 import org.jax.mgi.shr.config.ConfigException;
-import org.jax.mgi.shr.exception.MGIException;
-import org.jax.mgi.dbs.SchemaConstants;
 
 
 
-abstract public class MappedOrderedIntegerToStrings extends FullCachedLookup
+abstract public class MappedOrderedIntegerToStrings extends FullCachedIntLookup
 {
-  private SQLDataManager sqlMgr = null;
+  private static final String[] NONE = new String[0];
 
 
     public MappedOrderedIntegerToStrings(SQLDataManager sqlMgr)
        throws CacheException, ConfigException, DBException
     {
         super(sqlMgr);
-        this.sqlMgr = sqlMgr;
     }
 
     public String[] lookup(Integer key)
     throws DBException, CacheException
     {
-        Vector v = (Vector)super.lookupNullsOk(key);
-        if (v == null)
-            return new String[0];
+        return lookup(key.intValue());
+    }
+
+    public String[] lookup(int key)
+    throws DBException, CacheException
+    {
+        String[] s = (String[])super.lookupValues(key);
+        if (s == null)
+            return NONE;
         else
-            return (String[])v.toArray(new String[0]);
+            // callers may change the array, so the cached one is not shared
+            return (String[])s.clone();
 
     }
 
     abstract public String getFullInitQuery();
 
 
-    public RowDataInterpreter getRowDataInterpreter() {
-      class Interpreter
-          implements MultiRowInterpreter {
-
-        private Integer key = null;
+    protected int interpretKey(RowReference row) throws DBException {
+        return row.getInt(1).intValue();
+    }
 
-        public Object interpret(RowReference row) throws DBException {
-          this.key = row.getInt(1);
-          return row.getString(2);
-        }
+    protected Object interpretValue(RowReference row) throws DBException {
+        return row.getString(2);
+    }
 
-        public Object interpretKey(RowReference row) throws DBException {
-          return row.getString(1);
-        }
+    protected Object[] createValues(int length) {
+        return new String[length];
+    }
 
-        public Object interpretRows(Vector v) {
-          return new KeyValue(this.key, v);
-        }
-      }
-      return new Interpreter();
+    protected long sizeOfValue(Object value) {
+        return LookupMetrics.sizeOf((String)value);
     }
 
 }
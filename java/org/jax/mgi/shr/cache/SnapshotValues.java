@@ -0,0 +1,41 @@
+package org.jax.mgi.shr.cache;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * is an interface implemented by a FullCachedIntLookup which can be loaded
+ * from a LookupSnapshot. The lookup provides the probe query identifying
+ * its data and the serialized form of its values, so a lookup either
+ * supports snapshots completely or not at all.
+ * @has nothing
+ * @does identifies the data of a lookup and writes and reads its values
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public interface SnapshotValues
+{
+    /**
+     * get the probe query whose results identify the data of the cache
+     * @return the query returning two columns
+     */
+    public String getSnapshotProbeQuery();
+
+    /**
+     * write a value to a snapshot
+     * @param out the output
+     * @param value the value
+     * @throws IOException thrown if the value could not be written
+     */
+    public void writeValue(DataOutputStream out, Object value)
+    throws IOException;
+
+    /**
+     * read a value written by writeValue()
+     * @param in the input
+     * @return the value
+     */
+    public Object readValue(ByteBuffer in);
+}
@@ -69,6 +69,190 @@ public class EntrezGeneCfg extends Configurator {
       return getConfigString("SQLDIR", DEFAULT_SQLDIR);
   }
 
+  /**
+   * get the number of rows fetched at a time when streaming the Entrez Gene
+   * query results from RADAR and the MGI marker query results from MGD
+   * through a server side cursor. A value of 0
+   * runs the query without a cursor, in which case the JDBC driver may
+   * buffer the whole result set.
+   * The parameter name read from the configuration file or system properties
+   * is EGLOAD_FETCH_SIZE. The default value is 0.
+   * @return the fetch size
+   * @throws ConfigException thrown if there is an error accessing the
+   * configuration
+   */
+  public Integer getFetchSize() throws ConfigException
+  {
+      return getConfigInteger("EGLOAD_FETCH_SIZE", new Integer(0));
+  }
+
+  /**
+   * get whether or not the Entrez Gene data is fetched from RADAR as three
+   * normalized streams (gene info, MGI ids and accession ids) which are
+   * merged on geneID rather than through a single denormalized query.
+   * The parameter name read from the configuration file or system properties
+   * is EGLOAD_NORMALIZED_FETCH. The default value is false.
+   * @return true if the normalized streams are used, false otherwise
+   * @throws ConfigException thrown if there is an error accessing the
+   * configuration
+   */
+  public Boolean getOkToNormalizeFetch() throws ConfigException
+  {
+      return getConfigBoolean("EGLOAD_NORMALIZED_FETCH", new Boolean(false));
+  }
+
+  /**
+   * get the number of geneID ranges the Entrez Gene data is partitioned
+   * into. Each range is queried on its own connection to RADAR and
+   * interpreted on its own thread. A value of 1 does not partition the data.
+   * The parameter name read from the configuration file or system properties
+   * is EGLOAD_PARTITIONS. The default value is 1.
+   * @return the number of partitions
+   * @throws ConfigException thrown if there is an error accessing the
+   * configuration
+   */
+  public Integer getPartitions() throws ConfigException
+  {
+      return getConfigInteger("EGLOAD_PARTITIONS", new Integer(1));
+  }
+
+  /**
+   * get the directory holding local snapshots of the Entrez Gene data read
+   * from RADAR. Later runs against unchanged RADAR data read the snapshot
+   * instead of querying RADAR. An empty value does not use snapshots.
+   * The parameter name read from the configuration file or system properties
+   * is EGLOAD_SNAPSHOT_DIR. The default value is empty.
+   * @return the name of the snapshot directory or an empty string
+   * @throws ConfigException thrown if there is an error accessing the
+   * configuration
+   */
+  public String getSnapshotDirectory() throws ConfigException
+  {
+      return getConfigString("EGLOAD_SNAPSHOT_DIR", "");
+  }
+
+  /**
+   * get whether or not the MGI markers are merge joined with their sequence
+   * associations as both are read in marker key order rather than looking
+   * the associations up in a fully cached lookup.
+   * The parameter name read from the configuration file or system properties
+   * is EGLOAD_MARKER_MERGE_JOIN. The default value is false.
+   * @return true if the markers are merge joined, false otherwise
+   * @throws ConfigException thrown if there is an error accessing the
+   * configuration
+   */
+  public Boolean getOkToMergeJoinMarkers() throws ConfigException
+  {
+      return getConfigBoolean("EGLOAD_MARKER_MERGE_JOIN", new Boolean(false));
+  }
+
+  /**
+   * get the number of MGD lookups whose caches are loaded at the same time.
+   * Each lookup loaded concurrently queries MGD on its own connection.
+   * A value of 1 loads the lookups one after another.
+   * The parameter name read from the configuration file or system properties
+   * is EGLOAD_LOOKUP_THREADS. The default value is 1.
+   * @return the number of lookups loaded at the same time
+   * @throws ConfigException thrown if there is an error accessing the
+   * configuration
+   */
+  public Integer getLookupThreads() throws ConfigException
+  {
+      return getConfigInteger("EGLOAD_LOOKUP_THREADS", new Integer(1));
+  }
+
+  /**
+   * get the directory holding local snapshots of the MGD lookups. A lookup
+   * is read from its snapshot when the row count and latest modification
+   * date of the data behind it are unchanged since the snapshot was written.
+   * The parameter name read from the configuration file or system properties
+   * is EGLOAD_LOOKUP_SNAPSHOT_DIR. The default value is the empty string
+   * which does not use snapshots.
+   * @return the directory or the empty string
+   * @throws ConfigException thrown if there is an error accessing the
+   * configuration
+   */
+  public String getLookupSnapshotDirectory() throws ConfigException
+  {
+      return getConfigString("EGLOAD_LOOKUP_SNAPSHOT_DIR", "");
+  }
+
+  /**
+   * get the number of threads the bucketizer processes the bucket items on.
+   * The output of the bucket items is written in the order they are
+   * bucketized regardless of the number of threads.
+   * A value of 1 processes the bucket items on the thread running the
+   * bucketizer. When the bucketizer partitions by chromosome this is also
+   * the number of threads the partitions are clustered on. The number of
+   * Bucketizables holding each sequence is looked up on the thread running
+   * the bucketizer before a bucket item is handed to a worker thread, so
+   * this applies to either bucketizer.
+   * The parameter name read from the configuration file or system properties
+   * is EGLOAD_BUCKET_THREADS. The default value is 1.
+   * @return the number of threads
+   * @throws ConfigException thrown if there is an error accessing the
+   * configuration
+   */
+  public Integer getBucketThreads() throws ConfigException
+  {
+      return getConfigInteger("EGLOAD_BUCKET_THREADS", new Integer(1));
+  }
+
+  /**
+   * get whether or not the connected components of the EntrezGene and MGI
+   * marker data are found by the DisjointSetClusterer, which unions dense
+   * int ids in primitive arrays, rather than through the SVAIndex of the
+   * AbstractBucketizer.
+   * The parameter name read from the configuration file or system properties
+   * is EGLOAD_UNION_FIND_BUCKETIZER. The default value is false.
+   * @return true if the DisjointSetClusterer is used, false otherwise
+   * @throws ConfigException thrown if there is an error accessing the
+   * configuration
+   */
+  public Boolean getOkToUnionFindBucketize() throws ConfigException
+  {
+      return getConfigBoolean("EGLOAD_UNION_FIND_BUCKETIZER",
+                              new Boolean(false));
+  }
+
+  /**
+   * get whether or not the DisjointSetClusterer partitions the EntrezGene
+   * and MGI marker data by chromosome and clusters the partitions in
+   * parallel, reconciling the components which span chromosomes afterwards.
+   * This applies only when the DisjointSetClusterer is used.
+   * The parameter name read from the configuration file or system properties
+   * is EGLOAD_CHROMOSOME_PARTITIONS. The default value is false.
+   * @return true if the data is partitioned by chromosome, false otherwise
+   * @throws ConfigException thrown if there is an error accessing the
+   * configuration
+   */
+  public Boolean getOkToPartitionByChromosome() throws ConfigException
+  {
+      return getConfigBoolean("EGLOAD_CHROMOSOME_PARTITIONS",
+                              new Boolean(false));
+  }
+
+  /**
+   * get whether or not the DisjointSetClusterer streams the EntrezGene and
+   * MGI marker data, reading it twice so that each connected component is
+   * processed as soon as its last member is read again and only the
+   * members of the open Entrez gene components are held in memory. The
+   * Entrez gene data is read again from the snapshot written or read on the
+   * first pass, so EGLOAD_SNAPSHOT_DIR must be set, and the MGI markers are
+   * kept from the first pass rather than queried again.
+   * This applies only when the DisjointSetClusterer is used.
+   * The parameter name read from the configuration file or system properties
+   * is EGLOAD_STREAMING_BUCKETIZER. The default value is false.
+   * @return true if the data is streamed, false otherwise
+   * @throws ConfigException thrown if there is an error accessing the
+   * configuration
+   */
+  public Boolean getOkToStreamBucketize() throws ConfigException
+  {
+      return getConfigBoolean("EGLOAD_STREAMING_BUCKETIZER",
+                              new Boolean(false));
+  }
+
 
 
 
@@ -0,0 +1,70 @@
+package org.jax.mgi.shr.dbutils;
+
+import org.jax.mgi.shr.exception.ExceptionFactory;
+
+/**
+ * An ExceptionFactory for errors reading query results through a
+ * server side cursor or from concurrently read query partitions.
+ * @has a hashmap of predefined DBExceptions stored by a name key
+ * @does looks up DBExceptions by name
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class CursorExceptionFactory extends ExceptionFactory {
+
+  /**
+   * the cursor could not be opened
+   */
+  public static final String OpenErr =
+      "org.jax.mgi.shr.dbutils.CursorOpenErr";
+  static {
+    exceptionsMap.put(OpenErr, new DBException(
+        "Could not open a cursor for the following query:\n ??", false));
+  }
+
+  /**
+   * a row could not be read from the cursor
+   */
+  public static final String ReadErr =
+      "org.jax.mgi.shr.dbutils.CursorReadErr";
+  static {
+    exceptionsMap.put(ReadErr, new DBException(
+        "Could not read the next row from the cursor for the following " +
+        "query:\n ??", false));
+  }
+
+  /**
+   * the cursor could not be closed
+   */
+  public static final String CloseErr =
+      "org.jax.mgi.shr.dbutils.CursorCloseErr";
+  static {
+    exceptionsMap.put(CloseErr, new DBException(
+        "Could not close the cursor for the following query:\n ??", false));
+  }
+
+  /**
+   * the transaction shared by several cursors could not be started or ended
+   */
+  public static final String TransactionErr =
+      "org.jax.mgi.shr.dbutils.CursorTransactionErr";
+  static {
+    exceptionsMap.put(TransactionErr, new DBException(
+        "Could not start or end the transaction for the cursors of the " +
+        "??", false));
+  }
+
+  /**
+   * the wait for the results of a query partition was interrupted
+   */
+  public static final String InterruptErr =
+      "org.jax.mgi.shr.dbutils.PartitionInterruptErr";
+  static {
+    exceptionsMap.put(InterruptErr, new DBException(
+        "Interrupted while waiting for the results of the following " +
+        "query partition:\n ??", false));
+  }
+
+
+}
@@ -0,0 +1,256 @@
+package org.jax.mgi.shr.dbutils;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Vector;
+
+/**
+ * is a DataIterator which reads query results through a server side cursor
+ * so that only a bounded number of rows (the fetch size) are held by the
+ * JDBC driver at any time. The results are interpreted with either a
+ * RowDataInterpreter, one object per row, or a GroupingInterpreter or
+ * MultiRowInterpreter, in which case consecutive rows with equal keys are
+ * grouped into one object just as the GroupingIterator and
+ * MultiRowIterator do. Only the rows of the current group are held in
+ * memory.
+ * @has a JDBC connection, statement and result set and an interpreter
+ * @does iterates over the interpreted results of a query
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class CursorIterator implements DataIterator
+{
+    private Connection conn = null;
+    private Statement stmt = null;
+    private ResultSet rs = null;
+    private RowReference row = null;
+    private String sql = null;
+
+    private RowDataInterpreter interpreter = null;
+    private MultiRowInterpreter multiInterpreter = null;
+    private GroupingInterpreter groupingInterpreter = null;
+
+    // the auto commit setting of the connection before the cursor was opened
+    private boolean autoCommit = true;
+
+    // true if the current row of the result set has not yet been interpreted
+    private boolean rowPending = false;
+
+    // true once the result set has been read to the end or closed
+    private boolean done = false;
+
+    /**
+     * constructor which opens the cursor
+     * @assumes nothing
+     * @effects auto commit will be turned off on the connection until the
+     * iterator is closed since cursors are only used by the driver within
+     * a transaction. If auto commit is already off (e.g. another cursor is
+     * open) the transaction is left for its owner to end
+     * @param conn the connection to run the query on
+     * @param sql the query
+     * @param fetchSize the number of rows to fetch from the server at a time
+     * @param interpreter the interpreter for the results, which may be a
+     * GroupingInterpreter or a MultiRowInterpreter
+     * @throws DBException thrown if the cursor could not be opened
+     */
+    public CursorIterator(Connection conn, String sql, int fetchSize,
+                          RowDataInterpreter interpreter)
+    throws DBException
+    {
+        this.conn = conn;
+        this.sql = sql;
+        this.interpreter = interpreter;
+        if (interpreter instanceof GroupingInterpreter)
+            this.groupingInterpreter = (GroupingInterpreter)interpreter;
+        else if (interpreter instanceof MultiRowInterpreter)
+            this.multiInterpreter = (MultiRowInterpreter)interpreter;
+        try
+        {
+            this.autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            this.stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+                                             ResultSet.CONCUR_READ_ONLY);
+            this.stmt.setFetchSize(fetchSize);
+            this.rs = this.stmt.executeQuery(sql);
+            this.row = new RowReference(this.rs);
+        }
+        catch (SQLException e)
+        {
+            this.done = true;
+            release();
+            throw getException(CursorExceptionFactory.OpenErr, e);
+        }
+    }
+
+    /**
+     * determine whether there are more results
+     * @return true if there are more results
+     * @throws DBException thrown if there is an error reading the cursor
+     */
+    public boolean hasNext() throws DBException
+    {
+        if (this.done)
+            return false;
+        if (!this.rowPending)
+            advance();
+        return this.rowPending;
+    }
+
+    /**
+     * get the next interpreted result
+     * @return the next result or null if there are no more results
+     * @throws DBException thrown if there is an error reading the cursor
+     * or interpreting the results
+     */
+    public Object next() throws DBException
+    {
+        if (!hasNext())
+            return null;
+
+        if (this.groupingInterpreter != null)
+            return nextGroup();
+
+        if (this.multiInterpreter == null)
+        {
+            this.rowPending = false;
+            return this.interpreter.interpret(this.row);
+        }
+
+        Object key = this.multiInterpreter.interpretKey(this.row);
+        Vector v = new Vector();
+        while (true)
+        {
+            v.add(this.multiInterpreter.interpret(this.row));
+            this.rowPending = false;
+            advance();
+            if (!this.rowPending ||
+                !key.equals(this.multiInterpreter.interpretKey(this.row)))
+                break;
+        }
+        return this.multiInterpreter.interpretRows(v);
+    }
+
+    /**
+     * create the next object from the rows of a group through the
+     * GroupingInterpreter
+     * @return the object
+     * @throws DBException thrown if there is an error reading the cursor
+     * or interpreting the results
+     */
+    private Object nextGroup() throws DBException
+    {
+        Object key = this.groupingInterpreter.interpretKey(this.row);
+        Object group = this.groupingInterpreter.interpret(this.row);
+        while (true)
+        {
+            this.groupingInterpreter.accumulate(group, this.row);
+            this.rowPending = false;
+            advance();
+            if (!this.rowPending ||
+                !key.equals(this.groupingInterpreter.interpretKey(this.row)))
+                break;
+        }
+        return group;
+    }
+
+    /**
+     * close the cursor and restore the connection
+     * @assumes nothing
+     * @effects the cursor will be closed and the auto commit setting of
+     * the connection restored
+     * @throws DBException thrown if there is an error closing the cursor
+     */
+    public void close() throws DBException
+    {
+        if (this.rs == null && this.stmt == null)
+            return;
+        this.done = true;
+        this.rowPending = false;
+        SQLException e = release();
+        if (e != null)
+            throw getException(CursorExceptionFactory.CloseErr, e);
+    }
+
+    /**
+     * move the cursor to the next row, closing it when there are no more
+     * @throws DBException thrown if there is an error reading the cursor
+     */
+    private void advance() throws DBException
+    {
+        try
+        {
+            this.rowPending = this.rs.next();
+        }
+        catch (SQLException e)
+        {
+            this.done = true;
+            release();
+            throw getException(CursorExceptionFactory.ReadErr, e);
+        }
+        if (!this.rowPending)
+            close();
+    }
+
+    /**
+     * release the JDBC resources ending the read only transaction
+     * @return the first SQLException encountered or null
+     */
+    private SQLException release()
+    {
+        SQLException first = null;
+        try
+        {
+            if (this.rs != null)
+                this.rs.close();
+        }
+        catch (SQLException e)
+        {
+            first = e;
+        }
+        try
+        {
+            if (this.stmt != null)
+                this.stmt.close();
+        }
+        catch (SQLException e)
+        {
+            if (first == null)
+                first = e;
+        }
+        try
+        {
+            // only the cursor which started the transaction ends it so that
+            // several cursors can be open on the connection at once
+            if (this.autoCommit)
+            {
+                this.conn.commit();
+                this.conn.setAutoCommit(true);
+            }
+        }
+        catch (SQLException e)
+        {
+            if (first == null)
+                first = e;
+        }
+        this.rs = null;
+        this.stmt = null;
+        return first;
+    }
+
+    /**
+     * create a DBException for the given error
+     * @param name the name of the exception in the CursorExceptionFactory
+     * @param e the SQLException which caused the error
+     * @return the DBException
+     */
+    private DBException getException(String name, SQLException e)
+    {
+        CursorExceptionFactory eFactory = new CursorExceptionFactory();
+        DBException e2 = (DBException)eFactory.getException(name, e);
+        e2.bind(this.sql);
+        return e2;
+    }
+}
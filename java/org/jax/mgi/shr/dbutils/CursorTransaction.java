@@ -0,0 +1,90 @@
+package org.jax.mgi.shr.dbutils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * is the read only transaction shared by several CursorIterators opened on
+ * the same connection. A CursorIterator ends the transaction it started
+ * when it is exhausted, which would invalidate any other cursor still open
+ * on the connection, so when several cursors are read together the
+ * transaction is started before the cursors are opened and ended once all
+ * of them have been read.
+ * @has a connection and its auto commit setting before the transaction
+ * @does starts and ends the transaction
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class CursorTransaction
+{
+    private Connection conn = null;
+    private String description = null;
+
+    // the auto commit setting of the connection before the transaction
+    private boolean autoCommit = true;
+
+    /**
+     * constructor which starts the transaction
+     * @assumes nothing
+     * @effects auto commit will be turned off on the connection
+     * @param conn the connection the cursors are opened on
+     * @param description a description of the queries run in the
+     * transaction for error messages
+     * @throws DBException thrown if the transaction could not be started
+     */
+    public CursorTransaction(Connection conn, String description)
+    throws DBException
+    {
+        this.conn = conn;
+        this.description = description;
+        try
+        {
+            this.autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+        }
+        catch (SQLException e)
+        {
+            throw getException(e);
+        }
+    }
+
+    /**
+     * end the transaction. Calling this more than once has no effect
+     * @assumes the cursors opened in the transaction have been closed
+     * @effects the auto commit setting of the connection will be restored
+     * @throws DBException thrown if the transaction could not be ended
+     */
+    public void end() throws DBException
+    {
+        if (this.conn == null)
+            return;
+        Connection c = this.conn;
+        this.conn = null;
+        if (!this.autoCommit)
+            return;
+        try
+        {
+            c.commit();
+            c.setAutoCommit(true);
+        }
+        catch (SQLException e)
+        {
+            throw getException(e);
+        }
+    }
+
+    /**
+     * create a DBException for the given error
+     * @param e the SQLException which caused the error
+     * @return the DBException
+     */
+    private DBException getException(SQLException e)
+    {
+        CursorExceptionFactory eFactory = new CursorExceptionFactory();
+        DBException e2 = (DBException)
+            eFactory.getException(CursorExceptionFactory.TransactionErr, e);
+        e2.bind(this.description);
+        return e2;
+    }
+}
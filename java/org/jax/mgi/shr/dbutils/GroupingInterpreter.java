@@ -0,0 +1,35 @@
+package org.jax.mgi.shr.dbutils;
+
+/**
+ * is an extension of the RowDataInterpreter for results in which
+ * consecutive rows with equal keys represent a single object, like the
+ * MultiRowInterpreter, but which builds the object while the rows are read
+ * rather than from a Vector of interpreted rows. The interpret() method
+ * creates the object from the first row of a group and accumulate() is
+ * then called with each row of the group, including the first, so no
+ * object is created per row and no rows are held.
+ * @has nothing
+ * @does creates one object from a group of consecutive rows
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public interface GroupingInterpreter extends RowDataInterpreter
+{
+    /**
+     * get the key used for grouping consecutive rows
+     * @param row the current row
+     * @return the key of the row
+     * @throws DBException thrown if there is an error reading the row
+     */
+    public Object interpretKey(RowReference row) throws DBException;
+
+    /**
+     * add the data of a row to the object of its group
+     * @param group the object returned by interpret() for the first row of
+     * the group
+     * @param row the current row
+     * @throws DBException thrown if there is an error reading the row
+     */
+    public void accumulate(Object group, RowReference row) throws DBException;
+}
@@ -0,0 +1,101 @@
+package org.jax.mgi.shr.dbutils;
+
+/**
+ * is a DataIterator over the results of a ResultsNavigator which groups
+ * consecutive rows with equal keys into one object using a
+ * GroupingInterpreter. Unlike the MultiRowIterator, only the object of the
+ * current group is held while its rows are read.
+ * @has a ResultsNavigator and a GroupingInterpreter
+ * @does iterates over the grouped results of a query
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class GroupingIterator implements DataIterator
+{
+    private ResultsNavigator nav = null;
+    private GroupingInterpreter interpreter = null;
+
+    // true if the current row of the navigator has not yet been interpreted
+    private boolean rowPending = false;
+
+    // true once the navigator has been read to the end or closed
+    private boolean done = false;
+
+    /**
+     * constructor
+     * @param nav the ResultsNavigator over the query results
+     * @param interpreter the interpreter for grouping the results
+     */
+    public GroupingIterator(ResultsNavigator nav,
+                            GroupingInterpreter interpreter)
+    {
+        this.nav = nav;
+        this.interpreter = interpreter;
+    }
+
+    /**
+     * determine whether there are more results
+     * @return true if there are more results
+     * @throws DBException thrown if there is an error reading the results
+     */
+    public boolean hasNext() throws DBException
+    {
+        if (this.done)
+            return false;
+        if (!this.rowPending)
+            advance();
+        return this.rowPending;
+    }
+
+    /**
+     * get the object created from the next group of rows
+     * @return the next object or null if there are no more results
+     * @throws DBException thrown if there is an error reading or
+     * interpreting the results
+     */
+    public Object next() throws DBException
+    {
+        if (!hasNext())
+            return null;
+        RowReference row = this.nav.getRowReference();
+        Object key = this.interpreter.interpretKey(row);
+        Object group = this.interpreter.interpret(row);
+        while (true)
+        {
+            this.interpreter.accumulate(group, row);
+            this.rowPending = false;
+            advance();
+            if (!this.rowPending ||
+                !key.equals(this.interpreter.interpretKey(row)))
+                break;
+        }
+        return group;
+    }
+
+    /**
+     * close the ResultsNavigator
+     * @throws DBException thrown if there is an error closing the results
+     */
+    public void close() throws DBException
+    {
+        if (this.nav == null)
+            return;
+        this.done = true;
+        this.rowPending = false;
+        ResultsNavigator n = this.nav;
+        this.nav = null;
+        n.close();
+    }
+
+    /**
+     * move to the next row, closing the navigator when there are no more
+     * @throws DBException thrown if there is an error reading the results
+     */
+    private void advance() throws DBException
+    {
+        this.rowPending = this.nav.next();
+        if (!this.rowPending)
+            close();
+    }
+}
@@ -3,10 +3,25 @@ package org.jax.mgi.shr.dbutils;
 import org.jax.mgi.shr.exception.MGIException;
 
 
+/**
+ * is an InterpretedQuery which can be executed to obtain a DataIterator over
+ * the interpreted results of the query.
+ * @has a SQLDataManager and an optional fetch size
+ * @does executes the query either through the SQLDataManager, or, when a
+ * fetch size has been set, through a server side cursor which streams the
+ * results in bounded memory
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
 public abstract class ObjectQuery implements InterpretedQuery {
 
     protected SQLDataManager sqlMgr = null;
 
+    // the number of rows fetched at a time when streaming results through a
+    // cursor, 0 means results are not streamed
+    protected int fetchSize = 0;
+
     // the following constant defintions are exceptions thrown by this class
     private static final String PrePostSQLErr =
         DBExceptionFactory.PrePostSQLErr;
@@ -17,6 +32,27 @@ public abstract class ObjectQuery implements InterpretedQuery {
         this.sqlMgr = sqlMgr;
     }
 
+    /**
+     * set the fetch size used to stream the results of the query through a
+     * server side cursor. The default is 0 which executes the query through
+     * the SQLDataManager as usual
+     * @param fetchSize the number of rows to fetch from the server at a
+     * time or 0 to not stream the results
+     */
+    public void setFetchSize(int fetchSize)
+    {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * get the fetch size used to stream the results of the query
+     * @return the fetch size or 0 if the results are not streamed
+     */
+    public int getFetchSize()
+    {
+        return this.fetchSize;
+    }
+
     public DataIterator execute()
     throws DBException
     {
@@ -34,16 +70,14 @@ public abstract class ObjectQuery implements InterpretedQuery {
                 eFactory.getException(PrePostSQLErr, e);
             throw e2;
         }
-        ResultsNavigator nav = this.sqlMgr.executeQuery(sql);
-        if (interpreter instanceof MultiRowInterpreter)
+        if (this.fetchSize > 0)
         {
-            MultiRowInterpreter mri =
-                (MultiRowInterpreter)interpreter;
-            iterator = new MultiRowIterator(nav, mri);
+            iterator = new CursorIterator(this.sqlMgr.getConnection(), sql,
+                                          this.fetchSize, interpreter);
         }
         else
         {
-            iterator = new RowDataIterator(nav, interpreter);
+            iterator = executeNavigator(sql, interpreter);
         }
         try
         {
@@ -60,6 +94,37 @@ public abstract class ObjectQuery implements InterpretedQuery {
         return iterator;
     }
 
+    /**
+     * execute the query through the SQLDataManager
+     * @param sql the query
+     * @param interpreter the interpreter for the results
+     * @return the DataIterator over the results
+     * @throws DBException thrown if there is an error executing the query
+     */
+    private DataIterator executeNavigator(String sql,
+                                          RowDataInterpreter interpreter)
+    throws DBException
+    {
+        DataIterator iterator = null;
+        ResultsNavigator nav = this.sqlMgr.executeQuery(sql);
+        if (interpreter instanceof GroupingInterpreter)
+        {
+            iterator = new GroupingIterator(nav,
+                (GroupingInterpreter)interpreter);
+        }
+        else if (interpreter instanceof MultiRowInterpreter)
+        {
+            MultiRowInterpreter mri =
+                (MultiRowInterpreter)interpreter;
+            iterator = new MultiRowIterator(nav, mri);
+        }
+        else
+        {
+            iterator = new RowDataIterator(nav, interpreter);
+        }
+        return iterator;
+    }
+
     public void runPreSQL() throws MGIException {}
 
     public void runPostSQL() throws MGIException {}
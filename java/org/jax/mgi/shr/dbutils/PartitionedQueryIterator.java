@@ -0,0 +1,254 @@
+package org.jax.mgi.shr.dbutils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * is a DataIterator over the concatenated results of several partitions of
+ * a query, each of which is executed and interpreted on its own thread. The
+ * results are returned partition by partition in the order the partitions
+ * were given, so if each partition is ordered and the partitions cover
+ * consecutive ranges of the ordering key the results are ordered as a
+ * single query would be. While the results of the first partition are
+ * being returned the later partitions continue to be read into buffers
+ * until they are reached. Each buffer holds at most a fetch of results, a
+ * partition waiting for room in its buffer once it is full, so no more
+ * than a fetch of each partition is held ahead of the results returned.
+ * @has the partition queries, a thread and a buffer for each partition
+ * @does executes the partitions concurrently and iterates over their results
+ * @company The Jackson Laboratory
+ * @author M Walker
+ */
+
+public class PartitionedQueryIterator implements DataIterator
+{
+    // marks the end of the results of a partition within its buffer
+    private static final Object END = new Object();
+
+    // the number of results buffered for each partition when the queries
+    // have no fetch size
+    private static final int DEFAULT_CAPACITY = 1000;
+
+    private ObjectQuery[] partitions = null;
+    private ArrayBlockingQueue[] buffers = null;
+    private Thread[] readers = null;
+
+    // the index of the partition currently being returned
+    private int current = 0;
+
+    // the next result to return or null if it has not yet been taken
+    private Object pending = null;
+
+    // true once all results have been returned or the iterator was closed
+    private volatile boolean closed = false;
+
+    /**
+     * constructor which starts reading the partitions
+     * @assumes each partition has its own SQLDataManager which is not used
+     * elsewhere, since the partitions are executed concurrently and each
+     * SQLDataManager is closed once its partition has been read
+     * @effects a thread is started for each partition
+     * @param partitions the partition queries in the order their results
+     * are to be returned. Each buffers as many results as the fetch size of
+     * its query
+     */
+    public PartitionedQueryIterator(ObjectQuery[] partitions)
+    {
+        this.partitions = partitions;
+        this.buffers = new ArrayBlockingQueue[partitions.length];
+        this.readers = new Thread[partitions.length];
+        for (int i = 0; i < partitions.length; i++)
+        {
+            int capacity = partitions[i].getFetchSize();
+            this.buffers[i] = new ArrayBlockingQueue(
+                capacity > 0 ? capacity : DEFAULT_CAPACITY);
+            this.readers[i] = new Thread(new Reader(i),
+                "partition-" + (i + 1) + "-of-" + partitions.length);
+            this.readers[i].setDaemon(true);
+            this.readers[i].start();
+        }
+    }
+
+    /**
+     * determine whether there are more results, waiting for the partition
+     * being returned to produce its next result if necessary
+     * @return true if there are more results
+     * @throws DBException thrown if there was an error executing or reading
+     * one of the partitions or the wait for results was interrupted
+     */
+    public boolean hasNext() throws DBException
+    {
+        while (this.pending == null && !this.closed)
+        {
+            Object o = null;
+            try
+            {
+                o = this.buffers[this.current].take();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                close();
+                CursorExceptionFactory eFactory = new CursorExceptionFactory();
+                DBException e2 = (DBException)eFactory.getException(
+                    CursorExceptionFactory.InterruptErr, e);
+                e2.bind(this.partitions[this.current].getQuery());
+                throw e2;
+            }
+            if (o == END)
+            {
+                if (++this.current == this.partitions.length)
+                    this.closed = true;
+            }
+            else if (o instanceof Failure)
+            {
+                close();
+                ((Failure)o).rethrow();
+            }
+            else
+                this.pending = o;
+        }
+        return this.pending != null;
+    }
+
+    /**
+     * get the next result
+     * @return the next result or null if there are no more results
+     * @throws DBException thrown if there was an error executing or reading
+     * one of the partitions
+     */
+    public Object next() throws DBException
+    {
+        if (!hasNext())
+            return null;
+        Object o = this.pending;
+        this.pending = null;
+        return o;
+    }
+
+    /**
+     * stop returning results. Partitions still being read are interrupted,
+     * stop at their next result and close their iterators
+     * @assumes nothing
+     * @effects the buffered results are discarded
+     */
+    public void close()
+    {
+        this.closed = true;
+        this.pending = null;
+        for (int i = 0; i < this.buffers.length; i++)
+        {
+            this.readers[i].interrupt();
+            this.buffers[i].clear();
+        }
+    }
+
+    /**
+     * is the Runnable which executes a partition and buffers its results
+     * @has the index of the partition
+     * @does reads the partition until it is exhausted or the iterator is
+     * closed
+     */
+    private class Reader implements Runnable
+    {
+        private int index = 0;
+
+        public Reader(int index)
+        {
+            this.index = index;
+        }
+
+        public void run()
+        {
+            ObjectQuery query = partitions[this.index];
+            ArrayBlockingQueue buffer = buffers[this.index];
+            DataIterator it = null;
+            boolean released = false;
+            try
+            {
+                try
+                {
+                    it = query.execute();
+                    while (!closed && it.hasNext())
+                        buffer.put(it.next());
+                    it.close();
+                    released = true;
+                    query.sqlMgr.closeResources();
+                    buffer.put(END);
+                }
+                catch (InterruptedException e)
+                {
+                    throw e;
+                }
+                catch (Throwable t)
+                {
+                    // Errors such as an OutOfMemoryError are passed on as
+                    // well so the iterating thread is never left waiting
+                    // for a partition which has stopped. The buffered
+                    // results are discarded first so there is room for the
+                    // failure, and the partition is released afterwards
+                    buffer.clear();
+                    buffer.offer(new Failure(t));
+                }
+            }
+            catch (InterruptedException e)
+            {
+                // the iterator was closed while waiting for room in the
+                // buffer, so the partition is released without finishing
+            }
+            finally
+            {
+                if (!released)
+                    release(query, it);
+            }
+        }
+
+        /**
+         * release the resources of a partition which failed, ignoring
+         * further errors since the original error has already been reported
+         * @param query the partition query
+         * @param it the iterator over the partition or null if the query
+         * could not be executed
+         */
+        private void release(ObjectQuery query, DataIterator it)
+        {
+            try
+            {
+                if (it != null)
+                    it.close();
+            }
+            catch (DBException e) {}
+            try
+            {
+                query.sqlMgr.closeResources();
+            }
+            catch (DBException e) {}
+        }
+    }
+
+    /**
+     * holds an exception or error thrown by a Reader so it can be rethrown
+     * by the thread iterating over the results
+     * @has the exception or error
+     * @does rethrows the exception or error
+     */
+    private static class Failure
+    {
+        private Throwable t = null;
+
+        public Failure(Throwable t)
+        {
+            this.t = t;
+        }
+
+        public void rethrow() throws DBException
+        {
+            if (this.t instanceof DBException)
+                throw (DBException)this.t;
+            if (this.t instanceof Error)
+                throw (Error)this.t;
+            if (this.t instanceof RuntimeException)
+                throw (RuntimeException)this.t;
+            throw new RuntimeException(this.t);
+        }
+    }
+}